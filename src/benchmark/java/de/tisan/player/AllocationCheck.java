@@ -0,0 +1,149 @@
+package de.tisan.player;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Checks that decoding allocates nothing per frame once a stream runs. Each
+ * file is decoded once to warm up, then a quarter of it and all of it, with
+ * PcmDecoder and with Decoder.play to a NullSink. The memory allocated by the
+ * decoding thread and the writer thread must not grow with the number of
+ * frames; a constant amount per stream is fine. Runs are repeated and the
+ * smallest amount is used, so one-off allocations (like by the JIT) do not
+ * count. Frame errors count as
+ * allocations, so the files should be clean. Needs a JVM that counts the
+ * allocated bytes per thread (like HotSpot), exits with status 1 if an
+ * allocation per frame is found.
+ * <p>
+ * Usage: java de.tisan.player.AllocationCheck file.mp3 [file.mp3 ...], or
+ * gradle allocationCheck -Pmp3=file.mp3[,file.mp3 ...]
+ */
+final class AllocationCheck {
+    private static final String[] NAMES = { "double", "float", "fixed" };
+    private static final int RUNS = 3;
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("The JVM does not count allocated memory");
+            System.exit(2);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        boolean failed = false;
+        System.out.println("file\tengine\tthread\tframes\tbytes\tbytesPerFrame");
+        for (String file : args) {
+            byte[] data = readFile(file);
+            for (int precision = 0; precision < NAMES.length; precision++) {
+                long[] part = new long[4];
+                long[] all = new long[4];
+                Arrays.fill(part, Long.MAX_VALUE);
+                Arrays.fill(all, Long.MAX_VALUE);
+                Decoder decoder = new Decoder();
+                WriterSink sink = new WriterSink();
+                decoder.setSink(sink);
+                decoder.setPrecision(precision);
+                decode(data, data.length, precision, new long[4]);
+                play(decoder, sink, data, data.length, new long[4]);
+                for (int run = 0; run < RUNS; run++) {
+                    decode(data, data.length / 4, precision, part);
+                    decode(data, data.length, precision, all);
+                    play(decoder, sink, data, data.length / 4, part);
+                    play(decoder, sink, data, data.length, all);
+                }
+                long frames = all[0] - part[0];
+                failed |= report(file, precision, "pull", frames, all[1] - part[1]);
+                failed |= report(file, precision, "play", frames, all[2] - part[2]);
+                failed |= report(file, precision, "writer", frames, all[3] - part[3]);
+            }
+        }
+        if (failed) {
+            System.out.println("Allocation per frame found");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns whether the two runs differ by at least one byte per frame.
+     */
+    private static boolean report(String file, int precision, String thread, long frames, long bytes) {
+        double perFrame = frames <= 0 ? 0 : (double) bytes / frames;
+        System.out.println(file + "\t" + NAMES[precision] + "\t" + thread + "\t" + frames + "\t" + bytes + "\t"
+                + perFrame);
+        return bytes > 0 && bytes >= frames;
+    }
+
+    /**
+     * Decodes the first length bytes with PcmDecoder and stores the number of
+     * frames and the bytes allocated in the loop, if less than before.
+     */
+    private static void decode(byte[] data, int length, int precision, long[] result) throws IOException {
+        PcmDecoder decoder = new PcmDecoder(new ByteArrayInputStream(data, 0, length), precision);
+        short[] pcm = new short[PcmDecoder.MAX_FRAME_SAMPLES];
+        long thread = Thread.currentThread().getId();
+        long frames = 0;
+        long start = THREADS.getThreadAllocatedBytes(thread);
+        while (decoder.decodeNextFrame(pcm) >= 0) {
+            frames++;
+        }
+        long end = THREADS.getThreadAllocatedBytes(thread);
+        decoder.close();
+        result[0] = frames;
+        result[1] = Math.min(result[1], end - start);
+    }
+
+    /**
+     * Plays the first length bytes and stores the bytes allocated by this
+     * thread and by the writer thread, if less than before.
+     */
+    private static void play(Decoder decoder, WriterSink sink, byte[] data, int length, long[] result)
+            throws IOException {
+        InputStream in = new ByteArrayInputStream(data, 0, length);
+        String name = length + " of " + data.length + " bytes";
+        long thread = Thread.currentThread().getId();
+        Thread writer = sink.thread;
+        long writerStart = writer == null ? 0 : THREADS.getThreadAllocatedBytes(writer.getId());
+        long start = THREADS.getThreadAllocatedBytes(thread);
+        decoder.play(name, in);
+        long end = THREADS.getThreadAllocatedBytes(thread);
+        long writerEnd = writer == null ? 0 : THREADS.getThreadAllocatedBytes(writer.getId());
+        result[2] = Math.min(result[2], end - start);
+        // the writer thread is kept by the decoder, a new one would be a leak
+        result[3] = Math.min(result[3], writer == sink.thread ? writerEnd - writerStart : Long.MAX_VALUE / 2);
+    }
+
+    private static byte[] readFile(String file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[4096];
+            for (int len; (len = in.read(buff)) > 0;) {
+                out.write(buff, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Remembers the writer thread of the decoder.
+     */
+    private static final class WriterSink extends NullSink {
+        volatile Thread thread;
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            thread = Thread.currentThread();
+            super.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package de.tisan.player;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the decoding engines on a set of MP3 files: decoding speed as a
+ * multiple of realtime (of the fastest of RUNS decodes), and the deviation of
+ * the 16 bit output from the double precision engine (maximum and RMS, in
+ * LSB). Then the synthesis filter of each engine is timed alone, in ns per
+ * call (32 samples), so that a change of its kernel can be measured apart
+ * from the rest of the decoder.
+ * <p>
+ * Usage: java de.tisan.player.DecoderBenchmark file.mp3 [file.mp3 ...], or
+ * gradle decoderBenchmark -Pmp3=file.mp3[,file.mp3 ...]
+ */
+final class DecoderBenchmark {
+    private static final String[] NAMES = { "double", "float", "fixed" };
+    private static final int RUNS = 10;
+    private static final int SYNTHESIS_RUNS = 20;
+    private static final int SYNTHESIS_CALLS = 100000;
+
+    private DecoderBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("file\tengine\txRealtime\tmaxDev\trmsDev");
+        for (String file : args) {
+            byte[] data = readFile(file);
+            Recorder reference = null;
+            for (int precision = 0; precision < NAMES.length; precision++) {
+                Recorder recorder = null;
+                long time = Long.MAX_VALUE;
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    recorder = decode(data, precision);
+                    time = Math.min(time, System.nanoTime() - start);
+                }
+                if (reference == null) {
+                    reference = recorder;
+                }
+                double seconds = (double) recorder.count / recorder.channels / recorder.frequency;
+                double realtime = seconds / (time / 1000000000.0);
+                long max = 0;
+                double sum = 0;
+                int n = Math.min(reference.count, recorder.count);
+                for (int i = 0; i < n; i++) {
+                    long d = Math.abs(reference.pcm[i] - recorder.pcm[i]);
+                    max = Math.max(max, d);
+                    sum += d * d;
+                }
+                double rms = n == 0 ? 0 : Math.sqrt(sum / n);
+                System.out.println(file + "\t" + NAMES[precision] + "\t" + (int) realtime + "\t" + max + "\t"
+                        + rms);
+            }
+        }
+        System.out.println();
+        System.out.println("engine\tsynthesisNsPerCall");
+        long[] times = synthesis();
+        for (int precision = 0; precision < NAMES.length; precision++) {
+            System.out.println(NAMES[precision] + "\t" + times[precision] / SYNTHESIS_CALLS);
+        }
+    }
+
+    /**
+     * Times the synthesis filters on the same noise, the engines taking turns.
+     * Returns the fastest time of SYNTHESIS_CALLS calls per engine.
+     */
+    private static long[] synthesis() {
+        Random random = new Random(1);
+        double[] d = new double[576];
+        float[] f = new float[576];
+        int[] x = new int[576];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = random.nextGaussian() * 0.1;
+            f[i] = (float) d[i];
+            x[i] = Fixed.toFixed(d[i]);
+        }
+        SynthesisFilter doubleFilter = new SynthesisFilter(0, 32700.0);
+        FloatSynthesisFilter floatFilter = new FloatSynthesisFilter(0, 32700.0f);
+        FixedSynthesisFilter fixedFilter = new FixedSynthesisFilter(0, 32700.0);
+        Discard sink = new Discard();
+        long[] times = new long[NAMES.length];
+        Arrays.fill(times, Long.MAX_VALUE);
+        for (int run = 0; run < SYNTHESIS_RUNS; run++) {
+            for (int precision = 0; precision < NAMES.length; precision++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < SYNTHESIS_CALLS; i++) {
+                    int ss = i % 18;
+                    if (precision == Decoder.PRECISION_DOUBLE) {
+                        doubleFilter.calculatePcmSamples(d, ss, sink);
+                    } else if (precision == Decoder.PRECISION_FLOAT) {
+                        floatFilter.calculatePcmSamples(f, ss, sink);
+                    } else {
+                        fixedFilter.calculatePcmSamples(x, ss, sink);
+                    }
+                }
+                times[precision] = Math.min(times[precision], System.nanoTime() - start);
+            }
+        }
+        if (sink.sum == 0) {
+            // keeps the filters from being optimized away
+            System.out.println("no output");
+        }
+        return times;
+    }
+
+    private static Recorder decode(byte[] data, int precision) throws IOException {
+        Recorder recorder = new Recorder();
+        recorder.setPrecision(precision);
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        while (true) {
+            try {
+                Header header = stream.readFrame();
+                if (header == null) {
+                    break;
+                }
+                recorder.frequency = header.frequency();
+                recorder.channels = (header.mode() == Header.MODE_SINGLE_CHANNEL) ? 1 : 2;
+                recorder.decodeFrame(header, stream);
+            } catch (IOException e) {
+                // skip the frame, like Decoder.play
+            } catch (RuntimeException e) {
+                // skip the frame, like Decoder.play
+            } finally {
+                stream.closeFrame();
+            }
+        }
+        return recorder;
+    }
+
+    private static byte[] readFile(String file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[4096];
+            for (int len; (len = in.read(buff)) > 0;) {
+                out.write(buff, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Collects the 16 bit output of all channels.
+     */
+    private static final class Recorder extends Decoder {
+        short[] pcm = new short[1 << 16];
+        int count;
+        int frequency = 1;
+        int channels = 1;
+
+        private void append(int s) {
+            if (count == pcm.length) {
+                short[] p = new short[pcm.length * 2];
+                System.arraycopy(pcm, 0, p, 0, count);
+                pcm = p;
+            }
+            pcm[count++] = (short) ((s > 32767) ? 32767 : ((s < -32768) ? -32768 : s));
+        }
+
+        @Override
+        public void appendSamples(int channel, double[] f) {
+            for (int i = 0; i < 32; i++) {
+                append((int) Math.max(-32768.0, Math.min(32767.0, f[i])));
+            }
+        }
+
+        @Override
+        public void appendSamples(int channel, float[] f) {
+            for (int i = 0; i < 32; i++) {
+                append((int) Math.max(-32768.0f, Math.min(32767.0f, f[i])));
+            }
+        }
+
+        @Override
+        public void appendSamples(int channel, int[] f) {
+            for (int i = 0; i < 32; i++) {
+                append(f[i]);
+            }
+        }
+    }
+
+    /**
+     * Takes the samples at almost no cost, so that the filter is timed alone.
+     */
+    private static final class Discard extends Decoder {
+        double sum;
+
+        @Override
+        public void appendSamples(int channel, double[] f) {
+            sum += f[0];
+        }
+
+        @Override
+        public void appendSamples(int channel, float[] f) {
+            sum += f[0];
+        }
+
+        @Override
+        public void appendSamples(int channel, int[] f) {
+            sum += f[0];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package de.tisan.player;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the Huffman decoding with the lookup gives the same results as
+ * walking the decoder tree bit by bit. Every code of all tables is decoded
+ * both ways, followed by random bits (and by all zeros and all ones) for the
+ * signs and escape values; the values, the result and the number of bits
+ * read must be the same. Exits with status 1 if they differ.
+ * <p>
+ * Usage: java de.tisan.player.HuffmanCheck, or gradle huffmanCheck
+ */
+final class HuffmanCheck {
+    /**
+     * The number of random tails decoded after each code.
+     */
+    private static final int TAILS = 256;
+
+    private HuffmanCheck() {
+    }
+
+    public static void main(String[] args) {
+        Layer3Decoder decoder = new DoubleLayer3Decoder(null, new Header(),
+                new SynthesisFilter(0, 32700.0), null, null);
+        BitReservoir lookup = new BitReservoir();
+        BitReservoir tree = new BitReservoir();
+        Random random = new Random(1);
+        byte[] data = new byte[8];
+        int[] expected = new int[6];
+        int[] actual = new int[6];
+        boolean failed = false;
+        System.out.println("table\tcodes\tdecodes\tmismatches");
+        for (int table = 0; table < Huffman.HUFFMAN.length; table++) {
+            Huffman h = Huffman.HUFFMAN[table];
+            List<int[]> codes = h.codes();
+            if (codes.isEmpty()) {
+                // a table without codes reads nothing
+                codes.add(new int[] { 0, 0 });
+            }
+            int decodes = 0;
+            int mismatches = 0;
+            for (int[] code : codes) {
+                for (int tail = -2; tail < TAILS; tail++) {
+                    long bits = (tail == -2) ? 0 : (tail == -1) ? -1 : random.nextLong();
+                    if (code[1] != 0) {
+                        bits = ((long) code[0] << (64 - code[1])) | (bits >>> code[1]);
+                    }
+                    for (int i = 0; i < data.length; i++) {
+                        data[i] = (byte) (bits >>> (56 - 8 * i));
+                    }
+                    decode(h, decoder, lookup, data, false, expected);
+                    decode(h, decoder, tree, data, true, actual);
+                    decodes++;
+                    if (!Arrays.equals(expected, actual)) {
+                        if (mismatches++ == 0) {
+                            System.out.println("table " + table + ", bits " + Long.toHexString(bits)
+                                    + ": lookup " + Arrays.toString(expected) + ", tree "
+                                    + Arrays.toString(actual));
+                        }
+                    }
+                }
+            }
+            System.out.println(table + "\t" + codes.size() + "\t" + decodes + "\t" + mismatches);
+            failed |= mismatches != 0;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Decode one code from the data, and keep the result, the values and the
+     * number of bits read.
+     */
+    private static void decode(Huffman h, Layer3Decoder decoder, BitReservoir br, byte[] data,
+            boolean byTree, int[] result) {
+        br.reset();
+        br.putBytes(data, 0, data.length);
+        decoder.x = decoder.y = decoder.v = decoder.w = 0;
+        result[0] = byTree ? h.decodeByTree(decoder, br) : h.decode(decoder, br);
+        result[1] = decoder.x;
+        result[2] = decoder.y;
+        result[3] = decoder.v;
+        result[4] = decoder.w;
+        result[5] = br.getBitCount();
+    }
+}
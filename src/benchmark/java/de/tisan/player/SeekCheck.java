@@ -0,0 +1,246 @@
+package de.tisan.player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a seek lands on the same samples as decoding from the start,
+ * also past junk in the stream. A bad frame header (of layer II) and some
+ * junk bytes are put in front of the middle frame of each file; the result
+ * is decoded frame by frame, and then decoders of the same bytes seek to
+ * frames after the junk: the next frames must be the same. A frame whose
+ * main data is not where its side info says (as in generated test streams)
+ * takes bytes from further back than a seek decodes, so it can come out
+ * differently: a seek that misses is tolerated, and counted apart, if one of
+ * the frames from the first one the seek decodes up to the last compared one
+ * could not be decoded from the start either. Exits with status 1 if a seek
+ * fails or lands elsewhere in a well formed part of a file.
+ * <p>
+ * Usage: java de.tisan.player.SeekCheck file.mp3 [file.mp3 ...], or gradle
+ * seekCheck -Pmp3=file.mp3[,file.mp3 ...]
+ */
+final class SeekCheck {
+    private static final String[] NAMES = { "double", "float", "fixed" };
+    private static final int SEEKS = 20;
+    /**
+     * The number of frames compared after each seek.
+     */
+    private static final int FRAMES = 4;
+    private static final int JUNK_BYTES = 100;
+    private static final short[] END = new short[0];
+
+    private SeekCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean failed = false;
+        System.out.println("file\tengine\tseeks\tfailed\ttolerated");
+        for (String file : args) {
+            byte[] data = insertJunk(readFile(file));
+            for (int precision = 0; precision < NAMES.length; precision++) {
+                List<short[]> frames = decode(data, precision);
+                Random random = new Random(precision);
+                int bad = 0;
+                int tolerated = 0;
+                int middle = frames.size() / 2;
+                for (int seek = 0; seek < SEEKS && middle + FRAMES < frames.size(); seek++) {
+                    // the frames right after the junk, then anywhere after it
+                    int target = middle + (seek < 3 ? seek : random.nextInt(frames.size() - middle - FRAMES));
+                    if (seek(data, precision, frames, target)) {
+                        continue;
+                    }
+                    if (malformed(data, frames, target)) {
+                        tolerated++;
+                    } else {
+                        bad++;
+                    }
+                }
+                System.out.println(file + "\t" + NAMES[precision] + "\t" + SEEKS + "\t" + bad + "\t" + tolerated);
+                failed |= bad > 0;
+            }
+        }
+        if (failed) {
+            System.out.println("Seek failed");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the data with a bad header and junk in front of the middle
+     * frame.
+     */
+    private static byte[] insertJunk(byte[] data) throws IOException {
+        Bitstream stream = new Bitstream(ByteBuffer.wrap(data));
+        while (stream.skipFrame() != null) {
+            // index all frames
+        }
+        FrameIndex index = stream.index();
+        if (index.size() == 0) {
+            throw new IOException("No frames");
+        }
+        int offset = index.offset(index.size() / 2);
+        byte[] junk = new byte[JUNK_BYTES];
+        new Random(0).nextBytes(junk);
+        // the frame header with layer II instead of layer III
+        System.arraycopy(data, offset, junk, 0, 4);
+        junk[1] ^= 0x06;
+        byte[] result = new byte[data.length + junk.length];
+        System.arraycopy(data, 0, result, 0, offset);
+        System.arraycopy(junk, 0, result, offset, junk.length);
+        System.arraycopy(data, offset, result, offset + junk.length, data.length - offset);
+        return result;
+    }
+
+    /**
+     * Decodes all frames, one array of samples per frame (null for a frame
+     * that can not be decoded).
+     */
+    private static List<short[]> decode(byte[] data, int precision) throws IOException {
+        Recorder recorder = new Recorder();
+        recorder.setPrecision(precision);
+        Bitstream stream = new Bitstream(ByteBuffer.wrap(data));
+        List<short[]> frames = new ArrayList<short[]>();
+        for (short[] frame; (frame = recorder.next(stream)) != END;) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * Seeks to the target frame with a new decoder and returns whether the
+     * next frames are those decoded from the start.
+     */
+    private static boolean seek(byte[] data, int precision, List<short[]> frames, int target) {
+        Recorder recorder = new Recorder();
+        recorder.setPrecision(precision);
+        Bitstream stream = new Bitstream(ByteBuffer.wrap(data));
+        try {
+            if (!recorder.seekFrame(stream, target, false)) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        for (int i = target; i < target + FRAMES; i++) {
+            short[] frame = recorder.next(stream);
+            if (frame == null ? frames.get(i) != null : !Arrays.equals(frame, frames.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a frame from the first one a seek to the target decodes
+     * up to the last compared one has no samples when decoding from the
+     * start, because its main data is missing or can not be decoded.
+     */
+    private static boolean malformed(byte[] data, List<short[]> frames, int target) {
+        int first;
+        try {
+            first = new Bitstream(ByteBuffer.wrap(data)).seek(target, false);
+        } catch (IOException e) {
+            return false;
+        }
+        for (int i = Math.max(0, first); i < target + FRAMES; i++) {
+            if (frames.get(i) == null || frames.get(i).length == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] readFile(String file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[4096];
+            for (int len; (len = in.read(buff)) > 0;) {
+                out.write(buff, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Collects the 16 bit output of one frame.
+     */
+    private static final class Recorder extends Decoder {
+        private final short[] pcm = new short[PcmDecoder.MAX_FRAME_SAMPLES];
+        private int count;
+        private int length;
+
+        /**
+         * Decodes the next frame and returns its samples, null if it can not
+         * be decoded, or END at the end of the stream.
+         */
+        short[] next(Bitstream stream) {
+            Header header;
+            while (true) {
+                try {
+                    header = stream.readFrame();
+                    break;
+                } catch (IOException e) {
+                    // a bad header is not a frame, the next one is searched
+                    stream.closeFrame();
+                }
+            }
+            if (header == null) {
+                return END;
+            }
+            count = 0;
+            length = 0;
+            try {
+                decodeFrame(header, stream);
+                return Arrays.copyOf(pcm, length);
+            } catch (IOException e) {
+                return null;
+            } catch (RuntimeException e) {
+                return null;
+            } finally {
+                stream.closeFrame();
+            }
+        }
+
+        @Override
+        protected void writeBuffer() {
+            // also the end of each frame decoded by seekFrame
+            length = count;
+            count = 0;
+        }
+
+        private void append(int s) {
+            pcm[count++] = (short) ((s > 32767) ? 32767 : ((s < -32768) ? -32768 : s));
+        }
+
+        @Override
+        public void appendSamples(int channel, double[] f) {
+            for (int i = 0; i < 32; i++) {
+                append((int) Math.max(-32768.0, Math.min(32767.0, f[i])));
+            }
+        }
+
+        @Override
+        public void appendSamples(int channel, float[] f) {
+            for (int i = 0; i < 32; i++) {
+                append((int) Math.max(-32768.0f, Math.min(32767.0f, f[i])));
+            }
+        }
+
+        @Override
+        public void appendSamples(int channel, int[] f) {
+            for (int i = 0; i < 32; i++) {
+                append(f[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.tisan.player;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.FloatControl;
+
+/**
+ * Destination of the audio played by Decoder: a sound device, a file, memory
+ * or nothing. The decoder opens the sink with the format of the stream,
+ * writes 16 bit PCM from its writer thread and closes it at the end of the
+ * stream. A sink can be opened again for the next stream.
+ */
+public interface AudioSink {
+
+    /**
+     * Whether the sink can play the format without converting it.
+     */
+    boolean isFormatSupported(AudioFormat format);
+
+    void open(AudioFormat format) throws IOException;
+
+    /**
+     * Writes whole sample frames, waiting while the sink has no room.
+     */
+    void write(byte[] b, int off, int len) throws IOException;
+
+    /**
+     * The number of bytes the sink buffers ahead of the playback position,
+     * or 0 if it does not play in real time.
+     */
+    int getBufferSize();
+
+    /**
+     * The number of bytes that can be written without waiting.
+     */
+    int available();
+
+    /**
+     * Starts or resumes the playback.
+     */
+    void start();
+
+    /**
+     * Pauses the playback; buffered data is kept.
+     */
+    void stop();
+
+    /**
+     * Discards the buffered data.
+     */
+    void flush();
+
+    /**
+     * The master gain control (in dB), or null if the sink has none.
+     */
+    FloatControl getVolumeControl();
+
+    /**
+     * Ends the stream. The sink may keep resources (like an open line) for
+     * the next stream.
+     */
+    void close() throws IOException;
+
+    /**
+     * Frees what the sink keeps for the next stream, after the data written
+     * so far has been played.
+     */
+    void release() throws IOException;
+}
@@ -0,0 +1,184 @@
+package de.tisan.player;
+
+/**
+ * Crossfades the tracks of a playlist on their way into the ring. The last
+ * samples of each track (one window) are held back; when the next track
+ * starts, they are mixed with its first samples, the old track fading out
+ * while the new one fades in. The tail of the old track is decoded already by
+ * then, so only one track is decoded at a time. Works on 16 bit samples of
+ * one format; a window of 0 samples passes the frames through.
+ */
+final class Crossfade {
+    /**
+     * The held back bytes, from start on (wrapping at size).
+     */
+    private byte[] window;
+    private int size;
+    private int start;
+    private int fill;
+    /**
+     * The bytes of the old track mixed with the new one, and how many of them
+     * are left.
+     */
+    private int fadeLength;
+    private int fading;
+    private final byte[] out = new byte[Decoder.BUFFER_SIZE * 2];
+    private byte[] silence;
+    private PcmRing ring;
+    private int frameBytes;
+    private int highByte;
+
+    /**
+     * Starts holding back the given number of samples (per channel) in front
+     * of the ring, for a new format.
+     */
+    void start(PcmRing ring, int samples, int channels, boolean bigEndian) {
+        this.ring = ring;
+        frameBytes = 2 * channels;
+        highByte = bigEndian ? 0 : 1;
+        size = Math.max(0, samples) * frameBytes;
+        if (window == null || window.length < size) {
+            window = new byte[size];
+        }
+        clear();
+    }
+
+    /**
+     * Takes the next frame of the track and passes the bytes that are no
+     * longer held back, or mixed with the old track, to the ring. Returns
+     * false if the ring was closed.
+     */
+    boolean put(byte[] frame, int len) {
+        int n = 0;
+        int p = 0;
+        if (fading > 0) {
+            n = Math.min(len, fading);
+            mix(frame, n);
+            p = n;
+        }
+        int rest = len - p;
+        int over = fill + rest - size;
+        if (over > 0) {
+            // the oldest bytes make room, then those of the frame that do not
+            // fit in the window at all
+            int held = Math.min(over, fill);
+            read(out, n, held);
+            n += held;
+            System.arraycopy(frame, p, out, n, over - held);
+            n += over - held;
+            p += over - held;
+            rest -= over - held;
+        }
+        write(frame, p, rest);
+        return n == 0 || ring.put(out, n);
+    }
+
+    /**
+     * Ends the track: what is held back of it fades out under the start of
+     * the next one.
+     */
+    boolean next() {
+        // a track shorter than the fade leaves the old one to fade out alone
+        if (!fadeOut()) {
+            return false;
+        }
+        fadeLength = fill;
+        fading = fill;
+        return true;
+    }
+
+    /**
+     * Passes all that is held back to the ring, at the end of the last track
+     * of the format (which does not fade out).
+     */
+    boolean flush() {
+        if (fading == fadeLength) {
+            // no next track came, the last one ends as it is
+            fadeLength = 0;
+            fading = 0;
+        }
+        if (!fadeOut()) {
+            return false;
+        }
+        while (fill > 0) {
+            int n = Math.min(fill, out.length);
+            read(out, 0, n);
+            if (!ring.put(out, n)) {
+                return false;
+            }
+        }
+        clear();
+        return true;
+    }
+
+    /**
+     * Drops what is held back, like after a seek.
+     */
+    void clear() {
+        start = 0;
+        fill = 0;
+        fadeLength = 0;
+        fading = 0;
+    }
+
+    private boolean fadeOut() {
+        if (fading > 0 && silence == null) {
+            silence = new byte[out.length];
+        }
+        while (fading > 0) {
+            if (!put(silence, Math.min(fading, silence.length))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mixes the first n bytes of the frame with the held back bytes of the
+     * old track into out, with gains going linearly from the old track to
+     * the new one over the fade.
+     */
+    private void mix(byte[] frame, int n) {
+        int h = highByte, l = 1 - highByte;
+        long frames = fadeLength / frameBytes;
+        int done = fadeLength - fading;
+        byte[] w = window;
+        int j = start;
+        for (int i = 0; i < n; i += 2) {
+            int old = (w[j + h] << 8) | (w[j + l] & 0xff);
+            int in = (frame[i + h] << 8) | (frame[i + l] & 0xff);
+            int s = old + (int) ((in - old) * (long) ((done + i) / frameBytes) / frames);
+            out[i + h] = (byte) (s >> 8);
+            out[i + l] = (byte) (s & 0xff);
+            j += 2;
+            if (j == size) {
+                j = 0;
+            }
+        }
+        start = j;
+        fill -= n;
+        fading -= n;
+    }
+
+    private void read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        int first = Math.min(len, size - start);
+        System.arraycopy(window, start, b, off, first);
+        System.arraycopy(window, 0, b, off + first, len - first);
+        start = (start + len) % size;
+        fill -= len;
+    }
+
+    private void write(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        int end = (start + fill) % size;
+        int first = Math.min(len, size - end);
+        System.arraycopy(b, off, window, end, first);
+        System.arraycopy(b, off + first, window, 0, len - first);
+        fill += len;
+    }
+}
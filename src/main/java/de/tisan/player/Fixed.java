@@ -0,0 +1,65 @@
+package de.tisan.player;
+
+/**
+ * Fixed point arithmetic of the integer decoding engine. Values are 32 bit
+ * ints with FRAC_BITS fractional bits, so the range is [-128, 128). Products
+ * are computed in 64 bit and scaled back. Sums are not checked: the stages of
+ * the decoder keep their input small enough that they can not overflow, and
+ * saturate where it is scaled back.
+ */
+final class Fixed {
+    static final int FRAC_BITS = 24;
+    static final int ONE = 1 << FRAC_BITS;
+
+    private Fixed() {
+    }
+
+    static int mul(int a, int b) {
+        return (int) (((long) a * b) >> FRAC_BITS);
+    }
+
+    /**
+     * Limits a value to the int range. The range is symmetric, so that the
+     * result can be negated.
+     */
+    static int saturate(long value) {
+        return (value > Integer.MAX_VALUE) ? Integer.MAX_VALUE
+                : ((value < -Integer.MAX_VALUE) ? -Integer.MAX_VALUE : (int) value);
+    }
+
+    /**
+     * The right shift that brings the n values a[off], a[off + step], ...
+     * below 2^bits in magnitude, or 0 if they are already.
+     */
+    static int headroomShift(int[] a, int off, int step, int n, int bits) {
+        int bitsUsed = 0;
+        for (int i = off, end = off + n * step; i < end; i += step) {
+            int v = a[i];
+            bitsUsed |= v ^ (v >> 31);
+        }
+        return 32 - Integer.numberOfLeadingZeros(bitsUsed >> bits);
+    }
+
+    /**
+     * Converts a constant to fixed point (only used to build tables).
+     */
+    static int toFixed(double value) {
+        return (int) Math.round(value * ONE);
+    }
+
+    static int[] toFixed(double[] array) {
+        int[] result = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            result[i] = toFixed(array[i]);
+        }
+        return result;
+    }
+
+    static int[][] toFixed(double[][] array) {
+        int[][] result = new int[array.length][];
+        for (int i = 0; i < array.length; i++) {
+            result[i] = toFixed(array[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,516 @@
+package de.tisan.player;
+
+import java.util.Arrays;
+
+/**
+ * Layer 3 decoder working in fixed point (see Fixed), for machines with slow
+ * floating point. Same algorithm as DoubleLayer3Decoder; dequantization,
+ * stereo processing, alias reduction and IMDCT use 32 bit integers only.
+ */
+final class FixedLayer3Decoder extends Layer3Decoder {
+    /**
+     * Constants.T43 as a mantissa in [1, 2) with 29 fractional bits and a
+     * power of two exponent.
+     */
+    private static final int[] T43_MANTISSA = new int[Constants.T43_SIZE];
+    private static final byte[] T43_EXPONENT = new byte[Constants.T43_SIZE];
+    /**
+     * 2^(i/4) with 30 fractional bits.
+     */
+    private static final int[] ROOT_2_4 = new int[4];
+    static {
+        for (int i = 1; i < Constants.T43_SIZE; i++) {
+            double v = Math.pow(i, 4.0 / 3.0);
+            int e = Math.getExponent(v);
+            T43_MANTISSA[i] = (int) Math.round(Math.scalb(v, 29 - e));
+            T43_EXPONENT[i] = (byte) e;
+        }
+        for (int i = 0; i < 4; i++) {
+            ROOT_2_4[i] = (int) Math.round(Math.pow(2.0, i / 4.0) * (1 << 30));
+        }
+    }
+    /**
+     * The largest dequantized value (64), so that the sums of the stereo
+     * processing and alias reduction stay in the int range.
+     */
+    private static final int MAX_SAMPLE = Integer.MAX_VALUE >> 1;
+    /**
+     * The samples of a subband are kept below 2^IMDCT_BITS (1.0) for the
+     * IMDCT, whose sums grow to about 46 times the input: a louder subband is
+     * scaled down and its output back up. The overlap it adds must be below
+     * 2^OVERLAP_BITS (64), or is added afterwards.
+     */
+    private static final int IMDCT_BITS = Fixed.FRAC_BITS;
+    private static final int OVERLAP_BITS = Fixed.FRAC_BITS + 6;
+    private static final int SQRT_HALF = Fixed.toFixed(0.707106781);
+    /**
+     * Intensity stereo factors of the left and right channel for MPEG 1
+     * (isRatio / (1 + isRatio) and 1 / (1 + isRatio)).
+     */
+    private static final int[] IS_LEFT = new int[16];
+    private static final int[] IS_RIGHT = new int[16];
+    static {
+        for (int i = 0; i < 16; i++) {
+            double isRatio = Constants.TAN12[i];
+            IS_LEFT[i] = Fixed.toFixed(isRatio / (1 + isRatio));
+            IS_RIGHT[i] = Fixed.toFixed(1 / (1 + isRatio));
+        }
+    }
+    private static final int[][] IO_LEFT = Fixed.toFixed(Constants.IO_LEFT);
+    private static final int[][] IO_RIGHT = Fixed.toFixed(Constants.IO_RIGHT);
+    private static final int[] CS = Fixed.toFixed(Constants.CS);
+    private static final int[] CA = Fixed.toFixed(Constants.CA);
+    private static final int[][] WIN = Fixed.toFixed(Constants.WIN);
+    private static final int C0_130526192 = Fixed.toFixed(0.130526192);
+    private static final int C0_347296355 = Fixed.toFixed(0.34729635533386);
+    private static final int C0_382683432 = Fixed.toFixed(0.382683432);
+    private static final int C0_500000000 = Fixed.toFixed(0.500000000);
+    private static final int C0_501909918 = Fixed.toFixed(0.501909918);
+    private static final int C0_504314480 = Fixed.toFixed(0.504314480);
+    private static final int C0_517638090 = Fixed.toFixed(0.517638090);
+    private static final int C0_541196100 = Fixed.toFixed(0.541196100);
+    private static final int C0_551688959 = Fixed.toFixed(0.551688959);
+    private static final int C0_608761429 = Fixed.toFixed(0.608761429);
+    private static final int C0_610387294 = Fixed.toFixed(0.610387294);
+    private static final int C0_630236207 = Fixed.toFixed(0.630236207);
+    private static final int C0_684040286 = Fixed.toFixed(0.68404028665134);
+    private static final int C0_707106781 = Fixed.toFixed(0.707106781);
+    private static final int C0_793353340 = Fixed.toFixed(0.793353340);
+    private static final int C0_821339815 = Fixed.toFixed(0.821339815);
+    private static final int C0_866025403 = Fixed.toFixed(0.866025403);
+    private static final int C0_871723397 = Fixed.toFixed(0.871723397);
+    private static final int C0_923879532 = Fixed.toFixed(0.923879532);
+    private static final int C0_991444861 = Fixed.toFixed(0.991444861);
+    private static final int C1_183100792 = Fixed.toFixed(1.183100792);
+    private static final int C1_285575219 = Fixed.toFixed(1.2855752193731);
+    private static final int C1_306562965 = Fixed.toFixed(1.306562965);
+    private static final int C1_532088886 = Fixed.toFixed(1.532088886238);
+    private static final int C1_732050808 = Fixed.toFixed(1.732050808);
+    private static final int C1_879385241 = Fixed.toFixed(1.8793852415718);
+    private static final int C1_931851653 = Fixed.toFixed(1.931851653);
+    private static final int C1_969615506 = Fixed.toFixed(1.9696155060244);
+    private static final int C3_830648788 = Fixed.toFixed(3.830648788);
+    private static final int C5_736856623 = Fixed.toFixed(5.736856623);
+    private final int[] ro0 = new int[SBLIMIT * SSLIMIT];
+    private final int[] ro1 = new int[SBLIMIT * SSLIMIT];
+    private final int[] lr0 = new int[SBLIMIT * SSLIMIT];
+    private final int[] lr1 = new int[SBLIMIT * SSLIMIT];
+    private final int[] out1d = new int[SBLIMIT * SSLIMIT];
+    private final int[][] prevBlock = new int[2][SBLIMIT * SSLIMIT];
+    private final FixedSynthesisFilter filter1, filter2;
+    private final int[] rawout = new int[36];
+    private final int[] loudOverlap = new int[18];
+
+    FixedLayer3Decoder(Bitstream stream, Header header, FixedSynthesisFilter filter1, FixedSynthesisFilter filter2,
+            Decoder player) {
+        super(stream, header, player);
+        this.filter1 = filter1;
+        this.filter2 = filter2;
+    }
+
+    void reset() {
+        super.reset();
+        Arrays.fill(prevBlock[0], 0);
+        Arrays.fill(prevBlock[1], 0);
+        filter1.reset();
+        if (filter2 != null) {
+            filter2.reset();
+        }
+    }
+
+    void dequantizeSample(int ch, int gr) {
+        int[] xr = (ch == 0) ? ro0 : ro1;
+        GrInfo gi = si.ch[ch].gr[gr];
+        int len = nonzero[ch];
+        scaleIndices(ch, gr);
+        // global gain and scalefactor in steps of 2^(1/4)
+        int gain = gi.globalGain - 210;
+        for (int j = 0; j < len; j++) {
+            int abv = is1d[j];
+            if (abv == 0) {
+                xr[j] = 0;
+                continue;
+            }
+            int a = (abv < 0) ? -abv : abv;
+            int q = gain - (scaleIndex[j] << 1);
+            // mantissa product has 59 fractional bits
+            long m = (long) T43_MANTISSA[a] * ROOT_2_4[q & 3];
+            int shift = 59 - Fixed.FRAC_BITS - T43_EXPONENT[a] - (q >> 2);
+            long value = (shift < 0) ? Long.MAX_VALUE : ((shift < 63) ? (m >> shift) : 0);
+            int v = (value > MAX_SAMPLE) ? MAX_SAMPLE : (int) value;
+            xr[j] = (abv < 0) ? -v : v;
+        }
+        for (int j = len; j < 576; j++) {
+            xr[j] = 0;
+        }
+    }
+
+    void stereo(int gr) {
+        if (channels == 1) { // mono , bypass xr[0][][] to lr[0][][]
+            System.arraycopy(ro0, 0, lr0, 0, 576);
+            return;
+        }
+        stereoPositions(gr);
+        for (int i = 0; i < 576; i++) {
+            if (isPos[i] == 7) {
+                if (msStereo) {
+                    lr0[i] = Fixed.mul(ro0[i] + ro1[i], SQRT_HALF);
+                    lr1[i] = Fixed.mul(ro0[i] - ro1[i], SQRT_HALF);
+                } else {
+                    lr0[i] = ro0[i];
+                    lr1[i] = ro1[i];
+                }
+            } else if (iStereo) {
+                if (lsf) {
+                    lr0[i] = Fixed.mul(ro0[i], IO_LEFT[ioType][isPos[i]]);
+                    lr1[i] = Fixed.mul(ro0[i], IO_RIGHT[ioType][isPos[i]]);
+                } else {
+                    lr0[i] = Fixed.mul(ro0[i], IS_LEFT[isPos[i]]);
+                    lr1[i] = Fixed.mul(ro0[i], IS_RIGHT[isPos[i]]);
+                }
+            }
+        }
+    }
+
+    void reorder(int ch, int[] table) {
+        int[] xr = (ch == 0) ? lr0 : lr1;
+        if (table == null) {
+            System.arraycopy(xr, 0, out1d, 0, 576);
+        } else {
+            for (int index = 0; index < 576; index++) {
+                out1d[index] = xr[table[index]];
+            }
+        }
+    }
+
+    int lines() {
+        int lines = 576;
+        while (lines > 0 && out1d[lines - 1] == 0) {
+            lines--;
+        }
+        return lines;
+    }
+
+    void antialias(int sb18Limit) {
+        for (int sb18 = 0; sb18 < sb18Limit; sb18 += 18) {
+            for (int ss = 0; ss < 8; ss++) {
+                int srcIdx1 = sb18 + 17 - ss;
+                int srcIdx2 = sb18 + 18 + ss;
+                int bu = out1d[srcIdx1];
+                int bd = out1d[srcIdx2];
+                out1d[srcIdx1] = Fixed.mul(bu, CS[ss]) - Fixed.mul(bd, CA[ss]);
+                out1d[srcIdx2] = Fixed.mul(bd, CS[ss]) + Fixed.mul(bu, CA[ss]);
+            }
+        }
+    }
+
+    void invMdct(int ch, int sb18, int blockType) {
+        int[] p = prevBlock[ch];
+        int shift = Fixed.headroomShift(out1d, sb18, 1, 18, IMDCT_BITS);
+        if (shift == 0 && Fixed.headroomShift(p, sb18, 1, 18, OVERLAP_BITS) == 0) {
+            fastInvMdct(out1d, sb18, p, blockType);
+        } else {
+            loudInvMdct(out1d, sb18, p, blockType, shift);
+        }
+    }
+
+    void takeOverlap(int ch, int from, int to) {
+        int[] p = prevBlock[ch];
+        for (int i = from; i < to; i++) {
+            out1d[i] = p[i];
+            p[i] = 0;
+        }
+    }
+
+    void invertFrequencies(int sb18Limit) {
+        for (int sb18 = 18; sb18 < sb18Limit; sb18 += 36) {
+            for (int ss = 1; ss < SSLIMIT; ss += 2) {
+                out1d[sb18 + ss] = -out1d[sb18 + ss];
+            }
+        }
+    }
+
+    void synthesize(int ch, boolean silent) {
+        FixedSynthesisFilter filter = (ch == 0) ? filter1 : filter2;
+        for (int ss = 0; ss < SSLIMIT; ss++) {
+            if (silent) {
+                filter.calculateSilentPcmSamples(player);
+            } else {
+                filter.calculatePcmSamples(out1d, ss, player);
+            }
+        }
+    }
+
+    /**
+     * fastInvMdct of a subband that is too loud for it, scaled down by the
+     * shift (which may be 0 for a loud overlap). The output and the overlap
+     * saturate when scaled back. The shift does not depend on the overlap,
+     * so that the new overlap is the same after a seek.
+     */
+    private void loudInvMdct(int[] in, int off, int[] prev, int blockType, int shift) {
+        int[] overlap = loudOverlap;
+        for (int i = 0; i < 18; i++) {
+            in[off + i] >>= shift;
+            overlap[i] = prev[off + i];
+            prev[off + i] = 0;
+        }
+        fastInvMdct(in, off, prev, blockType);
+        for (int i = 0; i < 18; i++) {
+            in[off + i] = Fixed.saturate(((long) in[off + i] << shift) + overlap[i]);
+            prev[off + i] = Fixed.saturate((long) prev[off + i] << shift);
+        }
+    }
+
+    /**
+     * IMDCT, windowing and overlap addition of one subband, in place: the 18
+     * lines at in[off] are replaced by the output samples, and prev[off]
+     * receives the second half of the block for the next granule.
+     */
+    private void fastInvMdct(int[] in, int off, int[] prev, int blockType) {
+        int t0, t1, t2, t3, t4, t5, t6, t7, t8, t9;
+        int t10, t11, t12, t13, t14, t15, t16, t17;
+        if (blockType == 2) {
+            int[] out = rawout;
+            for (int p = 0; p < 36; p += 9) {
+                out[p] = out[p + 1] = out[p + 2] = out[p + 3] = out[p + 4] = 0;
+                out[p + 5] = out[p + 6] = out[p + 7] = out[p + 8] = 0;
+            }
+            int sixI = 0;
+            for (int i = 0; i < 3; i++) {
+                // 12 point IMDCT
+                // Begin 12 point IDCT
+                // Input aliasing for 12 pt IDCT
+                in[off + 15 + i] += in[off + 12 + i];
+                in[off + 12 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 6 + i];
+                in[off + 6 + i] += in[off + 3 + i];
+                in[off + 3 + i] += in[off + 0 + i];
+                // Input aliasing on odd indices (for 6 point IDCT)
+                in[off + 15 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 3 + i];
+                // 3 point IDCT on even indices
+                int pp1, pp2, sum;
+                pp2 = Fixed.mul(in[off + 12 + i], C0_500000000);
+                pp1 = Fixed.mul(in[off + 6 + i], C0_866025403);
+                sum = in[off + 0 + i] + pp2;
+                t1 = in[off + 0 + i] - in[off + 12 + i];
+                t0 = sum + pp1;
+                t2 = sum - pp1;
+                // End 3 point IDCT on even indices
+                // 3 point IDCT on odd indices (for 6 point IDCT)
+                pp2 = Fixed.mul(in[off + 15 + i], C0_500000000);
+                pp1 = Fixed.mul(in[off + 9 + i], C0_866025403);
+                sum = in[off + 3 + i] + pp2;
+                t4 = in[off + 3 + i] - in[off + 15 + i];
+                t5 = sum + pp1;
+                t3 = sum - pp1;
+                // End 3 point IDCT on odd indices
+                // Twiddle factors on odd indices (for 6 point IDCT)
+                t3 = Fixed.mul(t3, C1_931851653);
+                t4 = Fixed.mul(t4, C0_707106781);
+                t5 = Fixed.mul(t5, C0_517638090);
+                // Output butterflies on 2 3 point IDCT's (for 6 point IDCT)
+                int save = t0;
+                t0 += t5;
+                t5 = save - t5;
+                save = t1;
+                t1 += t4;
+                t4 = save - t4;
+                save = t2;
+                t2 += t3;
+                t3 = save - t3;
+                // End 6 point IDCT
+                // Twiddle factors on indices (for 12 point IDCT)
+                t0 = Fixed.mul(t0, C0_504314480);
+                t1 = Fixed.mul(t1, C0_541196100);
+                t2 = Fixed.mul(t2, C0_630236207);
+                t3 = Fixed.mul(t3, C0_821339815);
+                t4 = Fixed.mul(t4, C1_306562965);
+                t5 = Fixed.mul(t5, C3_830648788);
+                // End 12 point IDCT
+                // Shift to 12 point modified IDCT, multiply by window type 2
+                t8 = Fixed.mul(-t0, C0_793353340);
+                t9 = Fixed.mul(-t0, C0_608761429);
+                t7 = Fixed.mul(-t1, C0_923879532);
+                t10 = Fixed.mul(-t1, C0_382683432);
+                t6 = Fixed.mul(-t2, C0_991444861);
+                t11 = Fixed.mul(-t2, C0_130526192);
+                t0 = t3;
+                t1 = Fixed.mul(t4, C0_382683432);
+                t2 = Fixed.mul(t5, C0_608761429);
+                t3 = Fixed.mul(-t5, C0_793353340);
+                t4 = Fixed.mul(-t4, C0_923879532);
+                t5 = Fixed.mul(-t0, C0_991444861);
+                t0 = Fixed.mul(t0, C0_130526192);
+                out[sixI + 6] += t0;
+                out[sixI + 7] += t1;
+                out[sixI + 8] += t2;
+                out[sixI + 9] += t3;
+                out[sixI + 10] += t4;
+                out[sixI + 11] += t5;
+                out[sixI + 12] += t6;
+                out[sixI + 13] += t7;
+                out[sixI + 14] += t8;
+                out[sixI + 15] += t9;
+                out[sixI + 16] += t10;
+                out[sixI + 17] += t11;
+                sixI += 6;
+            }
+            // overlap addition; the input is not needed any more
+            for (int k = 0; k < 18; k++) {
+                in[off + k] = out[k] + prev[off + k];
+                prev[off + k] = out[18 + k];
+            }
+        } else {
+            // 36 point IDCT
+            // input aliasing for 36 point IDCT
+            in[off + 17] += in[off + 16];
+            in[off + 16] += in[off + 15];
+            in[off + 15] += in[off + 14];
+            in[off + 14] += in[off + 13];
+            in[off + 13] += in[off + 12];
+            in[off + 12] += in[off + 11];
+            in[off + 11] += in[off + 10];
+            in[off + 10] += in[off + 9];
+            in[off + 9] += in[off + 8];
+            in[off + 8] += in[off + 7];
+            in[off + 7] += in[off + 6];
+            in[off + 6] += in[off + 5];
+            in[off + 5] += in[off + 4];
+            in[off + 4] += in[off + 3];
+            in[off + 3] += in[off + 2];
+            in[off + 2] += in[off + 1];
+            in[off + 1] += in[off + 0];
+            // 18 point IDCT for odd indices
+            // input aliasing for 18 point IDCT
+            in[off + 17] += in[off + 15];
+            in[off + 15] += in[off + 13];
+            in[off + 13] += in[off + 11];
+            in[off + 11] += in[off + 9];
+            in[off + 9] += in[off + 7];
+            in[off + 7] += in[off + 5];
+            in[off + 5] += in[off + 3];
+            in[off + 3] += in[off + 1];
+            int tmp0, tmp1, tmp2, tmp3, tmp4, tmp0b, tmp1b, tmp2b, tmp3b;
+            int tmp0o, tmp1o, tmp2o, tmp3o, tmp4o, tmp0ob, tmp1ob, tmp2ob, tmp3ob;
+            // Fast 9 Point Inverse Discrete Cosine Transform
+            //
+            // By Francois-Raymond Boyer
+            // mailto:boyerf@iro.umontreal.ca
+            // http://www.iro.umontreal.ca/~boyerf
+            //
+            // The code has been optimized for Intel processors
+            // (takes a lot of time to convert int to and from iternal FPU
+            // representation)
+            //
+            // It is a simple "factorization" of the IDCT matrix.
+            // 9 point IDCT on even indices
+            // 5 points on odd indices (not really an IDCT)
+            int i00 = in[off + 0] + in[off + 0];
+            int iip12 = i00 + in[off + 12];
+            tmp0 = iip12 + Fixed.mul(in[off + 4], C1_879385241) + Fixed.mul(in[off + 8], C1_532088886) + Fixed.mul(in[off + 16], C0_347296355);
+            tmp1 = i00 + in[off + 4] - in[off + 8] - in[off + 12] - in[off + 12] - in[off + 16];
+            tmp2 = iip12 - Fixed.mul(in[off + 4], C0_347296355) - Fixed.mul(in[off + 8], C1_879385241) + Fixed.mul(in[off + 16], C1_532088886);
+            tmp3 = iip12 - Fixed.mul(in[off + 4], C1_532088886) + Fixed.mul(in[off + 8], C0_347296355) - Fixed.mul(in[off + 16], C1_879385241);
+            tmp4 = in[off + 0] - in[off + 4] + in[off + 8] - in[off + 12] + in[off + 16];
+            // 4 points on even indices
+            int i6s = Fixed.mul(in[off + 6], C1_732050808); // Sqrt[3]
+            tmp0b = Fixed.mul(in[off + 2], C1_969615506) + i6s + Fixed.mul(in[off + 10], C1_285575219) + Fixed.mul(in[off + 14], C0_684040286);
+            tmp1b = Fixed.mul(in[off + 2] - in[off + 10] - in[off + 14], C1_732050808);
+            tmp2b = Fixed.mul(in[off + 2], C1_285575219) - i6s - Fixed.mul(in[off + 10], C0_684040286) + Fixed.mul(in[off + 14], C1_969615506);
+            tmp3b = Fixed.mul(in[off + 2], C0_684040286) - i6s + Fixed.mul(in[off + 10], C1_969615506) - Fixed.mul(in[off + 14], C1_285575219);
+            // 9 point IDCT on odd indices
+            // 5 points on odd indices (not really an IDCT)
+            int i0 = in[off + 0 + 1] + in[off + 0 + 1];
+            int i0p12 = i0 + in[off + 12 + 1];
+            tmp0o = i0p12 + Fixed.mul(in[off + 4 + 1], C1_879385241) + Fixed.mul(in[off + 8 + 1], C1_532088886) + Fixed.mul(in[off + 16 + 1], C0_347296355);
+            tmp1o = i0 + in[off + 4 + 1] - in[off + 8 + 1] - in[off + 12 + 1] - in[off + 12 + 1] - in[off + 16 + 1];
+            tmp2o = i0p12 - Fixed.mul(in[off + 4 + 1], C0_347296355) - Fixed.mul(in[off + 8 + 1], C1_879385241) + Fixed.mul(in[off + 16 + 1], C1_532088886);
+            tmp3o = i0p12 - Fixed.mul(in[off + 4 + 1], C1_532088886) + Fixed.mul(in[off + 8 + 1], C0_347296355) - Fixed.mul(in[off + 16 + 1], C1_879385241);
+            tmp4o = Fixed.mul(in[off + 0 + 1] - in[off + 4 + 1] + in[off + 8 + 1] - in[off + 12 + 1] + in[off + 16 + 1], C0_707106781); // Twiddled
+            // 4 points on even indices
+            int i7s = Fixed.mul(in[off + 6 + 1], C1_732050808); // Sqrt[3]
+            tmp0ob = Fixed.mul(in[off + 2 + 1], C1_969615506) + i7s + Fixed.mul(in[off + 10 + 1], C1_285575219) + Fixed.mul(in[off + 14 + 1], C0_684040286);
+            tmp1ob = Fixed.mul(in[off + 2 + 1] - in[off + 10 + 1] - in[off + 14 + 1], C1_732050808);
+            tmp2ob = Fixed.mul(in[off + 2 + 1], C1_285575219) - i7s - Fixed.mul(in[off + 10 + 1], C0_684040286) + Fixed.mul(in[off + 14 + 1], C1_969615506);
+            tmp3ob = Fixed.mul(in[off + 2 + 1], C0_684040286) - i7s + Fixed.mul(in[off + 10 + 1], C1_969615506) - Fixed.mul(in[off + 14 + 1], C1_285575219);
+            // Twiddle factors on odd indices and
+            // Butterflies on 9 point IDCT's and
+            // twiddle factors for 36 point IDCT
+            int e, o;
+            e = tmp0 + tmp0b;
+            o = Fixed.mul(tmp0o + tmp0ob, C0_501909918);
+            t0 = e + o;
+            t17 = e - o;
+            e = tmp1 + tmp1b;
+            o = Fixed.mul(tmp1o + tmp1ob, C0_517638090);
+            t1 = e + o;
+            t16 = e - o;
+            e = tmp2 + tmp2b;
+            o = Fixed.mul(tmp2o + tmp2ob, C0_551688959);
+            t2 = e + o;
+            t15 = e - o;
+            e = tmp3 + tmp3b;
+            o = Fixed.mul(tmp3o + tmp3ob, C0_610387294);
+            t3 = e + o;
+            t14 = e - o;
+            t4 = tmp4 + tmp4o;
+            t13 = tmp4 - tmp4o;
+            e = tmp3 - tmp3b;
+            o = Fixed.mul(tmp3o - tmp3ob, C0_871723397);
+            t5 = e + o;
+            t12 = e - o;
+            e = tmp2 - tmp2b;
+            o = Fixed.mul(tmp2o - tmp2ob, C1_183100792);
+            t6 = e + o;
+            t11 = e - o;
+            e = tmp1 - tmp1b;
+            o = Fixed.mul(tmp1o - tmp1ob, C1_931851653);
+            t7 = e + o;
+            t10 = e - o;
+            e = tmp0 - tmp0b;
+            o = Fixed.mul(tmp0o - tmp0ob, C5_736856623);
+            t8 = e + o;
+            t9 = e - o;
+            // end 36 point IDCT */
+            // shift to modified IDCT, window and add the previous block
+            int[] win = WIN[blockType];
+            in[off + 0] = Fixed.mul(-t9, win[0]) + prev[off + 0];
+            in[off + 1] = Fixed.mul(-t10, win[1]) + prev[off + 1];
+            in[off + 2] = Fixed.mul(-t11, win[2]) + prev[off + 2];
+            in[off + 3] = Fixed.mul(-t12, win[3]) + prev[off + 3];
+            in[off + 4] = Fixed.mul(-t13, win[4]) + prev[off + 4];
+            in[off + 5] = Fixed.mul(-t14, win[5]) + prev[off + 5];
+            in[off + 6] = Fixed.mul(-t15, win[6]) + prev[off + 6];
+            in[off + 7] = Fixed.mul(-t16, win[7]) + prev[off + 7];
+            in[off + 8] = Fixed.mul(-t17, win[8]) + prev[off + 8];
+            in[off + 9] = Fixed.mul(t17, win[9]) + prev[off + 9];
+            in[off + 10] = Fixed.mul(t16, win[10]) + prev[off + 10];
+            in[off + 11] = Fixed.mul(t15, win[11]) + prev[off + 11];
+            in[off + 12] = Fixed.mul(t14, win[12]) + prev[off + 12];
+            in[off + 13] = Fixed.mul(t13, win[13]) + prev[off + 13];
+            in[off + 14] = Fixed.mul(t12, win[14]) + prev[off + 14];
+            in[off + 15] = Fixed.mul(t11, win[15]) + prev[off + 15];
+            in[off + 16] = Fixed.mul(t10, win[16]) + prev[off + 16];
+            in[off + 17] = Fixed.mul(t9, win[17]) + prev[off + 17];
+            prev[off + 0] = Fixed.mul(t8, win[18]);
+            prev[off + 1] = Fixed.mul(t7, win[19]);
+            prev[off + 2] = Fixed.mul(t6, win[20]);
+            prev[off + 3] = Fixed.mul(t5, win[21]);
+            prev[off + 4] = Fixed.mul(t4, win[22]);
+            prev[off + 5] = Fixed.mul(t3, win[23]);
+            prev[off + 6] = Fixed.mul(t2, win[24]);
+            prev[off + 7] = Fixed.mul(t1, win[25]);
+            prev[off + 8] = Fixed.mul(t0, win[26]);
+            prev[off + 9] = Fixed.mul(t0, win[27]);
+            prev[off + 10] = Fixed.mul(t1, win[28]);
+            prev[off + 11] = Fixed.mul(t2, win[29]);
+            prev[off + 12] = Fixed.mul(t3, win[30]);
+            prev[off + 13] = Fixed.mul(t4, win[31]);
+            prev[off + 14] = Fixed.mul(t5, win[32]);
+            prev[off + 15] = Fixed.mul(t6, win[33]);
+            prev[off + 16] = Fixed.mul(t7, win[34]);
+            prev[off + 17] = Fixed.mul(t8, win[35]);
+        }
+    }
+}
@@ -0,0 +1,698 @@
+package de.tisan.player;
+
+import java.util.Arrays;
+
+/**
+ * Fixed point version of SynthesisFilter. The subband samples and V are in
+ * the Fixed format; the window is pre-multiplied with the scale factor, so
+ * that the 64 bit sum of the 16 products is the PCM sample shifted by
+ * PCM_SHIFT.
+ */
+final class FixedSynthesisFilter {
+    private int[] v1 = new int[512];
+    private int[] v2 = new int[512];
+    private int[] actualV = v1; // v1 or v2
+    private int actualWritePos = 15; // 0-15
+    private int channel;
+    private int[] tmpOutBuffer = new int[32];
+    // DOUBLE
+    private static final double MY_PI = 3.14159265358979323846;
+    private static final int COS1_64 = Fixed.toFixed(divCos(MY_PI / 64.0));
+    private static final int COS3_64 = Fixed.toFixed(divCos(MY_PI * 3.0 / 64.0));
+    private static final int COS5_64 = Fixed.toFixed(divCos(MY_PI * 5.0 / 64.0));
+    private static final int COS7_64 = Fixed.toFixed(divCos(MY_PI * 7.0 / 64.0));
+    private static final int COS9_64 = Fixed.toFixed(divCos(MY_PI * 9.0 / 64.0));
+    private static final int COS11_64 = Fixed.toFixed(divCos(MY_PI * 11.0 / 64.0));
+    private static final int COS13_64 = Fixed.toFixed(divCos(MY_PI * 13.0 / 64.0));
+    private static final int COS15_64 = Fixed.toFixed(divCos(MY_PI * 15.0 / 64.0));
+    private static final int COS17_64 = Fixed.toFixed(divCos(MY_PI * 17.0 / 64.0));
+    private static final int COS19_64 = Fixed.toFixed(divCos(MY_PI * 19.0 / 64.0));
+    private static final int COS21_64 = Fixed.toFixed(divCos(MY_PI * 21.0 / 64.0));
+    private static final int COS23_64 = Fixed.toFixed(divCos(MY_PI * 23.0 / 64.0));
+    private static final int COS25_64 = Fixed.toFixed(divCos(MY_PI * 25.0 / 64.0));
+    private static final int COS27_64 = Fixed.toFixed(divCos(MY_PI * 27.0 / 64.0));
+    private static final int COS29_64 = Fixed.toFixed(divCos(MY_PI * 29.0 / 64.0));
+    private static final int COS31_64 = Fixed.toFixed(divCos(MY_PI * 31.0 / 64.0));
+    private static final int COS1_32 = Fixed.toFixed(divCos(MY_PI / 32.0));
+    private static final int COS3_32 = Fixed.toFixed(divCos(MY_PI * 3.0 / 32.0));
+    private static final int COS5_32 = Fixed.toFixed(divCos(MY_PI * 5.0 / 32.0));
+    private static final int COS7_32 = Fixed.toFixed(divCos(MY_PI * 7.0 / 32.0));
+    private static final int COS9_32 = Fixed.toFixed(divCos(MY_PI * 9.0 / 32.0));
+    private static final int COS11_32 = Fixed.toFixed(divCos(MY_PI * 11.0 / 32.0));
+    private static final int COS13_32 = Fixed.toFixed(divCos(MY_PI * 13.0 / 32.0));
+    private static final int COS15_32 = Fixed.toFixed(divCos(MY_PI * 15.0 / 32.0));
+    private static final int COS1_16 = Fixed.toFixed(divCos(MY_PI / 16.0));
+    private static final int COS3_16 = Fixed.toFixed(divCos(MY_PI * 3.0 / 16.0));
+    private static final int COS5_16 = Fixed.toFixed(divCos(MY_PI * 5.0 / 16.0));
+    private static final int COS7_16 = Fixed.toFixed(divCos(MY_PI * 7.0 / 16.0));
+    private static final int COS1_8 = Fixed.toFixed(divCos(MY_PI / 8.0));
+    private static final int COS3_8 = Fixed.toFixed(divCos(MY_PI * 3.0 / 8.0));
+    private static final int COS1_4 = Fixed.toFixed(divCos(MY_PI / 4.0));
+    /**
+     * The subband samples are kept below 2^DCT_BITS (1.0) for computeNewV,
+     * whose sums grow to about 51 times the input: louder samples are scaled
+     * down and V back up.
+     */
+    private static final int DCT_BITS = Fixed.FRAC_BITS;
+    private static final int WINDOW_BITS = 14;
+    private static final int PCM_SHIFT = Fixed.FRAC_BITS + WINDOW_BITS;
+    private final int[] window = new int[512];
+
+    /**
+     * Contructor. The scalefactor scales the calculated pcm samples to short values (raw pcm samples are in
+     * [-1.0, 1.0], if no violations occur).
+     */
+    FixedSynthesisFilter(int channelNumber, double factor) {
+        channel = channelNumber;
+        for (int i = 0; i < 512; i++) {
+            window[i] = (int) Math.round(Constants.D[i] * factor * (1 << WINDOW_BITS));
+        }
+    }
+
+    /**
+     * Clears the samples of the previous stream.
+     */
+    void reset() {
+        Arrays.fill(v1, 0);
+        Arrays.fill(v2, 0);
+        actualV = v1;
+        actualWritePos = 15;
+    }
+
+    private static double divCos(double a) {
+        return (1.0 / (2.0 * Math.cos(a)));
+    }
+
+    /**
+     * Compute new values via a fast cosine transform.
+     */
+    private void computeNewV(int[] s, int off) {
+        int nv0, nv1, nv2, nv3, nv4, nv5, nv6, nv7, nv8, nv9;
+        int nv10, nv11, nv12, nv13, nv14, nv15, nv16, nv17, nv18, nv19;
+        int nv20, nv21, nv22, nv23, nv24, nv25, nv26, nv27, nv28, nv29;
+        int nv30, nv31;
+        int s0 = s[off];
+        int s1 = s[off + 18];
+        int s2 = s[off + 36];
+        int s3 = s[off + 54];
+        int s4 = s[off + 72];
+        int s5 = s[off + 90];
+        int s6 = s[off + 108];
+        int s7 = s[off + 126];
+        int s8 = s[off + 144];
+        int s9 = s[off + 162];
+        int s10 = s[off + 180];
+        int s11 = s[off + 198];
+        int s12 = s[off + 216];
+        int s13 = s[off + 234];
+        int s14 = s[off + 252];
+        int s15 = s[off + 270];
+        int s16 = s[off + 288];
+        int s17 = s[off + 306];
+        int s18 = s[off + 324];
+        int s19 = s[off + 342];
+        int s20 = s[off + 360];
+        int s21 = s[off + 378];
+        int s22 = s[off + 396];
+        int s23 = s[off + 414];
+        int s24 = s[off + 432];
+        int s25 = s[off + 450];
+        int s26 = s[off + 468];
+        int s27 = s[off + 486];
+        int s28 = s[off + 504];
+        int s29 = s[off + 522];
+        int s30 = s[off + 540];
+        int s31 = s[off + 558];
+        int p0 = s0 + s31;
+        int p1 = s1 + s30;
+        int p2 = s2 + s29;
+        int p3 = s3 + s28;
+        int p4 = s4 + s27;
+        int p5 = s5 + s26;
+        int p6 = s6 + s25;
+        int p7 = s7 + s24;
+        int p8 = s8 + s23;
+        int p9 = s9 + s22;
+        int p10 = s10 + s21;
+        int p11 = s11 + s20;
+        int p12 = s12 + s19;
+        int p13 = s13 + s18;
+        int p14 = s14 + s17;
+        int p15 = s15 + s16;
+        int pp0 = p0 + p15;
+        int pp1 = p1 + p14;
+        int pp2 = p2 + p13;
+        int pp3 = p3 + p12;
+        int pp4 = p4 + p11;
+        int pp5 = p5 + p10;
+        int pp6 = p6 + p9;
+        int pp7 = p7 + p8;
+        int pp8 = Fixed.mul(p0 - p15, COS1_32);
+        int pp9 = Fixed.mul(p1 - p14, COS3_32);
+        int pp10 = Fixed.mul(p2 - p13, COS5_32);
+        int pp11 = Fixed.mul(p3 - p12, COS7_32);
+        int pp12 = Fixed.mul(p4 - p11, COS9_32);
+        int pp13 = Fixed.mul(p5 - p10, COS11_32);
+        int pp14 = Fixed.mul(p6 - p9, COS13_32);
+        int pp15 = Fixed.mul(p7 - p8, COS15_32);
+        p0 = pp0 + pp7;
+        p1 = pp1 + pp6;
+        p2 = pp2 + pp5;
+        p3 = pp3 + pp4;
+        p4 = Fixed.mul(pp0 - pp7, COS1_16);
+        p5 = Fixed.mul(pp1 - pp6, COS3_16);
+        p6 = Fixed.mul(pp2 - pp5, COS5_16);
+        p7 = Fixed.mul(pp3 - pp4, COS7_16);
+        p8 = pp8 + pp15;
+        p9 = pp9 + pp14;
+        p10 = pp10 + pp13;
+        p11 = pp11 + pp12;
+        p12 = Fixed.mul(pp8 - pp15, COS1_16);
+        p13 = Fixed.mul(pp9 - pp14, COS3_16);
+        p14 = Fixed.mul(pp10 - pp13, COS5_16);
+        p15 = Fixed.mul(pp11 - pp12, COS7_16);
+        pp0 = p0 + p3;
+        pp1 = p1 + p2;
+        pp2 = Fixed.mul(p0 - p3, COS1_8);
+        pp3 = Fixed.mul(p1 - p2, COS3_8);
+        pp4 = p4 + p7;
+        pp5 = p5 + p6;
+        pp6 = Fixed.mul(p4 - p7, COS1_8);
+        pp7 = Fixed.mul(p5 - p6, COS3_8);
+        pp8 = p8 + p11;
+        pp9 = p9 + p10;
+        pp10 = Fixed.mul(p8 - p11, COS1_8);
+        pp11 = Fixed.mul(p9 - p10, COS3_8);
+        pp12 = p12 + p15;
+        pp13 = p13 + p14;
+        pp14 = Fixed.mul(p12 - p15, COS1_8);
+        pp15 = Fixed.mul(p13 - p14, COS3_8);
+        p0 = pp0 + pp1;
+        p1 = Fixed.mul(pp0 - pp1, COS1_4);
+        p2 = pp2 + pp3;
+        p3 = Fixed.mul(pp2 - pp3, COS1_4);
+        p4 = pp4 + pp5;
+        p5 = Fixed.mul(pp4 - pp5, COS1_4);
+        p6 = pp6 + pp7;
+        p7 = Fixed.mul(pp6 - pp7, COS1_4);
+        p8 = pp8 + pp9;
+        p9 = Fixed.mul(pp8 - pp9, COS1_4);
+        p10 = pp10 + pp11;
+        p11 = Fixed.mul(pp10 - pp11, COS1_4);
+        p12 = pp12 + pp13;
+        p13 = Fixed.mul(pp12 - pp13, COS1_4);
+        p14 = pp14 + pp15;
+        p15 = Fixed.mul(pp14 - pp15, COS1_4);
+        // this is pretty insane coding
+        int tmp1;
+        nv19 = -(nv4 = (nv12 = p7) + p5) - p6; // 36-17
+        nv27 = -p6 - p7 - p4; // 44-17
+        nv6 = (nv10 = (nv14 = p15) + p11) + p13;
+        nv17 = -(nv2 = p15 + p13 + p9) - p14; // 34-17
+        nv21 = (tmp1 = -p14 - p15 - p10 - p11) - p13; // 38-17
+        nv29 = -p14 - p15 - p12 - p8; // 46-17
+        nv25 = tmp1 - p12; // 42-17
+        nv31 = -p0; // 48-17
+        nv0 = p1;
+        nv23 = -(nv8 = p3) - p2; // 40-17
+        p0 = Fixed.mul(s0 - s31, COS1_64);
+        p1 = Fixed.mul(s1 - s30, COS3_64);
+        p2 = Fixed.mul(s2 - s29, COS5_64);
+        p3 = Fixed.mul(s3 - s28, COS7_64);
+        p4 = Fixed.mul(s4 - s27, COS9_64);
+        p5 = Fixed.mul(s5 - s26, COS11_64);
+        p6 = Fixed.mul(s6 - s25, COS13_64);
+        p7 = Fixed.mul(s7 - s24, COS15_64);
+        p8 = Fixed.mul(s8 - s23, COS17_64);
+        p9 = Fixed.mul(s9 - s22, COS19_64);
+        p10 = Fixed.mul(s10 - s21, COS21_64);
+        p11 = Fixed.mul(s11 - s20, COS23_64);
+        p12 = Fixed.mul(s12 - s19, COS25_64);
+        p13 = Fixed.mul(s13 - s18, COS27_64);
+        p14 = Fixed.mul(s14 - s17, COS29_64);
+        p15 = Fixed.mul(s15 - s16, COS31_64);
+        pp0 = p0 + p15;
+        pp1 = p1 + p14;
+        pp2 = p2 + p13;
+        pp3 = p3 + p12;
+        pp4 = p4 + p11;
+        pp5 = p5 + p10;
+        pp6 = p6 + p9;
+        pp7 = p7 + p8;
+        pp8 = Fixed.mul(p0 - p15, COS1_32);
+        pp9 = Fixed.mul(p1 - p14, COS3_32);
+        pp10 = Fixed.mul(p2 - p13, COS5_32);
+        pp11 = Fixed.mul(p3 - p12, COS7_32);
+        pp12 = Fixed.mul(p4 - p11, COS9_32);
+        pp13 = Fixed.mul(p5 - p10, COS11_32);
+        pp14 = Fixed.mul(p6 - p9, COS13_32);
+        pp15 = Fixed.mul(p7 - p8, COS15_32);
+        p0 = pp0 + pp7;
+        p1 = pp1 + pp6;
+        p2 = pp2 + pp5;
+        p3 = pp3 + pp4;
+        p4 = Fixed.mul(pp0 - pp7, COS1_16);
+        p5 = Fixed.mul(pp1 - pp6, COS3_16);
+        p6 = Fixed.mul(pp2 - pp5, COS5_16);
+        p7 = Fixed.mul(pp3 - pp4, COS7_16);
+        p8 = pp8 + pp15;
+        p9 = pp9 + pp14;
+        p10 = pp10 + pp13;
+        p11 = pp11 + pp12;
+        p12 = Fixed.mul(pp8 - pp15, COS1_16);
+        p13 = Fixed.mul(pp9 - pp14, COS3_16);
+        p14 = Fixed.mul(pp10 - pp13, COS5_16);
+        p15 = Fixed.mul(pp11 - pp12, COS7_16);
+        pp0 = p0 + p3;
+        pp1 = p1 + p2;
+        pp2 = Fixed.mul(p0 - p3, COS1_8);
+        pp3 = Fixed.mul(p1 - p2, COS3_8);
+        pp4 = p4 + p7;
+        pp5 = p5 + p6;
+        pp6 = Fixed.mul(p4 - p7, COS1_8);
+        pp7 = Fixed.mul(p5 - p6, COS3_8);
+        pp8 = p8 + p11;
+        pp9 = p9 + p10;
+        pp10 = Fixed.mul(p8 - p11, COS1_8);
+        pp11 = Fixed.mul(p9 - p10, COS3_8);
+        pp12 = p12 + p15;
+        pp13 = p13 + p14;
+        pp14 = Fixed.mul(p12 - p15, COS1_8);
+        pp15 = Fixed.mul(p13 - p14, COS3_8);
+        p0 = pp0 + pp1;
+        p1 = Fixed.mul(pp0 - pp1, COS1_4);
+        p2 = pp2 + pp3;
+        p3 = Fixed.mul(pp2 - pp3, COS1_4);
+        p4 = pp4 + pp5;
+        p5 = Fixed.mul(pp4 - pp5, COS1_4);
+        p6 = pp6 + pp7;
+        p7 = Fixed.mul(pp6 - pp7, COS1_4);
+        p8 = pp8 + pp9;
+        p9 = Fixed.mul(pp8 - pp9, COS1_4);
+        p10 = pp10 + pp11;
+        p11 = Fixed.mul(pp10 - pp11, COS1_4);
+        p12 = pp12 + pp13;
+        p13 = Fixed.mul(pp12 - pp13, COS1_4);
+        p14 = pp14 + pp15;
+        p15 = Fixed.mul(pp14 - pp15, COS1_4);
+        // manually doing something that a compiler should handle sucks
+        // coding like this is hard to read
+        int tmp2;
+        nv5 = (nv11 = (nv13 = (nv15 = p15) + p7) + p11) + p5 + p13;
+        nv7 = (nv9 = p15 + p11 + p3) + p13;
+        nv16 = -(nv1 = (tmp1 = p13 + p15 + p9) + p1) - p14; // 33-17
+        nv18 = -(nv3 = tmp1 + p5 + p7) - p6 - p14; // 35-17
+        nv22 = (tmp1 = -p10 - p11 - p14 - p15) - p13 - p2 - p3; // 39-17
+        nv20 = tmp1 - p13 - p5 - p6 - p7; // 37-17
+        nv24 = tmp1 - p12 - p2 - p3; // 41-17
+        nv26 = tmp1 - p12 - (tmp2 = p4 + p6 + p7); // 43-17
+        nv30 = (tmp1 = -p8 - p12 - p14 - p15) - p0; // 47-17
+        nv28 = tmp1 - tmp2; // 45-17
+        // insert V[0-15] (== nv[0-15]) into actual v:
+        // int[] x2 = actual_v + actual_write_pos;
+        int[] dest = actualV;
+        int pos = actualWritePos;
+        dest[0 + pos] = nv0;
+        dest[16 + pos] = nv1;
+        dest[32 + pos] = nv2;
+        dest[48 + pos] = nv3;
+        dest[64 + pos] = nv4;
+        dest[80 + pos] = nv5;
+        dest[96 + pos] = nv6;
+        dest[112 + pos] = nv7;
+        dest[128 + pos] = nv8;
+        dest[144 + pos] = nv9;
+        dest[160 + pos] = nv10;
+        dest[176 + pos] = nv11;
+        dest[192 + pos] = nv12;
+        dest[208 + pos] = nv13;
+        dest[224 + pos] = nv14;
+        dest[240 + pos] = nv15;
+        // V[16] is always 0.0:
+        dest[256 + pos] = 0;
+        // insert V[17-31] (== -nv[15-1]) into actual v:
+        dest[272 + pos] = -nv15;
+        dest[288 + pos] = -nv14;
+        dest[304 + pos] = -nv13;
+        dest[320 + pos] = -nv12;
+        dest[336 + pos] = -nv11;
+        dest[352 + pos] = -nv10;
+        dest[368 + pos] = -nv9;
+        dest[384 + pos] = -nv8;
+        dest[400 + pos] = -nv7;
+        dest[416 + pos] = -nv6;
+        dest[432 + pos] = -nv5;
+        dest[448 + pos] = -nv4;
+        dest[464 + pos] = -nv3;
+        dest[480 + pos] = -nv2;
+        dest[496 + pos] = -nv1;
+        // insert V[32] (== -nv[0]) into other v:
+        dest = (actualV == v1) ? v2 : v1;
+        dest[0 + pos] = -nv0;
+        // insert V[33-48] (== nv[16-31]) into other v:
+        dest[16 + pos] = nv16;
+        dest[32 + pos] = nv17;
+        dest[48 + pos] = nv18;
+        dest[64 + pos] = nv19;
+        dest[80 + pos] = nv20;
+        dest[96 + pos] = nv21;
+        dest[112 + pos] = nv22;
+        dest[128 + pos] = nv23;
+        dest[144 + pos] = nv24;
+        dest[160 + pos] = nv25;
+        dest[176 + pos] = nv26;
+        dest[192 + pos] = nv27;
+        dest[208 + pos] = nv28;
+        dest[224 + pos] = nv29;
+        dest[240 + pos] = nv30;
+        dest[256 + pos] = nv31;
+        // insert V[49-63] (== nv[30-16]) into other v:
+        dest[272 + pos] = nv30;
+        dest[288 + pos] = nv29;
+        dest[304 + pos] = nv28;
+        dest[320 + pos] = nv27;
+        dest[336 + pos] = nv26;
+        dest[352 + pos] = nv25;
+        dest[368 + pos] = nv24;
+        dest[384 + pos] = nv23;
+        dest[400 + pos] = nv22;
+        dest[416 + pos] = nv21;
+        dest[432 + pos] = nv20;
+        dest[448 + pos] = nv19;
+        dest[464 + pos] = nv18;
+        dest[480 + pos] = nv17;
+        dest[496 + pos] = nv16;
+    }
+
+    /**
+     * The 16 bit PCM sample of a sum of the window products.
+     */
+    private static int clip(long pcmSample) {
+        long sample = pcmSample >> PCM_SHIFT;
+        return (sample > 32767) ? 32767 : ((sample < -32768) ? -32768 : (int) sample);
+    }
+
+    private void computePcmSamples0() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[0 + dvp] * window[0 + dvp]) + ((long) vp[15 + dvp] * window[1 + dvp]) + ((long) vp[14 + dvp] * window[2 + dvp]) + ((long) vp[13 + dvp] * window[3 + dvp]) + ((long) vp[12 + dvp] * window[4 + dvp]) + ((long) vp[11 + dvp] * window[5 + dvp])
+                    + ((long) vp[10 + dvp] * window[6 + dvp]) + ((long) vp[9 + dvp] * window[7 + dvp]) + ((long) vp[8 + dvp] * window[8 + dvp]) + ((long) vp[7 + dvp] * window[9 + dvp]) + ((long) vp[6 + dvp] * window[10 + dvp]) + ((long) vp[5 + dvp] * window[11 + dvp])
+                    + ((long) vp[4 + dvp] * window[12 + dvp]) + ((long) vp[3 + dvp] * window[13 + dvp]) + ((long) vp[2 + dvp] * window[14 + dvp]) + ((long) vp[1 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples1() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[1 + dvp] * window[0 + dvp]) + ((long) vp[0 + dvp] * window[1 + dvp]) + ((long) vp[15 + dvp] * window[2 + dvp]) + ((long) vp[14 + dvp] * window[3 + dvp]) + ((long) vp[13 + dvp] * window[4 + dvp]) + ((long) vp[12 + dvp] * window[5 + dvp])
+                    + ((long) vp[11 + dvp] * window[6 + dvp]) + ((long) vp[10 + dvp] * window[7 + dvp]) + ((long) vp[9 + dvp] * window[8 + dvp]) + ((long) vp[8 + dvp] * window[9 + dvp]) + ((long) vp[7 + dvp] * window[10 + dvp]) + ((long) vp[6 + dvp] * window[11 + dvp])
+                    + ((long) vp[5 + dvp] * window[12 + dvp]) + ((long) vp[4 + dvp] * window[13 + dvp]) + ((long) vp[3 + dvp] * window[14 + dvp]) + ((long) vp[2 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples2() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[2 + dvp] * window[0 + dvp]) + ((long) vp[1 + dvp] * window[1 + dvp]) + ((long) vp[0 + dvp] * window[2 + dvp]) + ((long) vp[15 + dvp] * window[3 + dvp]) + ((long) vp[14 + dvp] * window[4 + dvp]) + ((long) vp[13 + dvp] * window[5 + dvp])
+                    + ((long) vp[12 + dvp] * window[6 + dvp]) + ((long) vp[11 + dvp] * window[7 + dvp]) + ((long) vp[10 + dvp] * window[8 + dvp]) + ((long) vp[9 + dvp] * window[9 + dvp]) + ((long) vp[8 + dvp] * window[10 + dvp]) + ((long) vp[7 + dvp] * window[11 + dvp])
+                    + ((long) vp[6 + dvp] * window[12 + dvp]) + ((long) vp[5 + dvp] * window[13 + dvp]) + ((long) vp[4 + dvp] * window[14 + dvp]) + ((long) vp[3 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples3() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[3 + dvp] * window[0 + dvp]) + ((long) vp[2 + dvp] * window[1 + dvp]) + ((long) vp[1 + dvp] * window[2 + dvp]) + ((long) vp[0 + dvp] * window[3 + dvp]) + ((long) vp[15 + dvp] * window[4 + dvp]) + ((long) vp[14 + dvp] * window[5 + dvp])
+                    + ((long) vp[13 + dvp] * window[6 + dvp]) + ((long) vp[12 + dvp] * window[7 + dvp]) + ((long) vp[11 + dvp] * window[8 + dvp]) + ((long) vp[10 + dvp] * window[9 + dvp]) + ((long) vp[9 + dvp] * window[10 + dvp]) + ((long) vp[8 + dvp] * window[11 + dvp])
+                    + ((long) vp[7 + dvp] * window[12 + dvp]) + ((long) vp[6 + dvp] * window[13 + dvp]) + ((long) vp[5 + dvp] * window[14 + dvp]) + ((long) vp[4 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples4() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[4 + dvp] * window[0 + dvp]) + ((long) vp[3 + dvp] * window[1 + dvp]) + ((long) vp[2 + dvp] * window[2 + dvp]) + ((long) vp[1 + dvp] * window[3 + dvp]) + ((long) vp[0 + dvp] * window[4 + dvp]) + ((long) vp[15 + dvp] * window[5 + dvp])
+                    + ((long) vp[14 + dvp] * window[6 + dvp]) + ((long) vp[13 + dvp] * window[7 + dvp]) + ((long) vp[12 + dvp] * window[8 + dvp]) + ((long) vp[11 + dvp] * window[9 + dvp]) + ((long) vp[10 + dvp] * window[10 + dvp]) + ((long) vp[9 + dvp] * window[11 + dvp])
+                    + ((long) vp[8 + dvp] * window[12 + dvp]) + ((long) vp[7 + dvp] * window[13 + dvp]) + ((long) vp[6 + dvp] * window[14 + dvp]) + ((long) vp[5 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples5() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[5 + dvp] * window[0 + dvp]) + ((long) vp[4 + dvp] * window[1 + dvp]) + ((long) vp[3 + dvp] * window[2 + dvp]) + ((long) vp[2 + dvp] * window[3 + dvp]) + ((long) vp[1 + dvp] * window[4 + dvp]) + ((long) vp[0 + dvp] * window[5 + dvp])
+                    + ((long) vp[15 + dvp] * window[6 + dvp]) + ((long) vp[14 + dvp] * window[7 + dvp]) + ((long) vp[13 + dvp] * window[8 + dvp]) + ((long) vp[12 + dvp] * window[9 + dvp]) + ((long) vp[11 + dvp] * window[10 + dvp]) + ((long) vp[10 + dvp] * window[11 + dvp])
+                    + ((long) vp[9 + dvp] * window[12 + dvp]) + ((long) vp[8 + dvp] * window[13 + dvp]) + ((long) vp[7 + dvp] * window[14 + dvp]) + ((long) vp[6 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples6() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[6 + dvp] * window[0 + dvp]) + ((long) vp[5 + dvp] * window[1 + dvp]) + ((long) vp[4 + dvp] * window[2 + dvp]) + ((long) vp[3 + dvp] * window[3 + dvp]) + ((long) vp[2 + dvp] * window[4 + dvp]) + ((long) vp[1 + dvp] * window[5 + dvp])
+                    + ((long) vp[0 + dvp] * window[6 + dvp]) + ((long) vp[15 + dvp] * window[7 + dvp]) + ((long) vp[14 + dvp] * window[8 + dvp]) + ((long) vp[13 + dvp] * window[9 + dvp]) + ((long) vp[12 + dvp] * window[10 + dvp]) + ((long) vp[11 + dvp] * window[11 + dvp])
+                    + ((long) vp[10 + dvp] * window[12 + dvp]) + ((long) vp[9 + dvp] * window[13 + dvp]) + ((long) vp[8 + dvp] * window[14 + dvp]) + ((long) vp[7 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples7() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[7 + dvp] * window[0 + dvp]) + ((long) vp[6 + dvp] * window[1 + dvp]) + ((long) vp[5 + dvp] * window[2 + dvp]) + ((long) vp[4 + dvp] * window[3 + dvp]) + ((long) vp[3 + dvp] * window[4 + dvp]) + ((long) vp[2 + dvp] * window[5 + dvp])
+                    + ((long) vp[1 + dvp] * window[6 + dvp]) + ((long) vp[0 + dvp] * window[7 + dvp]) + ((long) vp[15 + dvp] * window[8 + dvp]) + ((long) vp[14 + dvp] * window[9 + dvp]) + ((long) vp[13 + dvp] * window[10 + dvp]) + ((long) vp[12 + dvp] * window[11 + dvp])
+                    + ((long) vp[11 + dvp] * window[12 + dvp]) + ((long) vp[10 + dvp] * window[13 + dvp]) + ((long) vp[9 + dvp] * window[14 + dvp]) + ((long) vp[8 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples8() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[8 + dvp] * window[0 + dvp]) + ((long) vp[7 + dvp] * window[1 + dvp]) + ((long) vp[6 + dvp] * window[2 + dvp]) + ((long) vp[5 + dvp] * window[3 + dvp]) + ((long) vp[4 + dvp] * window[4 + dvp]) + ((long) vp[3 + dvp] * window[5 + dvp])
+                    + ((long) vp[2 + dvp] * window[6 + dvp]) + ((long) vp[1 + dvp] * window[7 + dvp]) + ((long) vp[0 + dvp] * window[8 + dvp]) + ((long) vp[15 + dvp] * window[9 + dvp]) + ((long) vp[14 + dvp] * window[10 + dvp]) + ((long) vp[13 + dvp] * window[11 + dvp])
+                    + ((long) vp[12 + dvp] * window[12 + dvp]) + ((long) vp[11 + dvp] * window[13 + dvp]) + ((long) vp[10 + dvp] * window[14 + dvp]) + ((long) vp[9 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples9() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[9 + dvp] * window[0 + dvp]) + ((long) vp[8 + dvp] * window[1 + dvp]) + ((long) vp[7 + dvp] * window[2 + dvp]) + ((long) vp[6 + dvp] * window[3 + dvp]) + ((long) vp[5 + dvp] * window[4 + dvp]) + ((long) vp[4 + dvp] * window[5 + dvp])
+                    + ((long) vp[3 + dvp] * window[6 + dvp]) + ((long) vp[2 + dvp] * window[7 + dvp]) + ((long) vp[1 + dvp] * window[8 + dvp]) + ((long) vp[0 + dvp] * window[9 + dvp]) + ((long) vp[15 + dvp] * window[10 + dvp]) + ((long) vp[14 + dvp] * window[11 + dvp])
+                    + ((long) vp[13 + dvp] * window[12 + dvp]) + ((long) vp[12 + dvp] * window[13 + dvp]) + ((long) vp[11 + dvp] * window[14 + dvp]) + ((long) vp[10 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples10() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[10 + dvp] * window[0 + dvp]) + ((long) vp[9 + dvp] * window[1 + dvp]) + ((long) vp[8 + dvp] * window[2 + dvp]) + ((long) vp[7 + dvp] * window[3 + dvp]) + ((long) vp[6 + dvp] * window[4 + dvp]) + ((long) vp[5 + dvp] * window[5 + dvp])
+                    + ((long) vp[4 + dvp] * window[6 + dvp]) + ((long) vp[3 + dvp] * window[7 + dvp]) + ((long) vp[2 + dvp] * window[8 + dvp]) + ((long) vp[1 + dvp] * window[9 + dvp]) + ((long) vp[0 + dvp] * window[10 + dvp]) + ((long) vp[15 + dvp] * window[11 + dvp])
+                    + ((long) vp[14 + dvp] * window[12 + dvp]) + ((long) vp[13 + dvp] * window[13 + dvp]) + ((long) vp[12 + dvp] * window[14 + dvp]) + ((long) vp[11 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples11() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[11 + dvp] * window[0 + dvp]) + ((long) vp[10 + dvp] * window[1 + dvp]) + ((long) vp[9 + dvp] * window[2 + dvp]) + ((long) vp[8 + dvp] * window[3 + dvp]) + ((long) vp[7 + dvp] * window[4 + dvp]) + ((long) vp[6 + dvp] * window[5 + dvp])
+                    + ((long) vp[5 + dvp] * window[6 + dvp]) + ((long) vp[4 + dvp] * window[7 + dvp]) + ((long) vp[3 + dvp] * window[8 + dvp]) + ((long) vp[2 + dvp] * window[9 + dvp]) + ((long) vp[1 + dvp] * window[10 + dvp]) + ((long) vp[0 + dvp] * window[11 + dvp])
+                    + ((long) vp[15 + dvp] * window[12 + dvp]) + ((long) vp[14 + dvp] * window[13 + dvp]) + ((long) vp[13 + dvp] * window[14 + dvp]) + ((long) vp[12 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples12() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[12 + dvp] * window[0 + dvp]) + ((long) vp[11 + dvp] * window[1 + dvp]) + ((long) vp[10 + dvp] * window[2 + dvp]) + ((long) vp[9 + dvp] * window[3 + dvp]) + ((long) vp[8 + dvp] * window[4 + dvp]) + ((long) vp[7 + dvp] * window[5 + dvp])
+                    + ((long) vp[6 + dvp] * window[6 + dvp]) + ((long) vp[5 + dvp] * window[7 + dvp]) + ((long) vp[4 + dvp] * window[8 + dvp]) + ((long) vp[3 + dvp] * window[9 + dvp]) + ((long) vp[2 + dvp] * window[10 + dvp]) + ((long) vp[1 + dvp] * window[11 + dvp])
+                    + ((long) vp[0 + dvp] * window[12 + dvp]) + ((long) vp[15 + dvp] * window[13 + dvp]) + ((long) vp[14 + dvp] * window[14 + dvp]) + ((long) vp[13 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples13() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[13 + dvp] * window[0 + dvp]) + ((long) vp[12 + dvp] * window[1 + dvp]) + ((long) vp[11 + dvp] * window[2 + dvp]) + ((long) vp[10 + dvp] * window[3 + dvp]) + ((long) vp[9 + dvp] * window[4 + dvp]) + ((long) vp[8 + dvp] * window[5 + dvp])
+                    + ((long) vp[7 + dvp] * window[6 + dvp]) + ((long) vp[6 + dvp] * window[7 + dvp]) + ((long) vp[5 + dvp] * window[8 + dvp]) + ((long) vp[4 + dvp] * window[9 + dvp]) + ((long) vp[3 + dvp] * window[10 + dvp]) + ((long) vp[2 + dvp] * window[11 + dvp])
+                    + ((long) vp[1 + dvp] * window[12 + dvp]) + ((long) vp[0 + dvp] * window[13 + dvp]) + ((long) vp[15 + dvp] * window[14 + dvp]) + ((long) vp[14 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples14() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[14 + dvp] * window[0 + dvp]) + ((long) vp[13 + dvp] * window[1 + dvp]) + ((long) vp[12 + dvp] * window[2 + dvp]) + ((long) vp[11 + dvp] * window[3 + dvp]) + ((long) vp[10 + dvp] * window[4 + dvp]) + ((long) vp[9 + dvp] * window[5 + dvp])
+                    + ((long) vp[8 + dvp] * window[6 + dvp]) + ((long) vp[7 + dvp] * window[7 + dvp]) + ((long) vp[6 + dvp] * window[8 + dvp]) + ((long) vp[5 + dvp] * window[9 + dvp]) + ((long) vp[4 + dvp] * window[10 + dvp]) + ((long) vp[3 + dvp] * window[11 + dvp])
+                    + ((long) vp[2 + dvp] * window[12 + dvp]) + ((long) vp[1 + dvp] * window[13 + dvp]) + ((long) vp[0 + dvp] * window[14 + dvp]) + ((long) vp[15 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples15() {
+        final int[] vp = actualV;
+        final int[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            long pcmSample = ((long) vp[15 + dvp] * window[0 + dvp]) + ((long) vp[14 + dvp] * window[1 + dvp]) + ((long) vp[13 + dvp] * window[2 + dvp]) + ((long) vp[12 + dvp] * window[3 + dvp]) + ((long) vp[11 + dvp] * window[4 + dvp])
+                    + ((long) vp[10 + dvp] * window[5 + dvp]) + ((long) vp[9 + dvp] * window[6 + dvp]) + ((long) vp[8 + dvp] * window[7 + dvp]) + ((long) vp[7 + dvp] * window[8 + dvp]) + ((long) vp[6 + dvp] * window[9 + dvp]) + ((long) vp[5 + dvp] * window[10 + dvp])
+                    + ((long) vp[4 + dvp] * window[11 + dvp]) + ((long) vp[3 + dvp] * window[12 + dvp]) + ((long) vp[2 + dvp] * window[13 + dvp]) + ((long) vp[1 + dvp] * window[14 + dvp]) + ((long) vp[0 + dvp] * window[15 + dvp]);
+            tmpOut[i] = clip(pcmSample);
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples() {
+        switch (actualWritePos) {
+        case 0:
+            computePcmSamples0();
+            break;
+        case 1:
+            computePcmSamples1();
+            break;
+        case 2:
+            computePcmSamples2();
+            break;
+        case 3:
+            computePcmSamples3();
+            break;
+        case 4:
+            computePcmSamples4();
+            break;
+        case 5:
+            computePcmSamples5();
+            break;
+        case 6:
+            computePcmSamples6();
+            break;
+        case 7:
+            computePcmSamples7();
+            break;
+        case 8:
+            computePcmSamples8();
+            break;
+        case 9:
+            computePcmSamples9();
+            break;
+        case 10:
+            computePcmSamples10();
+            break;
+        case 11:
+            computePcmSamples11();
+            break;
+        case 12:
+            computePcmSamples12();
+            break;
+        case 13:
+            computePcmSamples13();
+            break;
+        case 14:
+            computePcmSamples14();
+            break;
+        case 15:
+            computePcmSamples15();
+            break;
+        default:
+        }
+    }
+
+    /**
+     * Calculate 32 PCM samples and write them. The subband samples are
+     * s[off], s[off + 18], ..., s[off + 558], as left by the IMDCT; loud ones
+     * are scaled down in place.
+     */
+    void calculatePcmSamples(int[] s, int off, Decoder player) {
+        int shift = Fixed.headroomShift(s, off, 18, 32, DCT_BITS);
+        if (shift == 0) {
+            computeNewV(s, off);
+        } else {
+            for (int i = off; i < off + 576; i += 18) {
+                s[i] >>= shift;
+            }
+            computeNewV(s, off);
+            // the new values of V, which saturate
+            for (int i = actualWritePos; i < 512; i += 16) {
+                v1[i] = Fixed.saturate((long) v1[i] << shift);
+                v2[i] = Fixed.saturate((long) v2[i] << shift);
+            }
+        }
+        writePcmSamples(player);
+    }
+
+    /**
+     * Same as calculatePcmSamples with 32 zero subband samples, whose cosine
+     * transform is zero as well.
+     */
+    void calculateSilentPcmSamples(Decoder player) {
+        for (int i = actualWritePos; i < 512; i += 16) {
+            v1[i] = 0;
+            v2[i] = 0;
+        }
+        writePcmSamples(player);
+    }
+
+    private void writePcmSamples(Decoder player) {
+        computePcmSamples();
+        player.appendSamples(channel, tmpOutBuffer);
+        actualWritePos = (actualWritePos + 1) & 0xf;
+        actualV = (actualV == v1) ? v2 : v1;
+    }
+}
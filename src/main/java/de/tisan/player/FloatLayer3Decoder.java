@@ -0,0 +1,415 @@
+package de.tisan.player;
+
+import java.util.Arrays;
+
+/**
+ * Layer 3 decoder working in single precision. Same algorithm as
+ * DoubleLayer3Decoder, with half the memory traffic in the working buffers.
+ */
+final class FloatLayer3Decoder extends Layer3Decoder {
+    private static final float[] POW2 = Constants.toFloat(Constants.POW2);
+    private static final float[] T43 = Constants.toFloat(Constants.T43);
+    private static final float[] TWO_TO_NEGATIVE_HALF_POW = Constants.toFloat(Constants.TWO_TO_NEGATIVE_HALF_POW);
+    private static final float[] TAN12 = Constants.toFloat(Constants.TAN12);
+    private static final float[][] IO_LEFT = Constants.toFloat(Constants.IO_LEFT);
+    private static final float[][] IO_RIGHT = Constants.toFloat(Constants.IO_RIGHT);
+    private static final float[] CS = Constants.toFloat(Constants.CS);
+    private static final float[] CA = Constants.toFloat(Constants.CA);
+    private static final float[][] WIN = Constants.toFloat(Constants.WIN);
+    private final float[] ro0 = new float[SBLIMIT * SSLIMIT];
+    private final float[] ro1 = new float[SBLIMIT * SSLIMIT];
+    private final float[] lr0 = new float[SBLIMIT * SSLIMIT];
+    private final float[] lr1 = new float[SBLIMIT * SSLIMIT];
+    private final float[] out1d = new float[SBLIMIT * SSLIMIT];
+    private final float[][] prevBlock = new float[2][SBLIMIT * SSLIMIT];
+    private final FloatSynthesisFilter filter1, filter2;
+    private final float[] rawout = new float[36];
+
+    FloatLayer3Decoder(Bitstream stream, Header header, FloatSynthesisFilter filter1, FloatSynthesisFilter filter2,
+            Decoder player) {
+        super(stream, header, player);
+        this.filter1 = filter1;
+        this.filter2 = filter2;
+    }
+
+    void reset() {
+        super.reset();
+        Arrays.fill(prevBlock[0], 0);
+        Arrays.fill(prevBlock[1], 0);
+        filter1.reset();
+        if (filter2 != null) {
+            filter2.reset();
+        }
+    }
+
+    void dequantizeSample(int ch, int gr) {
+        float[] xr = (ch == 0) ? ro0 : ro1;
+        GrInfo gi = si.ch[ch].gr[gr];
+        int len = nonzero[ch];
+        scaleIndices(ch, gr);
+        // Compute overall (global) scaling, combined with the scalefactor
+        // gain once per band
+        float globalGain = POW2[gi.globalGain];
+        float gain = globalGain;
+        int gainIndex = 0;
+        for (int j = 0; j < len; j++) {
+            int idx = scaleIndex[j];
+            if (idx != gainIndex) {
+                gainIndex = idx;
+                gain = globalGain * TWO_TO_NEGATIVE_HALF_POW[idx];
+            }
+            int abv = is1d[j];
+            xr[j] = (abv < 0) ? -T43[-abv] * gain : T43[abv] * gain;
+        }
+        for (int j = len; j < 576; j++) {
+            xr[j] = 0.0f;
+        }
+    }
+
+    void stereo(int gr) {
+        if (channels == 1) { // mono , bypass xr[0][][] to lr[0][][]
+            System.arraycopy(ro0, 0, lr0, 0, 576);
+            return;
+        }
+        stereoPositions(gr);
+        for (int i = 0; i < 576; i++) {
+            if (isPos[i] == 7) {
+                if (msStereo) {
+                    lr0[i] = (ro0[i] + ro1[i]) * 0.707106781f;
+                    lr1[i] = (ro0[i] - ro1[i]) * 0.707106781f;
+                } else {
+                    lr0[i] = ro0[i];
+                    lr1[i] = ro1[i];
+                }
+            } else if (iStereo) {
+                if (lsf) {
+                    lr0[i] = ro0[i] * IO_LEFT[ioType][isPos[i]];
+                    lr1[i] = ro0[i] * IO_RIGHT[ioType][isPos[i]];
+                } else {
+                    float isRatio = TAN12[isPos[i]];
+                    lr1[i] = ro0[i] / (1 + isRatio);
+                    lr0[i] = lr1[i] * isRatio;
+                }
+            }
+        }
+    }
+
+    void reorder(int ch, int[] table) {
+        float[] xr = (ch == 0) ? lr0 : lr1;
+        if (table == null) {
+            System.arraycopy(xr, 0, out1d, 0, 576);
+        } else {
+            for (int index = 0; index < 576; index++) {
+                out1d[index] = xr[table[index]];
+            }
+        }
+    }
+
+    int lines() {
+        int lines = 576;
+        while (lines > 0 && out1d[lines - 1] == 0) {
+            lines--;
+        }
+        return lines;
+    }
+
+    void antialias(int sb18Limit) {
+        for (int sb18 = 0; sb18 < sb18Limit; sb18 += 18) {
+            for (int ss = 0; ss < 8; ss++) {
+                int srcIdx1 = sb18 + 17 - ss;
+                int srcIdx2 = sb18 + 18 + ss;
+                float bu = out1d[srcIdx1];
+                float bd = out1d[srcIdx2];
+                out1d[srcIdx1] = (bu * CS[ss]) - (bd * CA[ss]);
+                out1d[srcIdx2] = (bd * CS[ss]) + (bu * CA[ss]);
+            }
+        }
+    }
+
+    void invMdct(int ch, int sb18, int blockType) {
+        fastInvMdct(out1d, sb18, prevBlock[ch], blockType);
+    }
+
+    void takeOverlap(int ch, int from, int to) {
+        float[] p = prevBlock[ch];
+        for (int i = from; i < to; i++) {
+            out1d[i] = p[i];
+            p[i] = 0;
+        }
+    }
+
+    void invertFrequencies(int sb18Limit) {
+        for (int sb18 = 18; sb18 < sb18Limit; sb18 += 36) {
+            for (int ss = 1; ss < SSLIMIT; ss += 2) {
+                out1d[sb18 + ss] = -out1d[sb18 + ss];
+            }
+        }
+    }
+
+    void synthesize(int ch, boolean silent) {
+        FloatSynthesisFilter filter = (ch == 0) ? filter1 : filter2;
+        for (int ss = 0; ss < SSLIMIT; ss++) {
+            if (silent) {
+                filter.calculateSilentPcmSamples(player);
+            } else {
+                filter.calculatePcmSamples(out1d, ss, player);
+            }
+        }
+    }
+
+    /**
+     * IMDCT, windowing and overlap addition of one subband, in place: the 18
+     * lines at in[off] are replaced by the output samples, and prev[off]
+     * receives the second half of the block for the next granule.
+     */
+    private void fastInvMdct(float[] in, int off, float[] prev, int blockType) {
+        float t0, t1, t2, t3, t4, t5, t6, t7, t8, t9;
+        float t10, t11, t12, t13, t14, t15, t16, t17;
+        if (blockType == 2) {
+            float[] out = rawout;
+            for (int p = 0; p < 36; p += 9) {
+                out[p] = out[p + 1] = out[p + 2] = out[p + 3] = out[p + 4] = 0.0f;
+                out[p + 5] = out[p + 6] = out[p + 7] = out[p + 8] = 0.0f;
+            }
+            int sixI = 0;
+            for (int i = 0; i < 3; i++) {
+                // 12 point IMDCT
+                // Begin 12 point IDCT
+                // Input aliasing for 12 pt IDCT
+                in[off + 15 + i] += in[off + 12 + i];
+                in[off + 12 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 6 + i];
+                in[off + 6 + i] += in[off + 3 + i];
+                in[off + 3 + i] += in[off + 0 + i];
+                // Input aliasing on odd indices (for 6 point IDCT)
+                in[off + 15 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 3 + i];
+                // 3 point IDCT on even indices
+                float pp1, pp2, sum;
+                pp2 = in[off + 12 + i] * 0.500000000f;
+                pp1 = in[off + 6 + i] * 0.866025403f;
+                sum = in[off + 0 + i] + pp2;
+                t1 = in[off + 0 + i] - in[off + 12 + i];
+                t0 = sum + pp1;
+                t2 = sum - pp1;
+                // End 3 point IDCT on even indices
+                // 3 point IDCT on odd indices (for 6 point IDCT)
+                pp2 = in[off + 15 + i] * 0.500000000f;
+                pp1 = in[off + 9 + i] * 0.866025403f;
+                sum = in[off + 3 + i] + pp2;
+                t4 = in[off + 3 + i] - in[off + 15 + i];
+                t5 = sum + pp1;
+                t3 = sum - pp1;
+                // End 3 point IDCT on odd indices
+                // Twiddle factors on odd indices (for 6 point IDCT)
+                t3 *= 1.931851653f;
+                t4 *= 0.707106781f;
+                t5 *= 0.517638090f;
+                // Output butterflies on 2 3 point IDCT's (for 6 point IDCT)
+                float save = t0;
+                t0 += t5;
+                t5 = save - t5;
+                save = t1;
+                t1 += t4;
+                t4 = save - t4;
+                save = t2;
+                t2 += t3;
+                t3 = save - t3;
+                // End 6 point IDCT
+                // Twiddle factors on indices (for 12 point IDCT)
+                t0 *= 0.504314480f;
+                t1 *= 0.541196100f;
+                t2 *= 0.630236207f;
+                t3 *= 0.821339815f;
+                t4 *= 1.306562965f;
+                t5 *= 3.830648788f;
+                // End 12 point IDCT
+                // Shift to 12 point modified IDCT, multiply by window type 2
+                t8 = -t0 * 0.793353340f;
+                t9 = -t0 * 0.608761429f;
+                t7 = -t1 * 0.923879532f;
+                t10 = -t1 * 0.382683432f;
+                t6 = -t2 * 0.991444861f;
+                t11 = -t2 * 0.130526192f;
+                t0 = t3;
+                t1 = t4 * 0.382683432f;
+                t2 = t5 * 0.608761429f;
+                t3 = -t5 * 0.793353340f;
+                t4 = -t4 * 0.923879532f;
+                t5 = -t0 * 0.991444861f;
+                t0 *= 0.130526192f;
+                out[sixI + 6] += t0;
+                out[sixI + 7] += t1;
+                out[sixI + 8] += t2;
+                out[sixI + 9] += t3;
+                out[sixI + 10] += t4;
+                out[sixI + 11] += t5;
+                out[sixI + 12] += t6;
+                out[sixI + 13] += t7;
+                out[sixI + 14] += t8;
+                out[sixI + 15] += t9;
+                out[sixI + 16] += t10;
+                out[sixI + 17] += t11;
+                sixI += 6;
+            }
+            // overlap addition; the input is not needed any more
+            for (int k = 0; k < 18; k++) {
+                in[off + k] = out[k] + prev[off + k];
+                prev[off + k] = out[18 + k];
+            }
+        } else {
+            // 36 point IDCT
+            // input aliasing for 36 point IDCT
+            in[off + 17] += in[off + 16];
+            in[off + 16] += in[off + 15];
+            in[off + 15] += in[off + 14];
+            in[off + 14] += in[off + 13];
+            in[off + 13] += in[off + 12];
+            in[off + 12] += in[off + 11];
+            in[off + 11] += in[off + 10];
+            in[off + 10] += in[off + 9];
+            in[off + 9] += in[off + 8];
+            in[off + 8] += in[off + 7];
+            in[off + 7] += in[off + 6];
+            in[off + 6] += in[off + 5];
+            in[off + 5] += in[off + 4];
+            in[off + 4] += in[off + 3];
+            in[off + 3] += in[off + 2];
+            in[off + 2] += in[off + 1];
+            in[off + 1] += in[off + 0];
+            // 18 point IDCT for odd indices
+            // input aliasing for 18 point IDCT
+            in[off + 17] += in[off + 15];
+            in[off + 15] += in[off + 13];
+            in[off + 13] += in[off + 11];
+            in[off + 11] += in[off + 9];
+            in[off + 9] += in[off + 7];
+            in[off + 7] += in[off + 5];
+            in[off + 5] += in[off + 3];
+            in[off + 3] += in[off + 1];
+            float tmp0, tmp1, tmp2, tmp3, tmp4, tmp0b, tmp1b, tmp2b, tmp3b;
+            float tmp0o, tmp1o, tmp2o, tmp3o, tmp4o, tmp0ob, tmp1ob, tmp2ob, tmp3ob;
+            // Fast 9 Point Inverse Discrete Cosine Transform
+            //
+            // By Francois-Raymond Boyer
+            // mailto:boyerf@iro.umontreal.ca
+            // http://www.iro.umontreal.ca/~boyerf
+            //
+            // The code has been optimized for Intel processors
+            // (takes a lot of time to convert float to and from iternal FPU
+            // representation)
+            //
+            // It is a simple "factorization" of the IDCT matrix.
+            // 9 point IDCT on even indices
+            // 5 points on odd indices (not really an IDCT)
+            float i00 = in[off + 0] + in[off + 0];
+            float iip12 = i00 + in[off + 12];
+            tmp0 = iip12 + in[off + 4] * 1.8793852415718f + in[off + 8] * 1.532088886238f + in[off + 16] * 0.34729635533386f;
+            tmp1 = i00 + in[off + 4] - in[off + 8] - in[off + 12] - in[off + 12] - in[off + 16];
+            tmp2 = iip12 - in[off + 4] * 0.34729635533386f - in[off + 8] * 1.8793852415718f + in[off + 16] * 1.532088886238f;
+            tmp3 = iip12 - in[off + 4] * 1.532088886238f + in[off + 8] * 0.34729635533386f - in[off + 16] * 1.8793852415718f;
+            tmp4 = in[off + 0] - in[off + 4] + in[off + 8] - in[off + 12] + in[off + 16];
+            // 4 points on even indices
+            float i6s = in[off + 6] * 1.732050808f; // Sqrt[3]
+            tmp0b = in[off + 2] * 1.9696155060244f + i6s + in[off + 10] * 1.2855752193731f + in[off + 14] * 0.68404028665134f;
+            tmp1b = (in[off + 2] - in[off + 10] - in[off + 14]) * 1.732050808f;
+            tmp2b = in[off + 2] * 1.2855752193731f - i6s - in[off + 10] * 0.68404028665134f + in[off + 14] * 1.9696155060244f;
+            tmp3b = in[off + 2] * 0.68404028665134f - i6s + in[off + 10] * 1.9696155060244f - in[off + 14] * 1.2855752193731f;
+            // 9 point IDCT on odd indices
+            // 5 points on odd indices (not really an IDCT)
+            float i0 = in[off + 0 + 1] + in[off + 0 + 1];
+            float i0p12 = i0 + in[off + 12 + 1];
+            tmp0o = i0p12 + in[off + 4 + 1] * 1.8793852415718f + in[off + 8 + 1] * 1.532088886238f + in[off + 16 + 1] * 0.34729635533386f;
+            tmp1o = i0 + in[off + 4 + 1] - in[off + 8 + 1] - in[off + 12 + 1] - in[off + 12 + 1] - in[off + 16 + 1];
+            tmp2o = i0p12 - in[off + 4 + 1] * 0.34729635533386f - in[off + 8 + 1] * 1.8793852415718f + in[off + 16 + 1] * 1.532088886238f;
+            tmp3o = i0p12 - in[off + 4 + 1] * 1.532088886238f + in[off + 8 + 1] * 0.34729635533386f - in[off + 16 + 1] * 1.8793852415718f;
+            tmp4o = (in[off + 0 + 1] - in[off + 4 + 1] + in[off + 8 + 1] - in[off + 12 + 1] + in[off + 16 + 1]) * 0.707106781f; // Twiddled
+            // 4 points on even indices
+            float i7s = in[off + 6 + 1] * 1.732050808f; // Sqrt[3]
+            tmp0ob = in[off + 2 + 1] * 1.9696155060244f + i7s + in[off + 10 + 1] * 1.2855752193731f + in[off + 14 + 1]
+                    * 0.68404028665134f;
+            tmp1ob = (in[off + 2 + 1] - in[off + 10 + 1] - in[off + 14 + 1]) * 1.732050808f;
+            tmp2ob = in[off + 2 + 1] * 1.2855752193731f - i7s - in[off + 10 + 1] * 0.68404028665134f + in[off + 14 + 1]
+                    * 1.9696155060244f;
+            tmp3ob = in[off + 2 + 1] * 0.68404028665134f - i7s + in[off + 10 + 1] * 1.9696155060244f - in[off + 14 + 1]
+                    * 1.2855752193731f;
+            // Twiddle factors on odd indices and
+            // Butterflies on 9 point IDCT's and
+            // twiddle factors for 36 point IDCT
+            float e, o;
+            e = tmp0 + tmp0b;
+            o = (tmp0o + tmp0ob) * 0.501909918f;
+            t0 = e + o;
+            t17 = e - o;
+            e = tmp1 + tmp1b;
+            o = (tmp1o + tmp1ob) * 0.517638090f;
+            t1 = e + o;
+            t16 = e - o;
+            e = tmp2 + tmp2b;
+            o = (tmp2o + tmp2ob) * 0.551688959f;
+            t2 = e + o;
+            t15 = e - o;
+            e = tmp3 + tmp3b;
+            o = (tmp3o + tmp3ob) * 0.610387294f;
+            t3 = e + o;
+            t14 = e - o;
+            t4 = tmp4 + tmp4o;
+            t13 = tmp4 - tmp4o;
+            e = tmp3 - tmp3b;
+            o = (tmp3o - tmp3ob) * 0.871723397f;
+            t5 = e + o;
+            t12 = e - o;
+            e = tmp2 - tmp2b;
+            o = (tmp2o - tmp2ob) * 1.183100792f;
+            t6 = e + o;
+            t11 = e - o;
+            e = tmp1 - tmp1b;
+            o = (tmp1o - tmp1ob) * 1.931851653f;
+            t7 = e + o;
+            t10 = e - o;
+            e = tmp0 - tmp0b;
+            o = (tmp0o - tmp0ob) * 5.736856623f;
+            t8 = e + o;
+            t9 = e - o;
+            // end 36 point IDCT */
+            // shift to modified IDCT, window and add the previous block
+            float[] win = WIN[blockType];
+            in[off + 0] = -t9 * win[0] + prev[off + 0];
+            in[off + 1] = -t10 * win[1] + prev[off + 1];
+            in[off + 2] = -t11 * win[2] + prev[off + 2];
+            in[off + 3] = -t12 * win[3] + prev[off + 3];
+            in[off + 4] = -t13 * win[4] + prev[off + 4];
+            in[off + 5] = -t14 * win[5] + prev[off + 5];
+            in[off + 6] = -t15 * win[6] + prev[off + 6];
+            in[off + 7] = -t16 * win[7] + prev[off + 7];
+            in[off + 8] = -t17 * win[8] + prev[off + 8];
+            in[off + 9] = t17 * win[9] + prev[off + 9];
+            in[off + 10] = t16 * win[10] + prev[off + 10];
+            in[off + 11] = t15 * win[11] + prev[off + 11];
+            in[off + 12] = t14 * win[12] + prev[off + 12];
+            in[off + 13] = t13 * win[13] + prev[off + 13];
+            in[off + 14] = t12 * win[14] + prev[off + 14];
+            in[off + 15] = t11 * win[15] + prev[off + 15];
+            in[off + 16] = t10 * win[16] + prev[off + 16];
+            in[off + 17] = t9 * win[17] + prev[off + 17];
+            prev[off + 0] = t8 * win[18];
+            prev[off + 1] = t7 * win[19];
+            prev[off + 2] = t6 * win[20];
+            prev[off + 3] = t5 * win[21];
+            prev[off + 4] = t4 * win[22];
+            prev[off + 5] = t3 * win[23];
+            prev[off + 6] = t2 * win[24];
+            prev[off + 7] = t1 * win[25];
+            prev[off + 8] = t0 * win[26];
+            prev[off + 9] = t0 * win[27];
+            prev[off + 10] = t1 * win[28];
+            prev[off + 11] = t2 * win[29];
+            prev[off + 12] = t3 * win[30];
+            prev[off + 13] = t4 * win[31];
+            prev[off + 14] = t5 * win[32];
+            prev[off + 15] = t6 * win[33];
+            prev[off + 16] = t7 * win[34];
+            prev[off + 17] = t8 * win[35];
+        }
+    }
+}
@@ -0,0 +1,664 @@
+package de.tisan.player;
+
+import java.util.Arrays;
+
+/**
+ * Single precision version of SynthesisFilter.
+ */
+final class FloatSynthesisFilter {
+    private float[] v1 = new float[512];
+    private float[] v2 = new float[512];
+    private float[] actualV = v1; // v1 or v2
+    private int actualWritePos = 15; // 0-15
+    private int channel;
+    private float scaleFactor;
+    private float[] tmpOutBuffer = new float[32];
+    // DOUBLE
+    private static final double MY_PI = 3.14159265358979323846;
+    private static final float COS1_64 = (float) divCos(MY_PI / 64.0);
+    private static final float COS3_64 = (float) divCos(MY_PI * 3.0 / 64.0);
+    private static final float COS5_64 = (float) divCos(MY_PI * 5.0 / 64.0);
+    private static final float COS7_64 = (float) divCos(MY_PI * 7.0 / 64.0);
+    private static final float COS9_64 = (float) divCos(MY_PI * 9.0 / 64.0);
+    private static final float COS11_64 = (float) divCos(MY_PI * 11.0 / 64.0);
+    private static final float COS13_64 = (float) divCos(MY_PI * 13.0 / 64.0);
+    private static final float COS15_64 = (float) divCos(MY_PI * 15.0 / 64.0);
+    private static final float COS17_64 = (float) divCos(MY_PI * 17.0 / 64.0);
+    private static final float COS19_64 = (float) divCos(MY_PI * 19.0 / 64.0);
+    private static final float COS21_64 = (float) divCos(MY_PI * 21.0 / 64.0);
+    private static final float COS23_64 = (float) divCos(MY_PI * 23.0 / 64.0);
+    private static final float COS25_64 = (float) divCos(MY_PI * 25.0 / 64.0);
+    private static final float COS27_64 = (float) divCos(MY_PI * 27.0 / 64.0);
+    private static final float COS29_64 = (float) divCos(MY_PI * 29.0 / 64.0);
+    private static final float COS31_64 = (float) divCos(MY_PI * 31.0 / 64.0);
+    private static final float COS1_32 = (float) divCos(MY_PI / 32.0);
+    private static final float COS3_32 = (float) divCos(MY_PI * 3.0 / 32.0);
+    private static final float COS5_32 = (float) divCos(MY_PI * 5.0 / 32.0);
+    private static final float COS7_32 = (float) divCos(MY_PI * 7.0 / 32.0);
+    private static final float COS9_32 = (float) divCos(MY_PI * 9.0 / 32.0);
+    private static final float COS11_32 = (float) divCos(MY_PI * 11.0 / 32.0);
+    private static final float COS13_32 = (float) divCos(MY_PI * 13.0 / 32.0);
+    private static final float COS15_32 = (float) divCos(MY_PI * 15.0 / 32.0);
+    private static final float COS1_16 = (float) divCos(MY_PI / 16.0);
+    private static final float COS3_16 = (float) divCos(MY_PI * 3.0 / 16.0);
+    private static final float COS5_16 = (float) divCos(MY_PI * 5.0 / 16.0);
+    private static final float COS7_16 = (float) divCos(MY_PI * 7.0 / 16.0);
+    private static final float COS1_8 = (float) divCos(MY_PI / 8.0);
+    private static final float COS3_8 = (float) divCos(MY_PI * 3.0 / 8.0);
+    private static final float COS1_4 = (float) divCos(MY_PI / 4.0);
+    private static final float[] D = Constants.toFloat(Constants.D);
+
+    /**
+     * Contructor. The scalefactor scales the calculated float pcm samples to short values (raw pcm samples are in
+     * [-1.0, 1.0], if no violations occur).
+     */
+    FloatSynthesisFilter(int channelNumber, float factor) {
+        channel = channelNumber;
+        scaleFactor = factor;
+    }
+
+    /**
+     * Clears the samples of the previous stream.
+     */
+    void reset() {
+        Arrays.fill(v1, 0);
+        Arrays.fill(v2, 0);
+        actualV = v1;
+        actualWritePos = 15;
+    }
+
+    private static double divCos(double a) {
+        return (1.0 / (2.0 * Math.cos(a)));
+    }
+
+    /**
+     * Compute new values via a fast cosine transform.
+     */
+    private void computeNewV(float[] s, int off) {
+        float nv0, nv1, nv2, nv3, nv4, nv5, nv6, nv7, nv8, nv9;
+        float nv10, nv11, nv12, nv13, nv14, nv15, nv16, nv17, nv18, nv19;
+        float nv20, nv21, nv22, nv23, nv24, nv25, nv26, nv27, nv28, nv29;
+        float nv30, nv31;
+        float s0 = s[off];
+        float s1 = s[off + 18];
+        float s2 = s[off + 36];
+        float s3 = s[off + 54];
+        float s4 = s[off + 72];
+        float s5 = s[off + 90];
+        float s6 = s[off + 108];
+        float s7 = s[off + 126];
+        float s8 = s[off + 144];
+        float s9 = s[off + 162];
+        float s10 = s[off + 180];
+        float s11 = s[off + 198];
+        float s12 = s[off + 216];
+        float s13 = s[off + 234];
+        float s14 = s[off + 252];
+        float s15 = s[off + 270];
+        float s16 = s[off + 288];
+        float s17 = s[off + 306];
+        float s18 = s[off + 324];
+        float s19 = s[off + 342];
+        float s20 = s[off + 360];
+        float s21 = s[off + 378];
+        float s22 = s[off + 396];
+        float s23 = s[off + 414];
+        float s24 = s[off + 432];
+        float s25 = s[off + 450];
+        float s26 = s[off + 468];
+        float s27 = s[off + 486];
+        float s28 = s[off + 504];
+        float s29 = s[off + 522];
+        float s30 = s[off + 540];
+        float s31 = s[off + 558];
+        float p0 = s0 + s31;
+        float p1 = s1 + s30;
+        float p2 = s2 + s29;
+        float p3 = s3 + s28;
+        float p4 = s4 + s27;
+        float p5 = s5 + s26;
+        float p6 = s6 + s25;
+        float p7 = s7 + s24;
+        float p8 = s8 + s23;
+        float p9 = s9 + s22;
+        float p10 = s10 + s21;
+        float p11 = s11 + s20;
+        float p12 = s12 + s19;
+        float p13 = s13 + s18;
+        float p14 = s14 + s17;
+        float p15 = s15 + s16;
+        float pp0 = p0 + p15;
+        float pp1 = p1 + p14;
+        float pp2 = p2 + p13;
+        float pp3 = p3 + p12;
+        float pp4 = p4 + p11;
+        float pp5 = p5 + p10;
+        float pp6 = p6 + p9;
+        float pp7 = p7 + p8;
+        float pp8 = (p0 - p15) * COS1_32;
+        float pp9 = (p1 - p14) * COS3_32;
+        float pp10 = (p2 - p13) * COS5_32;
+        float pp11 = (p3 - p12) * COS7_32;
+        float pp12 = (p4 - p11) * COS9_32;
+        float pp13 = (p5 - p10) * COS11_32;
+        float pp14 = (p6 - p9) * COS13_32;
+        float pp15 = (p7 - p8) * COS15_32;
+        p0 = pp0 + pp7;
+        p1 = pp1 + pp6;
+        p2 = pp2 + pp5;
+        p3 = pp3 + pp4;
+        p4 = (pp0 - pp7) * COS1_16;
+        p5 = (pp1 - pp6) * COS3_16;
+        p6 = (pp2 - pp5) * COS5_16;
+        p7 = (pp3 - pp4) * COS7_16;
+        p8 = pp8 + pp15;
+        p9 = pp9 + pp14;
+        p10 = pp10 + pp13;
+        p11 = pp11 + pp12;
+        p12 = (pp8 - pp15) * COS1_16;
+        p13 = (pp9 - pp14) * COS3_16;
+        p14 = (pp10 - pp13) * COS5_16;
+        p15 = (pp11 - pp12) * COS7_16;
+        pp0 = p0 + p3;
+        pp1 = p1 + p2;
+        pp2 = (p0 - p3) * COS1_8;
+        pp3 = (p1 - p2) * COS3_8;
+        pp4 = p4 + p7;
+        pp5 = p5 + p6;
+        pp6 = (p4 - p7) * COS1_8;
+        pp7 = (p5 - p6) * COS3_8;
+        pp8 = p8 + p11;
+        pp9 = p9 + p10;
+        pp10 = (p8 - p11) * COS1_8;
+        pp11 = (p9 - p10) * COS3_8;
+        pp12 = p12 + p15;
+        pp13 = p13 + p14;
+        pp14 = (p12 - p15) * COS1_8;
+        pp15 = (p13 - p14) * COS3_8;
+        p0 = pp0 + pp1;
+        p1 = (pp0 - pp1) * COS1_4;
+        p2 = pp2 + pp3;
+        p3 = (pp2 - pp3) * COS1_4;
+        p4 = pp4 + pp5;
+        p5 = (pp4 - pp5) * COS1_4;
+        p6 = pp6 + pp7;
+        p7 = (pp6 - pp7) * COS1_4;
+        p8 = pp8 + pp9;
+        p9 = (pp8 - pp9) * COS1_4;
+        p10 = pp10 + pp11;
+        p11 = (pp10 - pp11) * COS1_4;
+        p12 = pp12 + pp13;
+        p13 = (pp12 - pp13) * COS1_4;
+        p14 = pp14 + pp15;
+        p15 = (pp14 - pp15) * COS1_4;
+        // this is pretty insane coding
+        float tmp1;
+        nv19 = -(nv4 = (nv12 = p7) + p5) - p6; // 36-17
+        nv27 = -p6 - p7 - p4; // 44-17
+        nv6 = (nv10 = (nv14 = p15) + p11) + p13;
+        nv17 = -(nv2 = p15 + p13 + p9) - p14; // 34-17
+        nv21 = (tmp1 = -p14 - p15 - p10 - p11) - p13; // 38-17
+        nv29 = -p14 - p15 - p12 - p8; // 46-17
+        nv25 = tmp1 - p12; // 42-17
+        nv31 = -p0; // 48-17
+        nv0 = p1;
+        nv23 = -(nv8 = p3) - p2; // 40-17
+        p0 = (s0 - s31) * COS1_64;
+        p1 = (s1 - s30) * COS3_64;
+        p2 = (s2 - s29) * COS5_64;
+        p3 = (s3 - s28) * COS7_64;
+        p4 = (s4 - s27) * COS9_64;
+        p5 = (s5 - s26) * COS11_64;
+        p6 = (s6 - s25) * COS13_64;
+        p7 = (s7 - s24) * COS15_64;
+        p8 = (s8 - s23) * COS17_64;
+        p9 = (s9 - s22) * COS19_64;
+        p10 = (s10 - s21) * COS21_64;
+        p11 = (s11 - s20) * COS23_64;
+        p12 = (s12 - s19) * COS25_64;
+        p13 = (s13 - s18) * COS27_64;
+        p14 = (s14 - s17) * COS29_64;
+        p15 = (s15 - s16) * COS31_64;
+        pp0 = p0 + p15;
+        pp1 = p1 + p14;
+        pp2 = p2 + p13;
+        pp3 = p3 + p12;
+        pp4 = p4 + p11;
+        pp5 = p5 + p10;
+        pp6 = p6 + p9;
+        pp7 = p7 + p8;
+        pp8 = (p0 - p15) * COS1_32;
+        pp9 = (p1 - p14) * COS3_32;
+        pp10 = (p2 - p13) * COS5_32;
+        pp11 = (p3 - p12) * COS7_32;
+        pp12 = (p4 - p11) * COS9_32;
+        pp13 = (p5 - p10) * COS11_32;
+        pp14 = (p6 - p9) * COS13_32;
+        pp15 = (p7 - p8) * COS15_32;
+        p0 = pp0 + pp7;
+        p1 = pp1 + pp6;
+        p2 = pp2 + pp5;
+        p3 = pp3 + pp4;
+        p4 = (pp0 - pp7) * COS1_16;
+        p5 = (pp1 - pp6) * COS3_16;
+        p6 = (pp2 - pp5) * COS5_16;
+        p7 = (pp3 - pp4) * COS7_16;
+        p8 = pp8 + pp15;
+        p9 = pp9 + pp14;
+        p10 = pp10 + pp13;
+        p11 = pp11 + pp12;
+        p12 = (pp8 - pp15) * COS1_16;
+        p13 = (pp9 - pp14) * COS3_16;
+        p14 = (pp10 - pp13) * COS5_16;
+        p15 = (pp11 - pp12) * COS7_16;
+        pp0 = p0 + p3;
+        pp1 = p1 + p2;
+        pp2 = (p0 - p3) * COS1_8;
+        pp3 = (p1 - p2) * COS3_8;
+        pp4 = p4 + p7;
+        pp5 = p5 + p6;
+        pp6 = (p4 - p7) * COS1_8;
+        pp7 = (p5 - p6) * COS3_8;
+        pp8 = p8 + p11;
+        pp9 = p9 + p10;
+        pp10 = (p8 - p11) * COS1_8;
+        pp11 = (p9 - p10) * COS3_8;
+        pp12 = p12 + p15;
+        pp13 = p13 + p14;
+        pp14 = (p12 - p15) * COS1_8;
+        pp15 = (p13 - p14) * COS3_8;
+        p0 = pp0 + pp1;
+        p1 = (pp0 - pp1) * COS1_4;
+        p2 = pp2 + pp3;
+        p3 = (pp2 - pp3) * COS1_4;
+        p4 = pp4 + pp5;
+        p5 = (pp4 - pp5) * COS1_4;
+        p6 = pp6 + pp7;
+        p7 = (pp6 - pp7) * COS1_4;
+        p8 = pp8 + pp9;
+        p9 = (pp8 - pp9) * COS1_4;
+        p10 = pp10 + pp11;
+        p11 = (pp10 - pp11) * COS1_4;
+        p12 = pp12 + pp13;
+        p13 = (pp12 - pp13) * COS1_4;
+        p14 = pp14 + pp15;
+        p15 = (pp14 - pp15) * COS1_4;
+        // manually doing something that a compiler should handle sucks
+        // coding like this is hard to read
+        float tmp2;
+        nv5 = (nv11 = (nv13 = (nv15 = p15) + p7) + p11) + p5 + p13;
+        nv7 = (nv9 = p15 + p11 + p3) + p13;
+        nv16 = -(nv1 = (tmp1 = p13 + p15 + p9) + p1) - p14; // 33-17
+        nv18 = -(nv3 = tmp1 + p5 + p7) - p6 - p14; // 35-17
+        nv22 = (tmp1 = -p10 - p11 - p14 - p15) - p13 - p2 - p3; // 39-17
+        nv20 = tmp1 - p13 - p5 - p6 - p7; // 37-17
+        nv24 = tmp1 - p12 - p2 - p3; // 41-17
+        nv26 = tmp1 - p12 - (tmp2 = p4 + p6 + p7); // 43-17
+        nv30 = (tmp1 = -p8 - p12 - p14 - p15) - p0; // 47-17
+        nv28 = tmp1 - tmp2; // 45-17
+        // insert V[0-15] (== nv[0-15]) into actual v:
+        // float[] x2 = actual_v + actual_write_pos;
+        float[] dest = actualV;
+        int pos = actualWritePos;
+        dest[0 + pos] = nv0;
+        dest[16 + pos] = nv1;
+        dest[32 + pos] = nv2;
+        dest[48 + pos] = nv3;
+        dest[64 + pos] = nv4;
+        dest[80 + pos] = nv5;
+        dest[96 + pos] = nv6;
+        dest[112 + pos] = nv7;
+        dest[128 + pos] = nv8;
+        dest[144 + pos] = nv9;
+        dest[160 + pos] = nv10;
+        dest[176 + pos] = nv11;
+        dest[192 + pos] = nv12;
+        dest[208 + pos] = nv13;
+        dest[224 + pos] = nv14;
+        dest[240 + pos] = nv15;
+        // V[16] is always 0.0:
+        dest[256 + pos] = 0.0f;
+        // insert V[17-31] (== -nv[15-1]) into actual v:
+        dest[272 + pos] = -nv15;
+        dest[288 + pos] = -nv14;
+        dest[304 + pos] = -nv13;
+        dest[320 + pos] = -nv12;
+        dest[336 + pos] = -nv11;
+        dest[352 + pos] = -nv10;
+        dest[368 + pos] = -nv9;
+        dest[384 + pos] = -nv8;
+        dest[400 + pos] = -nv7;
+        dest[416 + pos] = -nv6;
+        dest[432 + pos] = -nv5;
+        dest[448 + pos] = -nv4;
+        dest[464 + pos] = -nv3;
+        dest[480 + pos] = -nv2;
+        dest[496 + pos] = -nv1;
+        // insert V[32] (== -nv[0]) into other v:
+        dest = (actualV == v1) ? v2 : v1;
+        dest[0 + pos] = -nv0;
+        // insert V[33-48] (== nv[16-31]) into other v:
+        dest[16 + pos] = nv16;
+        dest[32 + pos] = nv17;
+        dest[48 + pos] = nv18;
+        dest[64 + pos] = nv19;
+        dest[80 + pos] = nv20;
+        dest[96 + pos] = nv21;
+        dest[112 + pos] = nv22;
+        dest[128 + pos] = nv23;
+        dest[144 + pos] = nv24;
+        dest[160 + pos] = nv25;
+        dest[176 + pos] = nv26;
+        dest[192 + pos] = nv27;
+        dest[208 + pos] = nv28;
+        dest[224 + pos] = nv29;
+        dest[240 + pos] = nv30;
+        dest[256 + pos] = nv31;
+        // insert V[49-63] (== nv[30-16]) into other v:
+        dest[272 + pos] = nv30;
+        dest[288 + pos] = nv29;
+        dest[304 + pos] = nv28;
+        dest[320 + pos] = nv27;
+        dest[336 + pos] = nv26;
+        dest[352 + pos] = nv25;
+        dest[368 + pos] = nv24;
+        dest[384 + pos] = nv23;
+        dest[400 + pos] = nv22;
+        dest[416 + pos] = nv21;
+        dest[432 + pos] = nv20;
+        dest[448 + pos] = nv19;
+        dest[464 + pos] = nv18;
+        dest[480 + pos] = nv17;
+        dest[496 + pos] = nv16;
+    }
+
+    private void computePcmSamples0() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[0 + dvp] * D[0 + dvp]) + (vp[15 + dvp] * D[1 + dvp]) + (vp[14 + dvp] * D[2 + dvp]) + (vp[13 + dvp] * D[3 + dvp]) + (vp[12 + dvp] * D[4 + dvp]) + (vp[11 + dvp] * D[5 + dvp])
+                    + (vp[10 + dvp] * D[6 + dvp]) + (vp[9 + dvp] * D[7 + dvp]) + (vp[8 + dvp] * D[8 + dvp]) + (vp[7 + dvp] * D[9 + dvp]) + (vp[6 + dvp] * D[10 + dvp]) + (vp[5 + dvp] * D[11 + dvp])
+                    + (vp[4 + dvp] * D[12 + dvp]) + (vp[3 + dvp] * D[13 + dvp]) + (vp[2 + dvp] * D[14 + dvp]) + (vp[1 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples1() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[1 + dvp] * D[0 + dvp]) + (vp[0 + dvp] * D[1 + dvp]) + (vp[15 + dvp] * D[2 + dvp]) + (vp[14 + dvp] * D[3 + dvp]) + (vp[13 + dvp] * D[4 + dvp]) + (vp[12 + dvp] * D[5 + dvp])
+                    + (vp[11 + dvp] * D[6 + dvp]) + (vp[10 + dvp] * D[7 + dvp]) + (vp[9 + dvp] * D[8 + dvp]) + (vp[8 + dvp] * D[9 + dvp]) + (vp[7 + dvp] * D[10 + dvp]) + (vp[6 + dvp] * D[11 + dvp])
+                    + (vp[5 + dvp] * D[12 + dvp]) + (vp[4 + dvp] * D[13 + dvp]) + (vp[3 + dvp] * D[14 + dvp]) + (vp[2 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples2() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[2 + dvp] * D[0 + dvp]) + (vp[1 + dvp] * D[1 + dvp]) + (vp[0 + dvp] * D[2 + dvp]) + (vp[15 + dvp] * D[3 + dvp]) + (vp[14 + dvp] * D[4 + dvp]) + (vp[13 + dvp] * D[5 + dvp])
+                    + (vp[12 + dvp] * D[6 + dvp]) + (vp[11 + dvp] * D[7 + dvp]) + (vp[10 + dvp] * D[8 + dvp]) + (vp[9 + dvp] * D[9 + dvp]) + (vp[8 + dvp] * D[10 + dvp]) + (vp[7 + dvp] * D[11 + dvp])
+                    + (vp[6 + dvp] * D[12 + dvp]) + (vp[5 + dvp] * D[13 + dvp]) + (vp[4 + dvp] * D[14 + dvp]) + (vp[3 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples3() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[3 + dvp] * D[0 + dvp]) + (vp[2 + dvp] * D[1 + dvp]) + (vp[1 + dvp] * D[2 + dvp]) + (vp[0 + dvp] * D[3 + dvp]) + (vp[15 + dvp] * D[4 + dvp]) + (vp[14 + dvp] * D[5 + dvp])
+                    + (vp[13 + dvp] * D[6 + dvp]) + (vp[12 + dvp] * D[7 + dvp]) + (vp[11 + dvp] * D[8 + dvp]) + (vp[10 + dvp] * D[9 + dvp]) + (vp[9 + dvp] * D[10 + dvp]) + (vp[8 + dvp] * D[11 + dvp])
+                    + (vp[7 + dvp] * D[12 + dvp]) + (vp[6 + dvp] * D[13 + dvp]) + (vp[5 + dvp] * D[14 + dvp]) + (vp[4 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples4() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[4 + dvp] * D[0 + dvp]) + (vp[3 + dvp] * D[1 + dvp]) + (vp[2 + dvp] * D[2 + dvp]) + (vp[1 + dvp] * D[3 + dvp]) + (vp[0 + dvp] * D[4 + dvp]) + (vp[15 + dvp] * D[5 + dvp])
+                    + (vp[14 + dvp] * D[6 + dvp]) + (vp[13 + dvp] * D[7 + dvp]) + (vp[12 + dvp] * D[8 + dvp]) + (vp[11 + dvp] * D[9 + dvp]) + (vp[10 + dvp] * D[10 + dvp]) + (vp[9 + dvp] * D[11 + dvp])
+                    + (vp[8 + dvp] * D[12 + dvp]) + (vp[7 + dvp] * D[13 + dvp]) + (vp[6 + dvp] * D[14 + dvp]) + (vp[5 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples5() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[5 + dvp] * D[0 + dvp]) + (vp[4 + dvp] * D[1 + dvp]) + (vp[3 + dvp] * D[2 + dvp]) + (vp[2 + dvp] * D[3 + dvp]) + (vp[1 + dvp] * D[4 + dvp]) + (vp[0 + dvp] * D[5 + dvp])
+                    + (vp[15 + dvp] * D[6 + dvp]) + (vp[14 + dvp] * D[7 + dvp]) + (vp[13 + dvp] * D[8 + dvp]) + (vp[12 + dvp] * D[9 + dvp]) + (vp[11 + dvp] * D[10 + dvp]) + (vp[10 + dvp] * D[11 + dvp])
+                    + (vp[9 + dvp] * D[12 + dvp]) + (vp[8 + dvp] * D[13 + dvp]) + (vp[7 + dvp] * D[14 + dvp]) + (vp[6 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples6() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[6 + dvp] * D[0 + dvp]) + (vp[5 + dvp] * D[1 + dvp]) + (vp[4 + dvp] * D[2 + dvp]) + (vp[3 + dvp] * D[3 + dvp]) + (vp[2 + dvp] * D[4 + dvp]) + (vp[1 + dvp] * D[5 + dvp])
+                    + (vp[0 + dvp] * D[6 + dvp]) + (vp[15 + dvp] * D[7 + dvp]) + (vp[14 + dvp] * D[8 + dvp]) + (vp[13 + dvp] * D[9 + dvp]) + (vp[12 + dvp] * D[10 + dvp]) + (vp[11 + dvp] * D[11 + dvp])
+                    + (vp[10 + dvp] * D[12 + dvp]) + (vp[9 + dvp] * D[13 + dvp]) + (vp[8 + dvp] * D[14 + dvp]) + (vp[7 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples7() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[7 + dvp] * D[0 + dvp]) + (vp[6 + dvp] * D[1 + dvp]) + (vp[5 + dvp] * D[2 + dvp]) + (vp[4 + dvp] * D[3 + dvp]) + (vp[3 + dvp] * D[4 + dvp]) + (vp[2 + dvp] * D[5 + dvp])
+                    + (vp[1 + dvp] * D[6 + dvp]) + (vp[0 + dvp] * D[7 + dvp]) + (vp[15 + dvp] * D[8 + dvp]) + (vp[14 + dvp] * D[9 + dvp]) + (vp[13 + dvp] * D[10 + dvp]) + (vp[12 + dvp] * D[11 + dvp])
+                    + (vp[11 + dvp] * D[12 + dvp]) + (vp[10 + dvp] * D[13 + dvp]) + (vp[9 + dvp] * D[14 + dvp]) + (vp[8 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples8() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[8 + dvp] * D[0 + dvp]) + (vp[7 + dvp] * D[1 + dvp]) + (vp[6 + dvp] * D[2 + dvp]) + (vp[5 + dvp] * D[3 + dvp]) + (vp[4 + dvp] * D[4 + dvp]) + (vp[3 + dvp] * D[5 + dvp])
+                    + (vp[2 + dvp] * D[6 + dvp]) + (vp[1 + dvp] * D[7 + dvp]) + (vp[0 + dvp] * D[8 + dvp]) + (vp[15 + dvp] * D[9 + dvp]) + (vp[14 + dvp] * D[10 + dvp]) + (vp[13 + dvp] * D[11 + dvp])
+                    + (vp[12 + dvp] * D[12 + dvp]) + (vp[11 + dvp] * D[13 + dvp]) + (vp[10 + dvp] * D[14 + dvp]) + (vp[9 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples9() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[9 + dvp] * D[0 + dvp]) + (vp[8 + dvp] * D[1 + dvp]) + (vp[7 + dvp] * D[2 + dvp]) + (vp[6 + dvp] * D[3 + dvp]) + (vp[5 + dvp] * D[4 + dvp]) + (vp[4 + dvp] * D[5 + dvp])
+                    + (vp[3 + dvp] * D[6 + dvp]) + (vp[2 + dvp] * D[7 + dvp]) + (vp[1 + dvp] * D[8 + dvp]) + (vp[0 + dvp] * D[9 + dvp]) + (vp[15 + dvp] * D[10 + dvp]) + (vp[14 + dvp] * D[11 + dvp])
+                    + (vp[13 + dvp] * D[12 + dvp]) + (vp[12 + dvp] * D[13 + dvp]) + (vp[11 + dvp] * D[14 + dvp]) + (vp[10 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples10() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[10 + dvp] * D[0 + dvp]) + (vp[9 + dvp] * D[1 + dvp]) + (vp[8 + dvp] * D[2 + dvp]) + (vp[7 + dvp] * D[3 + dvp]) + (vp[6 + dvp] * D[4 + dvp]) + (vp[5 + dvp] * D[5 + dvp])
+                    + (vp[4 + dvp] * D[6 + dvp]) + (vp[3 + dvp] * D[7 + dvp]) + (vp[2 + dvp] * D[8 + dvp]) + (vp[1 + dvp] * D[9 + dvp]) + (vp[0 + dvp] * D[10 + dvp]) + (vp[15 + dvp] * D[11 + dvp])
+                    + (vp[14 + dvp] * D[12 + dvp]) + (vp[13 + dvp] * D[13 + dvp]) + (vp[12 + dvp] * D[14 + dvp]) + (vp[11 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples11() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[11 + dvp] * D[0 + dvp]) + (vp[10 + dvp] * D[1 + dvp]) + (vp[9 + dvp] * D[2 + dvp]) + (vp[8 + dvp] * D[3 + dvp]) + (vp[7 + dvp] * D[4 + dvp]) + (vp[6 + dvp] * D[5 + dvp])
+                    + (vp[5 + dvp] * D[6 + dvp]) + (vp[4 + dvp] * D[7 + dvp]) + (vp[3 + dvp] * D[8 + dvp]) + (vp[2 + dvp] * D[9 + dvp]) + (vp[1 + dvp] * D[10 + dvp]) + (vp[0 + dvp] * D[11 + dvp])
+                    + (vp[15 + dvp] * D[12 + dvp]) + (vp[14 + dvp] * D[13 + dvp]) + (vp[13 + dvp] * D[14 + dvp]) + (vp[12 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples12() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[12 + dvp] * D[0 + dvp]) + (vp[11 + dvp] * D[1 + dvp]) + (vp[10 + dvp] * D[2 + dvp]) + (vp[9 + dvp] * D[3 + dvp]) + (vp[8 + dvp] * D[4 + dvp]) + (vp[7 + dvp] * D[5 + dvp])
+                    + (vp[6 + dvp] * D[6 + dvp]) + (vp[5 + dvp] * D[7 + dvp]) + (vp[4 + dvp] * D[8 + dvp]) + (vp[3 + dvp] * D[9 + dvp]) + (vp[2 + dvp] * D[10 + dvp]) + (vp[1 + dvp] * D[11 + dvp])
+                    + (vp[0 + dvp] * D[12 + dvp]) + (vp[15 + dvp] * D[13 + dvp]) + (vp[14 + dvp] * D[14 + dvp]) + (vp[13 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples13() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[13 + dvp] * D[0 + dvp]) + (vp[12 + dvp] * D[1 + dvp]) + (vp[11 + dvp] * D[2 + dvp]) + (vp[10 + dvp] * D[3 + dvp]) + (vp[9 + dvp] * D[4 + dvp]) + (vp[8 + dvp] * D[5 + dvp])
+                    + (vp[7 + dvp] * D[6 + dvp]) + (vp[6 + dvp] * D[7 + dvp]) + (vp[5 + dvp] * D[8 + dvp]) + (vp[4 + dvp] * D[9 + dvp]) + (vp[3 + dvp] * D[10 + dvp]) + (vp[2 + dvp] * D[11 + dvp])
+                    + (vp[1 + dvp] * D[12 + dvp]) + (vp[0 + dvp] * D[13 + dvp]) + (vp[15 + dvp] * D[14 + dvp]) + (vp[14 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples14() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[14 + dvp] * D[0 + dvp]) + (vp[13 + dvp] * D[1 + dvp]) + (vp[12 + dvp] * D[2 + dvp]) + (vp[11 + dvp] * D[3 + dvp]) + (vp[10 + dvp] * D[4 + dvp]) + (vp[9 + dvp] * D[5 + dvp])
+                    + (vp[8 + dvp] * D[6 + dvp]) + (vp[7 + dvp] * D[7 + dvp]) + (vp[6 + dvp] * D[8 + dvp]) + (vp[5 + dvp] * D[9 + dvp]) + (vp[4 + dvp] * D[10 + dvp]) + (vp[3 + dvp] * D[11 + dvp])
+                    + (vp[2 + dvp] * D[12 + dvp]) + (vp[1 + dvp] * D[13 + dvp]) + (vp[0 + dvp] * D[14 + dvp]) + (vp[15 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples15() {
+        final float[] vp = actualV;
+        final float[] tmpOut = tmpOutBuffer;
+        int dvp = 0;
+        for (int i = 0; i < 32; i++) {
+            float pcmSample = (((vp[15 + dvp] * D[0 + dvp]) + (vp[14 + dvp] * D[1 + dvp]) + (vp[13 + dvp] * D[2 + dvp]) + (vp[12 + dvp] * D[3 + dvp]) + (vp[11 + dvp] * D[4 + dvp])
+                    + (vp[10 + dvp] * D[5 + dvp]) + (vp[9 + dvp] * D[6 + dvp]) + (vp[8 + dvp] * D[7 + dvp]) + (vp[7 + dvp] * D[8 + dvp]) + (vp[6 + dvp] * D[9 + dvp]) + (vp[5 + dvp] * D[10 + dvp])
+                    + (vp[4 + dvp] * D[11 + dvp]) + (vp[3 + dvp] * D[12 + dvp]) + (vp[2 + dvp] * D[13 + dvp]) + (vp[1 + dvp] * D[14 + dvp]) + (vp[0 + dvp] * D[15 + dvp])) * scaleFactor);
+            tmpOut[i] = pcmSample;
+            dvp += 16;
+        }
+    }
+
+    private void computePcmSamples() {
+        switch (actualWritePos) {
+        case 0:
+            computePcmSamples0();
+            break;
+        case 1:
+            computePcmSamples1();
+            break;
+        case 2:
+            computePcmSamples2();
+            break;
+        case 3:
+            computePcmSamples3();
+            break;
+        case 4:
+            computePcmSamples4();
+            break;
+        case 5:
+            computePcmSamples5();
+            break;
+        case 6:
+            computePcmSamples6();
+            break;
+        case 7:
+            computePcmSamples7();
+            break;
+        case 8:
+            computePcmSamples8();
+            break;
+        case 9:
+            computePcmSamples9();
+            break;
+        case 10:
+            computePcmSamples10();
+            break;
+        case 11:
+            computePcmSamples11();
+            break;
+        case 12:
+            computePcmSamples12();
+            break;
+        case 13:
+            computePcmSamples13();
+            break;
+        case 14:
+            computePcmSamples14();
+            break;
+        case 15:
+            computePcmSamples15();
+            break;
+        default:
+        }
+    }
+
+    /**
+     * Calculate 32 PCM samples and write them. The subband samples are
+     * s[off], s[off + 18], ..., s[off + 558], as left by the IMDCT.
+     */
+    void calculatePcmSamples(float[] s, int off, Decoder player) {
+        computeNewV(s, off);
+        writePcmSamples(player);
+    }
+
+    /**
+     * Same as calculatePcmSamples with 32 zero subband samples, whose cosine
+     * transform is zero as well.
+     */
+    void calculateSilentPcmSamples(Decoder player) {
+        for (int i = actualWritePos; i < 512; i += 16) {
+            v1[i] = 0;
+            v2[i] = 0;
+        }
+        writePcmSamples(player);
+    }
+
+    private void writePcmSamples(Decoder player) {
+        computePcmSamples();
+        player.appendSamples(channel, tmpOutBuffer);
+        actualWritePos = (actualWritePos + 1) & 0xf;
+        actualV = (actualV == v1) ? v2 : v1;
+    }
+}
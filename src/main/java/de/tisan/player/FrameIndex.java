@@ -0,0 +1,329 @@
+package de.tisan.player;
+
+import java.nio.IntBuffer;
+
+/**
+ * Where the frames of a stream start, for seeking. The exact offsets (from
+ * the start of the input, after an ID3v2 tag) are added while the stream is
+ * read in order, or loaded from a FrameIndexCache. The table of contents of a
+ * Xing or VBRI tag gives rough offsets for the part not read yet.
+ */
+final class FrameIndex {
+    /**
+     * The samples of output before the first input sample, added to the
+     * encoder delay of a LAME tag.
+     */
+    private static final int DECODER_DELAY = 529;
+
+    private int[] offsets;
+    /**
+     * The offsets loaded from a cache file, used instead of the array if not
+     * null.
+     */
+    private IntBuffer stored;
+    private int size;
+    /**
+     * Whether all frames of the stream are in the index.
+     */
+    private boolean complete;
+    private int frequency;
+    private int samplesPerFrame;
+    /**
+     * Points of the table of contents: frame numbers and their offsets, in
+     * increasing order. tocSize is 0 if the stream has no table.
+     */
+    private int[] tocFrames;
+    private int[] tocOffsets;
+    private int tocSize;
+    /**
+     * The number of frames and bytes after the tag frame, from the tag, or
+     * 0 if unknown.
+     */
+    private int tagFrames;
+    private int tagBytes;
+    /**
+     * Whether the first frame is a tag frame (Xing, Info or VBRI) without
+     * audio.
+     */
+    private boolean tag;
+    /**
+     * The samples the encoder added before and after the audio, from a LAME
+     * tag, or -1 if unknown.
+     */
+    private int encoderDelay = -1;
+    private int encoderPadding = -1;
+
+    /**
+     * Forgets the previous stream.
+     */
+    void clear() {
+        size = 0;
+        stored = null;
+        complete = false;
+        frequency = 0;
+        samplesPerFrame = 0;
+        tocSize = 0;
+        tagFrames = 0;
+        tagBytes = 0;
+        tag = false;
+        encoderDelay = -1;
+        encoderPadding = -1;
+    }
+
+    /**
+     * Adds the offset of the next frame (frame number size()).
+     */
+    void add(int offset) {
+        if (stored != null) {
+            // not expected, the cache file is for the whole stream
+            IntBuffer b = stored;
+            stored = null;
+            size = 0;
+            for (int i = 0; i < b.limit(); i++) {
+                add(b.get(i));
+            }
+        }
+        if (offsets == null) {
+            offsets = new int[4096];
+        } else if (size == offsets.length) {
+            int[] o = new int[size * 2];
+            System.arraycopy(offsets, 0, o, 0, size);
+            offsets = o;
+        }
+        offsets[size++] = offset;
+    }
+
+    /**
+     * The number of frames with a known offset.
+     */
+    int size() {
+        return size;
+    }
+
+    int offset(int frame) {
+        return stored != null ? stored.get(frame) : offsets[frame];
+    }
+
+    /**
+     * Takes the offsets of all frames of the stream, like from a cache file.
+     */
+    void load(IntBuffer offsets, int frequency, int samplesPerFrame) {
+        clear();
+        stored = offsets;
+        size = offsets.limit();
+        complete = true;
+        this.frequency = frequency;
+        this.samplesPerFrame = samplesPerFrame;
+    }
+
+    /**
+     * Notes that the stream ended after the last frame of the index.
+     */
+    void setComplete() {
+        complete = true;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Sets the sample rate and samples per frame, from the first frame.
+     */
+    void setFormat(int frequency, int samplesPerFrame) {
+        this.frequency = frequency;
+        this.samplesPerFrame = samplesPerFrame;
+    }
+
+    int frequency() {
+        return frequency;
+    }
+
+    int samplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    /**
+     * The length of the stream in ms, or -1 if the index is not complete.
+     */
+    long duration() {
+        if (!complete || frequency <= 0) {
+            return -1;
+        }
+        return samples(size) * 1000 / frequency;
+    }
+
+    /**
+     * The samples played from the given number of frames of the stream (the
+     * tag frame included): without the start, and at most the length of the
+     * track.
+     */
+    long samples(int frames) {
+        long samples = (long) frames * samplesPerFrame - startSamples();
+        long length = lengthSamples();
+        if (length >= 0) {
+            samples = Math.min(samples, length);
+        }
+        return Math.max(0, samples);
+    }
+
+    /**
+     * The samples decoded before the first one of the track: the tag frame,
+     * which has no audio, and the delays of the encoder and decoder if the
+     * tag has the encoder delay.
+     */
+    long startSamples() {
+        if (!tag) {
+            return 0;
+        }
+        long start = samplesPerFrame;
+        if (encoderDelay >= 0) {
+            start += encoderDelay + DECODER_DELAY;
+        }
+        return start;
+    }
+
+    /**
+     * The samples of the track from the LAME tag (the frames after the tag
+     * frame without the encoder delay and padding), or -1 if unknown.
+     */
+    long lengthSamples() {
+        if (!tag || encoderDelay < 0 || tagFrames <= 0) {
+            return -1;
+        }
+        return (long) tagFrames * samplesPerFrame - encoderDelay - encoderPadding;
+    }
+
+    /**
+     * Takes the table of contents of a Xing tag: toc[i] / 256 is the part of
+     * the bytes after which i percent of the frames are played. The offsets
+     * count from the tag frame at base, the frame numbers include it.
+     */
+    void setXingToc(int base, int frames, int bytes, byte[] toc, int tocOffset) {
+        tag = true;
+        tagFrames = frames;
+        tagBytes = bytes;
+        if (toc == null || frames <= 0 || bytes <= 0) {
+            tocSize = 0;
+            return;
+        }
+        allocateToc(101);
+        for (int i = 0; i < 100; i++) {
+            tocFrames[i] = 1 + (int) ((long) frames * i / 100);
+            tocOffsets[i] = base + (int) ((long) bytes * (toc[tocOffset + i] & 0xFF) / 256);
+        }
+        tocFrames[100] = 1 + frames;
+        tocOffsets[100] = base + bytes;
+        tocSize = 101;
+    }
+
+    /**
+     * Takes the table of contents of a VBRI tag: the byte sizes of parts of
+     * framesPerEntry frames each, which follow the tag frame at first.
+     */
+    void setVbriToc(int first, int frames, int bytes, int[] sizes, int entries, int framesPerEntry) {
+        tag = true;
+        tagFrames = frames;
+        tagBytes = bytes;
+        if (entries <= 0 || framesPerEntry <= 0) {
+            tocSize = 0;
+            return;
+        }
+        allocateToc(entries + 1);
+        int offset = first;
+        for (int i = 0; i <= entries; i++) {
+            tocFrames[i] = 1 + i * framesPerEntry;
+            tocOffsets[i] = offset;
+            if (i < entries) {
+                offset += sizes[i];
+            }
+        }
+        tocSize = entries + 1;
+    }
+
+    private void allocateToc(int points) {
+        if (tocFrames == null || tocFrames.length < points) {
+            tocFrames = new int[points];
+            tocOffsets = new int[points];
+        }
+    }
+
+    boolean hasToc() {
+        return tocSize > 0;
+    }
+
+    /**
+     * Notes a tag frame with the number of frames after it (0 if unknown),
+     * but without a table of contents, like from a cache file.
+     */
+    void setTag(int frames) {
+        tag = true;
+        tagFrames = frames;
+        tagBytes = 0;
+        tocSize = 0;
+    }
+
+    /**
+     * Takes the encoder delay and padding of a LAME tag, in samples.
+     */
+    void setEncoderDelay(int delay, int padding) {
+        encoderDelay = delay;
+        encoderPadding = padding;
+    }
+
+    /**
+     * Whether the first frame is a tag frame, which has no audio.
+     */
+    boolean hasTag() {
+        return tag;
+    }
+
+    /**
+     * The samples the encoder added before the audio, or -1 if unknown.
+     */
+    int encoderDelay() {
+        return encoderDelay;
+    }
+
+    /**
+     * The samples the encoder added after the audio, or -1 if unknown.
+     */
+    int encoderPadding() {
+        return encoderPadding;
+    }
+
+    /**
+     * The number of audio frames after the tag frame according to the tag,
+     * or 0 if unknown.
+     */
+    int tagFrames() {
+        return tagFrames;
+    }
+
+    /**
+     * The average size of a frame according to the tag, or 0 if unknown.
+     */
+    int averageFrameBytes() {
+        return tagFrames <= 0 ? 0 : tagBytes / tagFrames;
+    }
+
+    /**
+     * The rough offset of a frame from the table of contents, interpolated
+     * between its points.
+     */
+    int tocOffset(int frame) {
+        int i = 0;
+        while (i < tocSize - 2 && tocFrames[i + 1] <= frame) {
+            i++;
+        }
+        int f0 = tocFrames[i], f1 = tocFrames[i + 1];
+        int o0 = tocOffsets[i], o1 = tocOffsets[i + 1];
+        if (frame <= f0 || f1 <= f0) {
+            return o0;
+        }
+        if (frame >= f1) {
+            return o1;
+        }
+        return o0 + (int) ((long) (o1 - o0) * (frame - f0) / (f1 - f0));
+    }
+}
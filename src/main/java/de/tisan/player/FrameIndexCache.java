@@ -0,0 +1,166 @@
+package de.tisan.player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps the frame index of a file in a small binary file, so that seeking and
+ * the duration do not need a scan of the file the next time. The index file
+ * is named after the track (track.mp3.idx), next to it or in a directory of
+ * its own, and holds the path, size and modification time of the track; it is
+ * rebuilt when one of them changes. The offsets are read through a memory
+ * mapped view.
+ * <p>
+ * Format (big endian): the magic "MP3I", the version, size and modification
+ * time of the track, its path (as by DataOutput.writeUTF), the sample rate,
+ * the samples per frame, whether the first frame is a tag frame, the number of
+ * frames after it and the encoder delay and padding from the tag (0, -1 and
+ * -1 if unknown), the number of frames, and the offset of each frame as an
+ * int.
+ */
+public final class FrameIndexCache {
+    private static final int MAGIC = ('M' << 24) | ('P' << 16) | ('3' << 8) | 'I';
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".idx";
+
+    private final File directory;
+
+    /**
+     * Creates a cache that keeps the index files in the directory, or next to
+     * the tracks if the directory is null.
+     */
+    public FrameIndexCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The length of the track in ms, from its index file, or from a scan of
+     * the frame headers which is then stored.
+     */
+    public long getDuration(File file) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+            Bitstream stream = new Bitstream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            FrameIndex index = stream.index();
+            if (!load(file, index)) {
+                // reads the headers up to the end, past bad frames like when
+                // playing
+                while (stream.scanFrame() != null) {
+                    // index all frames
+                }
+                store(file, index);
+            }
+            return index.duration();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * The index file of a track.
+     */
+    private File indexFile(File file) {
+        File dir = directory != null ? directory : file.getAbsoluteFile().getParentFile();
+        String name = file.getName();
+        if (directory != null) {
+            // tracks of the same name in different directories
+            name = Integer.toHexString(file.getAbsolutePath().hashCode()) + "-" + name;
+        }
+        return new File(dir, name + SUFFIX);
+    }
+
+    /**
+     * Loads the index of the track into the index, if there is an index file
+     * for this version of the track. Returns false otherwise.
+     */
+    boolean load(File file, FrameIndex index) {
+        File indexFile = indexFile(file);
+        if (!indexFile.isFile()) {
+            return false;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(indexFile, "r");
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != file.length()
+                        || in.readLong() != file.lastModified() || !in.readUTF().equals(file.getAbsolutePath())) {
+                    return false;
+                }
+                int frequency = in.readInt();
+                int samplesPerFrame = in.readInt();
+                boolean tag = in.readBoolean();
+                int tagFrames = in.readInt();
+                int delay = in.readInt();
+                int padding = in.readInt();
+                int frames = in.readInt();
+                long start = in.getFilePointer();
+                if (frames < 0 || start + 4L * frames > in.length()) {
+                    return false;
+                }
+                // the mapping stays valid after the file is closed
+                ByteBuffer offsets = in.getChannel().map(FileChannel.MapMode.READ_ONLY, start, 4L * frames);
+                index.load(offsets.asIntBuffer(), frequency, samplesPerFrame);
+                if (tag) {
+                    index.setTag(tagFrames);
+                }
+                index.setEncoderDelay(delay, padding);
+                return true;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // rebuilt then
+            return false;
+        }
+    }
+
+    /**
+     * Writes the index of the track, if it is complete. The file is written
+     * under a temporary name first, so that a reader never sees half of it.
+     */
+    void store(File file, FrameIndex index) {
+        if (!index.isComplete()) {
+            return;
+        }
+        File indexFile = indexFile(file);
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(file.length());
+                out.writeLong(file.lastModified());
+                out.writeUTF(file.getAbsolutePath());
+                out.writeInt(index.frequency());
+                out.writeInt(index.samplesPerFrame());
+                out.writeBoolean(index.hasTag());
+                out.writeInt(index.tagFrames());
+                out.writeInt(index.encoderDelay());
+                out.writeInt(index.encoderPadding());
+                out.writeInt(index.size());
+                for (int i = 0; i < index.size(); i++) {
+                    out.writeInt(index.offset(i));
+                }
+            } finally {
+                out.close();
+            }
+            indexFile.delete();
+            if (!tmp.renameTo(indexFile)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            // the cache is optional, like on a read only directory
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.tisan.player;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays through a SourceDataLine of the default mixer. The line stays open
+ * between streams of the same format, so that the next stream starts without
+ * opening a line and the end of the previous one is still played.
+ */
+public class JavaSoundSink implements AudioSink {
+    private SourceDataLine line;
+    private FloatControl volume;
+    private boolean started;
+
+    @Override
+    public boolean isFormatSupported(AudioFormat format) {
+        return AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, format));
+    }
+
+    @Override
+    public void open(AudioFormat format) throws IOException {
+        if (line != null) {
+            if (line.getFormat().matches(format)) {
+                return;
+            }
+            release();
+        }
+        SourceDataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+        // TODO sometimes the line can not be opened (maybe not enough system resources?): display error message
+        try {
+            line = (SourceDataLine) AudioSystem.getLine(info);
+            line.open(format);
+        } catch (LineUnavailableException e) {
+            line = null;
+            IOException e2 = new IOException("Can not open the line: " + e.getMessage());
+            e2.initCause(e);
+            throw e2;
+        }
+        if (line.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
+            volume = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        line.write(b, off, len);
+    }
+
+    @Override
+    public int getBufferSize() {
+        return line.getBufferSize();
+    }
+
+    @Override
+    public int available() {
+        return line.available();
+    }
+
+    @Override
+    public void start() {
+        line.start();
+        started = true;
+    }
+
+    @Override
+    public void stop() {
+        line.stop();
+        started = false;
+    }
+
+    @Override
+    public void flush() {
+        line.flush();
+    }
+
+    @Override
+    public FloatControl getVolumeControl() {
+        return volume;
+    }
+
+    /**
+     * Keeps the line open (and playing) for the next stream.
+     */
+    @Override
+    public void close() {
+        // see release
+    }
+
+    @Override
+    public void release() {
+        if (line != null) {
+            if (started) {
+                // a stopped line would never drain
+                line.drain();
+            }
+            line.stop();
+            line.close();
+            line = null;
+        }
+        volume = null;
+        started = false;
+    }
+}
@@ -3,11 +3,11 @@ package de.tisan.player;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Iterator;
 
 public class MP3Player {
 
@@ -67,7 +67,7 @@ public class MP3Player {
 					try {
 						running = true;
 						decoder.play("test", stream.openStream());
-						decoder.volume.setValue(volume);
+						decoder.release();
 						play = false;
 					} catch (IOException e) {
 						// TODO Auto-generated catch block
@@ -84,49 +84,64 @@ public class MP3Player {
 			public void run() {
 				if (streams != null) {
 					play = true;
-					while (play) {
-						for (File s : streams) {
-							if (decoder == null) {
-								decoder = new Decoder();
-							}
-							try {
-								System.out.println(">> Playing next Song in playlist");
-
-								new Thread(new Runnable() {
-									@Override
-									public void run() {
-										while (true) {
-											try {
-												if (!play) {
-													decoder.stop();
-													return;
-												}
-												decoder.volume.setValue(volume);
-												Thread.sleep(500);
-											} catch (InterruptedException e) {
-
-												e.printStackTrace();
-											}
-										}
-
+					// one thread for all songs; the decoder and its line are reused
+					new Thread(new Runnable() {
+						@Override
+						public void run() {
+							while (true) {
+								try {
+									if (!play) {
+										decoder.stop();
+										return;
+									}
+									if (decoder.volume != null) {
+										decoder.volume.setValue(volume);
 									}
-								}).start();
-								Thread.sleep(1000);
-								if (play) {
-									FileInputStream i = new FileInputStream(s);
-									decoder.volume.setValue(volume);
-									decoder.play("test", i);
-									i.close();
+									Thread.sleep(500);
+								} catch (InterruptedException e) {
 
+									e.printStackTrace();
 								}
-
-							} catch (IOException e) {
-								e.printStackTrace();
-							} catch (InterruptedException e) {
-								e.printStackTrace();
 							}
+
+						}
+					}).start();
+					// the songs go round while play is set, in one stream
+					// to the line, so that there is no gap between them (or
+					// they fade into each other, see setCrossfade)
+					Iterator<File> songs = new Iterator<File>() {
+						private int next;
+
+						@Override
+						public boolean hasNext() {
+							return play && streams.length > 0;
 						}
+
+						@Override
+						public File next() {
+							File s = streams[next];
+							next = (next + 1) % streams.length;
+							return s;
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+					try {
+						// local files are read through a memory mapped view
+						decoder.play(songs);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+					try {
+						decoder.release();
+					} catch (IOException e) {
+						e.printStackTrace();
 					}
+					// also when no file of the playlist plays
+					play = false;
 
 				}
 			}
@@ -173,6 +188,31 @@ public class MP3Player {
 
 	}
 
+	/**
+	 * Keeps the frame indexes of the playlist files in the cache, so that
+	 * seeking in a file played before needs no scan.
+	 */
+	public void setIndexCache(FrameIndexCache cache) {
+		decoder.setIndexCache(cache);
+	}
+
+	/**
+	 * Lets the songs of a playlist overlap by the given time in ms, one
+	 * fading into the next, or not at all (0, the default). Takes effect
+	 * with the next playlist.
+	 */
+	public void setCrossfade(int millis) {
+		decoder.setCrossfade(millis);
+	}
+
+	/**
+	 * Seeks to the given position (in ms) of the current stream. Returns
+	 * false if the stream can not seek, like one played from a URL.
+	 */
+	public boolean seek(long millis) {
+		return decoder.seek(millis);
+	}
+
 	public void stop() {
 		this.play = false;
 		current = System.currentTimeMillis();
@@ -0,0 +1,109 @@
+package de.tisan.player;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.FloatControl;
+
+/**
+ * Collects the audio in memory, in the format passed to open. The streams
+ * played until release are collected one after the other, so they must have
+ * one format.
+ */
+public class MemorySink implements AudioSink {
+    private AudioFormat format;
+    private byte[] data = new byte[1 << 16];
+    private int length;
+    /**
+     * Whether the next open starts the data again.
+     */
+    private boolean released = true;
+
+    @Override
+    public boolean isFormatSupported(AudioFormat format) {
+        return true;
+    }
+
+    /**
+     * Starts collecting, or goes on after the data of the last stream. A
+     * stream of another format than the data is refused.
+     */
+    @Override
+    public synchronized void open(AudioFormat format) throws IOException {
+        if (released) {
+            length = 0;
+            released = false;
+        } else if (!format.matches(this.format)) {
+            throw new IOException("The data is in " + this.format + ", not in " + format);
+        }
+        this.format = format;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (length + len > data.length) {
+            byte[] d = new byte[Math.max(data.length * 2, length + len)];
+            System.arraycopy(data, 0, d, 0, length);
+            data = d;
+        }
+        System.arraycopy(b, off, data, length, len);
+        length += len;
+    }
+
+    public synchronized AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * A copy of the data written since the sink was first opened (after the
+     * last release).
+     */
+    public synchronized byte[] toByteArray() {
+        byte[] result = new byte[length];
+        System.arraycopy(data, 0, result, 0, length);
+        return result;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public int available() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void start() {
+        // nothing to do
+    }
+
+    @Override
+    public void stop() {
+        // nothing to do
+    }
+
+    @Override
+    public void flush() {
+        // nothing to do
+    }
+
+    @Override
+    public FloatControl getVolumeControl() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // the data stays available
+    }
+
+    /**
+     * Ends the data: the next open starts again, in any format.
+     */
+    @Override
+    public synchronized void release() {
+        released = true;
+    }
+}
@@ -0,0 +1,74 @@
+package de.tisan.player;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.FloatControl;
+
+/**
+ * Discards the audio, so that a stream is decoded as fast as possible (for
+ * throughput measurements).
+ */
+public class NullSink implements AudioSink {
+    private long bytes;
+
+    @Override
+    public boolean isFormatSupported(AudioFormat format) {
+        return true;
+    }
+
+    @Override
+    public void open(AudioFormat format) {
+        bytes = 0;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        bytes += len;
+    }
+
+    /**
+     * The number of bytes written since the sink was opened.
+     */
+    public long getBytesWritten() {
+        return bytes;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public int available() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void start() {
+        // nothing to do
+    }
+
+    @Override
+    public void stop() {
+        // nothing to do
+    }
+
+    @Override
+    public void flush() {
+        // nothing to do
+    }
+
+    @Override
+    public FloatControl getVolumeControl() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // nothing to do
+    }
+
+    @Override
+    public void release() {
+        // nothing to do
+    }
+}
@@ -0,0 +1,249 @@
+package de.tisan.player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes an MP3 stream to 16 bit PCM on the calling thread, without an audio
+ * device. Each call of decodeNextFrame returns the samples of one frame,
+ * interleaved by channel. Like when playing, frames that can not be decoded
+ * are skipped.
+ */
+public final class PcmDecoder implements Closeable {
+    /**
+     * The maximum number of values returned for one frame (1152 samples of
+     * two channels).
+     */
+    public static final int MAX_FRAME_SAMPLES = Decoder.BUFFER_SIZE;
+    private static final int MAX_ERRORS = 1000;
+
+    private final InputStream in;
+    private final Bitstream stream;
+    private final Output output = new Output();
+    private short[] frame;
+    private int frequency;
+    private int channels;
+    private int samplesPerFrame;
+    private int errors;
+    private boolean fastSeek;
+    /**
+     * The number of values to drop at the start of the next frame, after a
+     * seek.
+     */
+    private int skip;
+
+    public PcmDecoder(InputStream in) {
+        this(in, Decoder.PRECISION_DOUBLE);
+    }
+
+    /**
+     * Creates a decoder with the given arithmetic, one of the PRECISION_
+     * constants of Decoder.
+     */
+    public PcmDecoder(InputStream in, int precision) {
+        this.in = in;
+        stream = new Bitstream(in);
+        output.setPrecision(precision);
+    }
+
+    /**
+     * Decodes the remaining bytes of the buffer (like a memory mapped file)
+     * with the given arithmetic, one of the PRECISION_ constants of Decoder.
+     */
+    public PcmDecoder(ByteBuffer in, int precision) {
+        this.in = null;
+        stream = new Bitstream(in);
+        output.setPrecision(precision);
+    }
+
+    /**
+     * Decodes the next frame into the array, which needs room for
+     * MAX_FRAME_SAMPLES values.
+     *
+     * @return the number of values written (samples per channel times
+     *         channels; 0 while the bit reservoir is not filled yet), or -1
+     *         at the end of the stream
+     */
+    public int decodeNextFrame(short[] out) throws IOException {
+        if (out.length < MAX_FRAME_SAMPLES) {
+            throw new IllegalArgumentException("Buffer too small: " + out.length);
+        }
+        while (true) {
+            try {
+                Header header = stream.readFrame();
+                if (header == null) {
+                    return -1;
+                }
+                if (channels == 0) {
+                    frequency = header.frequency();
+                    channels = (header.mode() == Header.MODE_SINGLE_CHANNEL) ? 1 : 2;
+                    samplesPerFrame = header.samplesPerFrame();
+                }
+                output.start(out, channels);
+                output.decodeFrame(header, stream);
+                errors = 0;
+                int len = output.length;
+                if (skip > 0) {
+                    int s = Math.min(skip, len);
+                    skip = 0;
+                    len -= s;
+                    System.arraycopy(out, s, out, 0, len);
+                }
+                return len;
+            } catch (IOException e) {
+                skip(e);
+            } catch (RuntimeException e) {
+                skip(e);
+            } finally {
+                stream.closeFrame();
+            }
+        }
+    }
+
+    /**
+     * Decodes the next frame into the buffer, which needs room for
+     * MAX_FRAME_SAMPLES values.
+     *
+     * @return the number of values written, or -1 at the end of the stream
+     */
+    public int decodeNextFrame(ShortBuffer out) throws IOException {
+        if (out.remaining() < MAX_FRAME_SAMPLES) {
+            throw new IllegalArgumentException("Buffer too small: " + out.remaining());
+        }
+        if (frame == null) {
+            frame = new short[MAX_FRAME_SAMPLES];
+        }
+        int len = decodeNextFrame(frame);
+        if (len > 0) {
+            out.put(frame, 0, len);
+        }
+        return len;
+    }
+
+    /**
+     * Moves to the given sample (per channel), so that the next
+     * decodeNextFrame starts with it. Only a decoder of a buffer can seek.
+     * 
+     * @return false if the stream ends before the sample
+     * @throws IOException if the decoder reads an InputStream
+     */
+    public boolean seek(long sample) throws IOException {
+        if (frame == null) {
+            frame = new short[MAX_FRAME_SAMPLES];
+        }
+        if (channels == 0 && decodeNextFrame(frame) < 0) {
+            // the format comes with the first frame
+            return false;
+        }
+        int target = (int) Math.min(Integer.MAX_VALUE, Math.max(0, sample) / samplesPerFrame);
+        output.start(frame, channels);
+        if (!output.seekFrame(stream, target, fastSeek)) {
+            return false;
+        }
+        skip = (int) (Math.max(0, sample) % samplesPerFrame) * channels;
+        return true;
+    }
+
+    /**
+     * Whether seek may use the table of contents of a VBR tag, see
+     * Decoder.setFastSeek.
+     */
+    public void setFastSeek(boolean fastSeek) {
+        this.fastSeek = fastSeek;
+    }
+
+    private void skip(Exception e) throws IOException {
+        if (++errors > MAX_ERRORS) {
+            IOException e2 = new IOException("Too many errors");
+            e2.initCause(e);
+            throw e2;
+        }
+    }
+
+    /**
+     * The sample rate in Hz, known after the first frame.
+     */
+    public int getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * The number of channels (1 or 2), known after the first frame.
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the samples of one frame to the caller's array.
+     */
+    private static final class Output extends Decoder {
+        private final int[] position = new int[MAX_CHANNELS];
+        private short[] target;
+        private int step;
+        int length;
+
+        void start(short[] target, int channels) {
+            this.target = target;
+            step = channels;
+            for (int i = 0; i < channels; i++) {
+                position[i] = i;
+            }
+            length = 0;
+        }
+
+        @Override
+        public void appendSamples(int channel, double[] f) {
+            short[] t = target;
+            int p = position[channel];
+            for (int i = 0; i < 32; i++) {
+                double sample = f[i];
+                t[p] = (short) ((sample > 32767.0f) ? 32767 : ((sample < -32768.0f) ? -32768 : sample));
+                p += step;
+            }
+            position[channel] = p;
+        }
+
+        @Override
+        public void appendSamples(int channel, float[] f) {
+            short[] t = target;
+            int p = position[channel];
+            for (int i = 0; i < 32; i++) {
+                float sample = f[i];
+                t[p] = (short) ((sample > 32767.0f) ? 32767 : ((sample < -32768.0f) ? -32768 : sample));
+                p += step;
+            }
+            position[channel] = p;
+        }
+
+        @Override
+        public void appendSamples(int channel, int[] f) {
+            short[] t = target;
+            int p = position[channel];
+            for (int i = 0; i < 32; i++) {
+                int sample = f[i];
+                t[p] = (short) ((sample > 32767) ? 32767 : ((sample < -32768) ? -32768 : sample));
+                p += step;
+            }
+            position[channel] = p;
+        }
+
+        @Override
+        protected void writeBuffer() {
+            length = position[0];
+            // the frames decoded while seeking go to the same place
+            for (int i = 0; i < step; i++) {
+                position[i] = i;
+            }
+        }
+    }
+}
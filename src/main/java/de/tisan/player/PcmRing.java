@@ -0,0 +1,207 @@
+package de.tisan.player;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring of decoded PCM frames between one producer (the decoding thread) and
+ * one consumer (the thread writing to the audio line). All slots are
+ * allocated up front. The counters are each written by one side only, so no
+ * locks are needed; a side that finds the ring full or empty parks until the
+ * other side has made progress.
+ */
+final class PcmRing {
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final int mask;
+    /**
+     * Number of frames written, only changed by the producer.
+     */
+    private volatile long head;
+    /**
+     * Number of frames read, only changed by the consumer.
+     */
+    private volatile long tail;
+    private volatile boolean closed;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+    private volatile int underruns;
+    /**
+     * The frames before discardTo are dropped (set by the producer, then
+     * discards is counted up); the consumer compares discards with the
+     * number it has seen.
+     */
+    private volatile long discardTo;
+    private volatile int discards;
+    private int discardsSeen;
+    private boolean discarded;
+
+    /**
+     * Creates a ring of at least the given number of frames (rounded up to a
+     * power of two) of up to frameBytes each.
+     */
+    PcmRing(int frames, int frameBytes) {
+        int size = 1;
+        while (size < frames) {
+            size <<= 1;
+        }
+        slots = new byte[size][frameBytes];
+        lengths = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Copies a frame into the ring, waiting while it is full. Returns false
+     * if the ring was closed.
+     */
+    boolean put(byte[] frame, int len) {
+        long h = head;
+        while (h - tail > mask) {
+            if (closed) {
+                return false;
+            }
+            waitingProducer = Thread.currentThread();
+            if (h - tail > mask && !closed) {
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+        }
+        if (closed) {
+            return false;
+        }
+        int i = (int) h & mask;
+        System.arraycopy(frame, 0, slots[i], 0, len);
+        lengths[i] = len;
+        head = h + 1;
+        LockSupport.unpark(waitingConsumer);
+        return true;
+    }
+
+    /**
+     * Copies the oldest frame to the buffer at the given offset and returns
+     * its length, waiting while the ring is empty. Returns -1 once the ring
+     * is closed and empty.
+     */
+    int take(byte[] buffer, int off) {
+        long t = tail;
+        while (true) {
+            // head first: a frame put after a discard is seen with it
+            long h = head;
+            int d = discards;
+            if (d != discardsSeen) {
+                discardsSeen = d;
+                discarded = true;
+                long to = discardTo;
+                if (to > t) {
+                    t = to;
+                    tail = t;
+                    LockSupport.unpark(waitingProducer);
+                }
+            }
+            if (h > t) {
+                break;
+            }
+            if (closed) {
+                return -1;
+            }
+            waitingConsumer = Thread.currentThread();
+            if (head <= t && !closed && discards == discardsSeen) {
+                LockSupport.park(this);
+            }
+            waitingConsumer = null;
+        }
+        int i = (int) t & mask;
+        int len = lengths[i];
+        System.arraycopy(slots[i], 0, buffer, off, len);
+        tail = t + 1;
+        LockSupport.unpark(waitingProducer);
+        return len;
+    }
+
+    /**
+     * Drops the frames put so far that are not taken yet (producer only), like
+     * after a seek.
+     */
+    void discard() {
+        discardTo = head;
+        discards++;
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    /**
+     * Whether frames were dropped since the last call (consumer only): the
+     * consumer should drop what it holds of the old frames too.
+     */
+    boolean discarded() {
+        boolean d = discarded;
+        discarded = false;
+        return d;
+    }
+
+    /**
+     * Waits until the ring is full or closed (consumer only), so that the
+     * stream starts with all frames decoded ahead.
+     */
+    void awaitFull() {
+        while (head - tail <= mask && !closed) {
+            waitingConsumer = Thread.currentThread();
+            if (head - tail <= mask && !closed) {
+                LockSupport.park(this);
+            }
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Ends the stream: the producer can not add frames any more, the consumer
+     * gets the remaining ones.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(waitingProducer);
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    /**
+     * Empties and reopens the ring for the next stream. Neither side may use
+     * it at the same time.
+     */
+    void reset() {
+        head = tail = 0;
+        underruns = 0;
+        discardTo = 0;
+        discards = discardsSeen = 0;
+        discarded = false;
+        waitingProducer = waitingConsumer = null;
+        closed = false;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * The number of frames waiting to be written.
+     */
+    int size() {
+        return (int) (head - tail);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Counts an underrun (consumer only).
+     */
+    void underrun() {
+        underruns++;
+    }
+
+    /**
+     * How often the consumer found the ring empty while the audio line was
+     * running dry, that is decoding fell behind the line.
+     */
+    int underruns() {
+        return underruns;
+    }
+}
@@ -0,0 +1,162 @@
+package de.tisan.player;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * The length and format of an MP3 stream, found by reading only the frame
+ * headers: the frame data is skipped and nothing is decoded, so a local file
+ * is scanned thousands of times faster than it plays. The frames are counted
+ * like when playing (frames the sync search does not accept are left out, and
+ * so is the tag frame of a VBR stream).
+ */
+public final class StreamInfo {
+    private static final String[] VERSIONS = { "MPEG-2", "MPEG-1", "MPEG-2.5" };
+
+    private final int frames;
+    private final long samples;
+    private final long bytes;
+    private final int frequency;
+    private final int channels;
+    private final int version;
+    private final int samplesPerFrame;
+    private final boolean vbr;
+
+    private StreamInfo(int frames, long samples, long bytes, int frequency, int channels, int version,
+            int samplesPerFrame, boolean vbr) {
+        this.frames = frames;
+        this.samples = samples;
+        this.bytes = bytes;
+        this.frequency = frequency;
+        this.channels = channels;
+        this.version = version;
+        this.samplesPerFrame = samplesPerFrame;
+        this.vbr = vbr;
+    }
+
+    /**
+     * Scans a file through a memory mapped view.
+     */
+    public static StreamInfo scan(File file) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return scan(Channels.newInputStream(channel));
+            }
+            return scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Scans the remaining bytes of the buffer.
+     */
+    public static StreamInfo scan(ByteBuffer in) throws IOException {
+        return scan(new Bitstream(in));
+    }
+
+    /**
+     * Scans the stream to its end. The stream is not closed.
+     */
+    public static StreamInfo scan(InputStream in) throws IOException {
+        return scan(new Bitstream(in));
+    }
+
+    private static StreamInfo scan(Bitstream stream) throws IOException {
+        int frames = 0;
+        long bytes = 0;
+        int frequency = 0, channels = 0, version = Header.VERSION_MPEG1, samplesPerFrame = 1152;
+        int firstBitrate = 0;
+        boolean vbr = false;
+        boolean first = true;
+        // like when playing, bad headers are skipped
+        for (Header header; (header = stream.scanFrame()) != null;) {
+            if (first) {
+                first = false;
+                frequency = header.frequency();
+                channels = (header.mode() == Header.MODE_SINGLE_CHANNEL) ? 1 : 2;
+                version = header.version();
+                samplesPerFrame = header.samplesPerFrame();
+                if (stream.index().hasTag()) {
+                    // the Xing, Info or VBRI tag frame has no audio
+                    continue;
+                }
+            }
+            if (frames == 0) {
+                firstBitrate = header.bitrate();
+            }
+            frames++;
+            bytes += header.frameBytes();
+            vbr |= header.bitrate() != firstBitrate;
+        }
+        FrameIndex index = stream.index();
+        // without the delay and padding of the encoder, like when playing
+        long samples = index.samples(index.hasTag() ? frames + 1 : frames);
+        return new StreamInfo(frames, samples, bytes, frequency, channels, version, samplesPerFrame, vbr);
+    }
+
+    /**
+     * The number of audio frames.
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * The length in ms, as played: without the encoder delay and padding if
+     * a LAME tag has them.
+     */
+    public long getDuration() {
+        return frequency == 0 ? 0 : samples * 1000 / frequency;
+    }
+
+    /**
+     * The average bit rate in bit/s.
+     */
+    public int getBitrate() {
+        long samples = (long) frames * samplesPerFrame;
+        return samples == 0 ? 0 : (int) (bytes * 8 * frequency / samples);
+    }
+
+    /**
+     * The sample rate in Hz.
+     */
+    public int getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * The number of channels (1 or 2).
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * The MPEG version: "MPEG-1", "MPEG-2" or "MPEG-2.5".
+     */
+    public String getVersion() {
+        return VERSIONS[version];
+    }
+
+    /**
+     * Whether the bit rate changes between frames.
+     */
+    public boolean isVbr() {
+        return vbr;
+    }
+
+    @Override
+    public String toString() {
+        return getVersion() + " layer III, " + frequency + " Hz, " + (channels == 1 ? "mono" : "stereo") + ", "
+                + getBitrate() / 1000 + " kbit/s" + (vbr ? " (VBR)" : "") + ", " + frames + " frames, "
+                + getDuration() + " ms";
+    }
+}
@@ -1,19 +1,28 @@
 package de.tisan.player;
 
-import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.DataLine;
 import javax.sound.sampled.FloatControl;
-import javax.sound.sampled.SourceDataLine;
 
 final class Huffman {
     private static final int MX_OFF = 250;
+    private static final int LOOKUP_BITS = 8;
+    private static final int LOOKUP_SIGNED = 1 << 25;
     private static final int HUFFMAN_COUNT = 34;
     public static final Huffman[] HUFFMAN;
     private final char tableName0;
@@ -24,6 +33,8 @@ final class Huffman {
     private final int[] val0; // decoder tree
     private final int[] val1; // decoder tree
     private final int treeLen; // length of decoder tree
+    private final boolean quadruples; // count1 table (v, w, x, y)
+    private final int[] lookup; // direct lookup, indexed by the next LOOKUP_BITS bits
 
     private Huffman(String name, int xlen, int ylen, int linbits, int[][] val,
             int treeLen) {
@@ -39,6 +50,79 @@ final class Huffman {
             val1[i] = val[i][1];
         }
         this.treeLen = treeLen;
+        quadruples = tableName0 == '3' && (tableName1 == '2' || tableName1 == '3');
+        lookup = (treeLen == 0) ? null : buildLookup();
+    }
+
+    /**
+     * Follow one branch of the decoder tree.
+     */
+    private int next(int point, int bit) {
+        int[] val = (bit != 0) ? val1 : val0;
+        while (val[point] >= MX_OFF) {
+            point += val[point];
+        }
+        return point + val[point];
+    }
+
+    /**
+     * Build the direct lookup table. Each of the 2^LOOKUP_BITS entries is
+     * either a resolved code (bit count in bits 26..29, the leaf value in
+     * the low byte) or, for codes longer than LOOKUP_BITS, the complement of
+     * the tree node to continue walking from. If the sign bits of a code
+     * without escape values fit into the peeked bits as well, they are
+     * applied here and the entry is flagged with LOOKUP_SIGNED: then the low
+     * bytes hold the signed x and y (or 2 bits each for v, w, x and y).
+     */
+    private int[] buildLookup() {
+        int[] table = new int[1 << LOOKUP_BITS];
+        for (int code = 0; code < table.length; code++) {
+            int point = 0;
+            int len = 0;
+            while (val0[point] != 0 && len < LOOKUP_BITS) {
+                point = next(point, (code >>> (LOOKUP_BITS - 1 - len)) & 1);
+                len++;
+            }
+            if (val0[point] != 0) {
+                table[code] = ~point;
+                continue;
+            }
+            int value = val1[point];
+            table[code] = (len << 26) | value;
+            if (quadruples) {
+                int[] q = { (value >> 3) & 1, (value >> 2) & 1, (value >> 1) & 1, value & 1 };
+                int signs = q[0] + q[1] + q[2] + q[3];
+                if (len + signs > LOOKUP_BITS) {
+                    continue;
+                }
+                int packed = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (q[i] != 0 && ((code >>> (LOOKUP_BITS - 1 - len++)) & 1) != 0) {
+                        q[i] = -q[i];
+                    }
+                    packed = (packed << 2) | (q[i] & 3);
+                }
+                table[code] = (len << 26) | LOOKUP_SIGNED | packed;
+            } else {
+                int x = value >>> 4;
+                int y = value & 0xf;
+                if (linbits != 0 && (x == xlen - 1 || y == ylen - 1)) {
+                    continue;
+                }
+                int signs = ((x != 0) ? 1 : 0) + ((y != 0) ? 1 : 0);
+                if (len + signs > LOOKUP_BITS) {
+                    continue;
+                }
+                if (x != 0 && ((code >>> (LOOKUP_BITS - 1 - len++)) & 1) != 0) {
+                    x = -x;
+                }
+                if (y != 0 && ((code >>> (LOOKUP_BITS - 1 - len++)) & 1) != 0) {
+                    y = -y;
+                }
+                table[code] = (len << 26) | LOOKUP_SIGNED | ((x & 0xff) << 8) | (y & 0xff);
+            }
+        }
+        return table;
     }
 
     /**
@@ -52,6 +136,55 @@ final class Huffman {
         // 32,33 count1-tables
 
         // table 0 needs no bits
+        if (treeLen == 0) {
+            decoder.x = decoder.y = 0;
+            return 0;
+        }
+        int error = 1;
+        int entry = lookup[br.peekBits(LOOKUP_BITS)];
+        if (entry >= 0) {
+            br.skipBits(entry >>> 26);
+            if ((entry & LOOKUP_SIGNED) != 0) {
+                if (quadruples) {
+                    decoder.v = (entry << 24) >> 30;
+                    decoder.w = (entry << 26) >> 30;
+                    decoder.x = (entry << 28) >> 30;
+                    decoder.y = (entry << 30) >> 30;
+                } else {
+                    decoder.x = (entry << 16) >> 24;
+                    decoder.y = (entry << 24) >> 24;
+                }
+                return 0;
+            }
+            decoder.x = (entry & 0xff) >>> 4;
+            decoder.y = entry & 0xf;
+            error = 0;
+        } else {
+            // code is longer than the lookup, continue in the tree
+            br.skipBits(LOOKUP_BITS);
+            int point = ~entry;
+            int level = 1 << ((4 * 8) - 1 - LOOKUP_BITS);
+            do {
+                if (val0[point] == 0) {
+                    // end of tree
+                    decoder.x = val1[point] >>> 4;
+                    decoder.y = val1[point] & 0xf;
+                    error = 0;
+                    break;
+                }
+                point = next(point, br.getOneBit());
+                level >>>= 1;
+            } while (level != 0);
+        }
+        readSigns(decoder, br);
+        return error;
+    }
+
+    /**
+     * Do the huffman-decoding bit by bit in the decoder tree, without the
+     * lookup. Gives the same results as decode, HuffmanCheck compares them.
+     */
+    int decodeByTree(Layer3Decoder decoder, BitReservoir br) {
         if (treeLen == 0) {
             decoder.x = decoder.y = 0;
             return 0;
@@ -59,7 +192,6 @@ final class Huffman {
         int level = 1 << ((4 * 8) - 1);
         int point = 0;
         int error = 1;
-        // Lookup in Huffman table
         do {
             if (val0[point] == 0) {
                 // end of tree
@@ -68,21 +200,19 @@ final class Huffman {
                 error = 0;
                 break;
             }
-            if (br.getOneBit() != 0) {
-                while (val1[point] >= MX_OFF) {
-                    point += val1[point];
-                }
-                point += val1[point];
-            } else {
-                while (val0[point] >= MX_OFF) {
-                    point += val0[point];
-                }
-                point += val0[point];
-            }
+            point = next(point, br.getOneBit());
             level >>>= 1;
         } while (level != 0);
+        readSigns(decoder, br);
+        return error;
+    }
+
+    /**
+     * Read the sign bits and escape values that follow a code.
+     */
+    private void readSigns(Layer3Decoder decoder, BitReservoir br) {
         // Process sign encodings for quadruples tables
-        if (tableName0 == '3' && (tableName1 == '2' || tableName1 == '3')) {
+        if (quadruples) {
             decoder.v = (decoder.y >> 3) & 1;
             decoder.w = (decoder.y >> 2) & 1;
             decoder.x = (decoder.y >> 1) & 1;
@@ -134,7 +264,27 @@ final class Huffman {
                 }
             }
         }
-        return error;
+    }
+
+    /**
+     * All codes of the table, each as { bits, number of bits } with the bits
+     * right aligned. Used by HuffmanCheck.
+     */
+    List<int[]> codes() {
+        List<int[]> codes = new ArrayList<int[]>();
+        if (treeLen != 0) {
+            addCodes(0, 0, 0, codes);
+        }
+        return codes;
+    }
+
+    private void addCodes(int point, int bits, int len, List<int[]> codes) {
+        if (val0[point] == 0) {
+            codes.add(new int[] { bits, len });
+            return;
+        }
+        addCodes(next(point, 0), bits << 1, len + 1, codes);
+        addCodes(next(point, 1), (bits << 1) | 1, len + 1, codes);
     }
 
     static {
@@ -186,6 +336,7 @@ final class Header {
     public static final int MODE_SINGLE_CHANNEL = 3;
     private static final int SAMPLE_FREQUENCY_FOURTYEIGHT = 1;
     private static final int SAMPLE_FREQUENCY_THIRTYTWO = 2;
+    private static final int PADDING_BIT = 0x200;
     private boolean protectionBit, paddingBit;
     private int bitrateIndex, modeExtension;
     private int version;
@@ -196,65 +347,39 @@ final class Header {
     private int frameSize;
     private boolean vbr;
     private int slots;
+    /**
+     * The last parsed header word without the padding bit, or 0, and its
+     * frame size and slots without padding.
+     */
+    private int cachedHeader;
+    private int cachedFrameSize;
+    private int cachedSlots;
+
+    /**
+     * Forgets the format of the previous stream.
+     */
+    void reset() {
+        syncMode = Bitstream.INITIAL_SYNC;
+        vbr = false;
+        cachedHeader = 0;
+    }
 
     boolean readHeader(Bitstream stream) throws IOException {
         while (true) {
             int headerString = stream.syncHeader(syncMode);
-            if (syncMode == Bitstream.INITIAL_SYNC) {
-                version = ((headerString >>> 19) & 1);
-                if (((headerString >>> 20) & 1) == 0) {
-                    if (version == VERSION_MPEG2_LSF) {
-                        version = VERSION_MPEG25_LSF;
-                    } else {
-                        throw new IOException("Unsupported version: " + version);
-                    }
-                }
-                sampleFrequency = ((headerString >>> 10) & 3);
-                if (sampleFrequency == 3) {
-                    throw new IOException("Unsupported sampleFrequency: "
-                            + sampleFrequency);
-                }
-            }
-            int layer = 4 - (headerString >>> 17) & 3;
-            if (layer != 3) {
-                throw new IOException("Unsupported layer: " + layer);
-            }
-            protectionBit = ((headerString >>> 16) & 1) != 0;
-            bitrateIndex = (headerString >>> 12) & 0xF;
-            paddingBit = ((headerString >>> 9) & 1) != 0;
-            mode = ((headerString >>> 6) & 3);
-            modeExtension = (headerString >>> 4) & 3;
-            if (mode == MODE_JOINT_STEREO) {
-                intensityStereoBound = (modeExtension << 2) + 4;
-            } else {
-                intensityStereoBound = 0; // should never be used
-            }
-            // calculate number of subbands:
-            int channelBitrate = bitrateIndex;
-            // calculate bitrate per channel:
-            if (mode != MODE_SINGLE_CHANNEL) {
-                if (channelBitrate == 4) {
-                    channelBitrate = 1;
-                } else {
-                    channelBitrate -= 4;
-                }
+            if (headerString == 0) {
+                // end of stream
+                return false;
             }
-            if (channelBitrate == 1 || channelBitrate == 2) {
-                if (sampleFrequency == SAMPLE_FREQUENCY_THIRTYTWO) {
-                    numberOfSubbands = 12;
-                } else {
-                    numberOfSubbands = 8;
-                }
-            } else if (sampleFrequency == SAMPLE_FREQUENCY_FOURTYEIGHT
-                    || (channelBitrate >= 3 && channelBitrate <= 5)) {
-                numberOfSubbands = 27;
+            if ((headerString & ~PADDING_BIT) == cachedHeader) {
+                // same header as before apart from the padding, like in a CBR
+                // stream: only the frame size changes
+                paddingBit = (headerString & PADDING_BIT) != 0;
+                frameSize = paddingBit ? cachedFrameSize + 1 : cachedFrameSize;
+                slots = paddingBit ? cachedSlots + 1 : cachedSlots;
             } else {
-                numberOfSubbands = 30;
-            }
-            if (intensityStereoBound > numberOfSubbands) {
-                intensityStereoBound = numberOfSubbands;
+                parseHeader(headerString);
             }
-            calculateFramesize();
             int frameSizeLoaded = stream.readFrameData(frameSize);
             if (frameSize >= 0 && frameSizeLoaded != frameSize) {
                 // Data loaded does not match to expected framesize,
@@ -278,9 +403,13 @@ final class Header {
         return true;
     }
 
-    void parseVBR(byte[] firstFrame) throws IOException {
+    /**
+     * Looks for a Xing (or Info) and a VBRI tag in the first frame, which
+     * starts at base in the input, and passes their frame and byte counts,
+     * table of contents and the encoder delay of a LAME tag to the index.
+     */
+    void parseVBR(byte[] firstFrame, FrameIndex index, int base) throws IOException {
         // trying Xing header
-        byte[] tmp = new byte[4];
         int offset;
         if (version == VERSION_MPEG1) {
             if (mode == MODE_SINGLE_CHANNEL) {
@@ -296,24 +425,87 @@ final class Header {
             }
         }
         try {
-            System.arraycopy(firstFrame, offset, tmp, 0, 4);
-            if ("Xing".equals(new String(tmp))) {
-                vbr = true;
+            boolean xing = isTag(firstFrame, offset, "Xing");
+            if (xing || isTag(firstFrame, offset, "Info")) {
+                // Info is written by LAME for CBR files
+                vbr = xing;
+                int flags = getInt(firstFrame, offset + 4);
+                int p = offset + 8;
+                int frames = 0, bytes = 0;
+                if ((flags & 1) != 0) {
+                    frames = getInt(firstFrame, p);
+                    p += 4;
+                }
+                if ((flags & 2) != 0) {
+                    bytes = getInt(firstFrame, p);
+                    p += 4;
+                }
+                if ((flags & 4) != 0) {
+                    index.setXingToc(base, frames, bytes, firstFrame, p);
+                    p += 100;
+                } else {
+                    index.setXingToc(base, frames, bytes, null, 0);
+                }
+                if ((flags & 8) != 0) {
+                    // quality
+                    p += 4;
+                }
+                // the LAME tag (also written by FFmpeg) follows, with the
+                // encoder delay and padding as 12 bits each after 21 bytes
+                if (p + 24 <= frameSize
+                        && (isTag(firstFrame, p, "LAME") || isTag(firstFrame, p, "Lavc")
+                                || isTag(firstFrame, p, "Lavf"))) {
+                    int delay = getInt(firstFrame, p + 20) & 0xFFFFFF;
+                    index.setEncoderDelay(delay >> 12, delay & 0xFFF);
+                }
             }
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new IOException("Corrupt Xing VBR header");
         }
         offset = 36 - 4;
         try {
-            System.arraycopy(firstFrame, offset, tmp, 0, 4);
-            if ("VBRI".equals(new String(tmp))) {
+            if (isTag(firstFrame, offset, "VBRI")) {
                 vbr = true;
+                int bytes = getInt(firstFrame, offset + 10);
+                int frames = getInt(firstFrame, offset + 14);
+                int entries = getShort(firstFrame, offset + 18);
+                int scale = getShort(firstFrame, offset + 20);
+                int entrySize = getShort(firstFrame, offset + 22);
+                int framesPerEntry = getShort(firstFrame, offset + 24);
+                int[] sizes = new int[entries];
+                int p = offset + 26;
+                for (int i = 0; i < entries; i++) {
+                    int size = 0;
+                    for (int j = 0; j < entrySize; j++) {
+                        size = (size << 8) | (firstFrame[p++] & 0xFF);
+                    }
+                    sizes[i] = size * scale;
+                }
+                index.setVbriToc(base + frameSize + 4, frames, bytes, sizes, entries, framesPerEntry);
             }
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new IOException("Corrupt VBRI VBR header");
         }
     }
 
+    private static int getInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8)
+                | (data[offset + 3] & 0xFF);
+    }
+
+    private static int getShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static boolean isTag(byte[] data, int offset, String tag) {
+        for (int i = 0; i < 4; i++) {
+            if (data[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     int version() {
         return version;
     }
@@ -330,10 +522,31 @@ final class Header {
         return mode;
     }
 
+    /**
+     * The number of samples per channel in a frame.
+     */
+    int samplesPerFrame() {
+        return version == VERSION_MPEG1 ? 1152 : 576;
+    }
+
     int slots() {
         return slots;
     }
 
+    /**
+     * The size of the frame in bytes, with the header.
+     */
+    int frameBytes() {
+        return frameSize + 4;
+    }
+
+    /**
+     * The bit rate of the frame in bit/s, 0 for free format.
+     */
+    int bitrate() {
+        return Constants.BITRATES[version][bitrateIndex];
+    }
+
     boolean vbr() {
         return vbr;
     }
@@ -342,6 +555,72 @@ final class Header {
         return modeExtension;
     }
 
+    /**
+     * Sets the fields from the header word and remembers it, so that the next
+     * frames with the same header do not need to be parsed again.
+     */
+    private void parseHeader(int headerString) throws IOException {
+        cachedHeader = 0;
+        if (syncMode == Bitstream.INITIAL_SYNC) {
+            version = ((headerString >>> 19) & 1);
+            if (((headerString >>> 20) & 1) == 0) {
+                if (version == VERSION_MPEG2_LSF) {
+                    version = VERSION_MPEG25_LSF;
+                } else {
+                    throw new IOException("Unsupported version: " + version);
+                }
+            }
+            sampleFrequency = ((headerString >>> 10) & 3);
+            if (sampleFrequency == 3) {
+                throw new IOException("Unsupported sampleFrequency: "
+                        + sampleFrequency);
+            }
+        }
+        int layer = 4 - (headerString >>> 17) & 3;
+        if (layer != 3) {
+            throw new IOException("Unsupported layer: " + layer);
+        }
+        protectionBit = ((headerString >>> 16) & 1) != 0;
+        bitrateIndex = (headerString >>> 12) & 0xF;
+        paddingBit = ((headerString >>> 9) & 1) != 0;
+        mode = ((headerString >>> 6) & 3);
+        modeExtension = (headerString >>> 4) & 3;
+        if (mode == MODE_JOINT_STEREO) {
+            intensityStereoBound = (modeExtension << 2) + 4;
+        } else {
+            intensityStereoBound = 0; // should never be used
+        }
+        // calculate number of subbands:
+        int channelBitrate = bitrateIndex;
+        // calculate bitrate per channel:
+        if (mode != MODE_SINGLE_CHANNEL) {
+            if (channelBitrate == 4) {
+                channelBitrate = 1;
+            } else {
+                channelBitrate -= 4;
+            }
+        }
+        if (channelBitrate == 1 || channelBitrate == 2) {
+            if (sampleFrequency == SAMPLE_FREQUENCY_THIRTYTWO) {
+                numberOfSubbands = 12;
+            } else {
+                numberOfSubbands = 8;
+            }
+        } else if (sampleFrequency == SAMPLE_FREQUENCY_FOURTYEIGHT
+                || (channelBitrate >= 3 && channelBitrate <= 5)) {
+            numberOfSubbands = 27;
+        } else {
+            numberOfSubbands = 30;
+        }
+        if (intensityStereoBound > numberOfSubbands) {
+            intensityStereoBound = numberOfSubbands;
+        }
+        calculateFramesize();
+        cachedHeader = headerString & ~PADDING_BIT;
+        cachedFrameSize = paddingBit ? frameSize - 1 : frameSize;
+        cachedSlots = paddingBit ? slots - 1 : slots;
+    }
+
     private void calculateFramesize() {
         frameSize = (144 * Constants.BITRATES[version][bitrateIndex])
                 / frequency();
@@ -366,44 +645,294 @@ final class Header {
 class Decoder {
     public static final int BUFFER_SIZE = 2 * 1152;
     public static final int MAX_CHANNELS = 2;
-    private static final boolean BENCHMARK = false;
+    /**
+     * Decode with double precision arithmetic (the default).
+     */
+    public static final int PRECISION_DOUBLE = 0;
+    /**
+     * Decode with single precision arithmetic. Less memory traffic, at a
+     * small deviation from the double precision output (see DecoderBenchmark).
+     */
+    public static final int PRECISION_FLOAT = 1;
+    /**
+     * Decode with 32 bit fixed point arithmetic, for machines with slow
+     * floating point (see Fixed and DecoderBenchmark).
+     */
+    public static final int PRECISION_FIXED = 2;
+    /**
+     * The default number of frames decoded ahead of the sink, about 400
+     * ms at 44.1 kHz.
+     */
+    public static final int DECODE_AHEAD_FRAMES = 16;
+    /**
+     * Number of frame errors reported per stream, further ones are only
+     * counted.
+     */
+    private static final int REPORTED_ERRORS = 10;
     
     protected final int[] bufferPointer = new int[MAX_CHANNELS];
     protected int channels;
-    private SynthesisFilter filter1;
-    private SynthesisFilter filter2;
+    private int precision = PRECISION_DOUBLE;
     private Layer3Decoder l3decoder;
-    private boolean initialized;
+    // the precision of l3decoder, and whether it needs a reset
+    private int l3precision;
+    private boolean newStream;
 
-    private SourceDataLine line;
+    private AudioSink sink = new JavaSoundSink();
+    private volatile PcmRing ring;
+    private int decodeAheadFrames = DECODE_AHEAD_FRAMES;
     private final byte[] buffer = new byte[BUFFER_SIZE * 2];
-    private boolean stop;
+    /**
+     * The offsets of the high and low byte of a sample in the buffer, and the
+     * distance between two samples of a channel.
+     */
+    private int highByte, lowByte = 1, sampleStep = 4;
+    private volatile boolean stop;
     private volatile boolean pause;
+    private final Object pauseLock = new Object();
+    /**
+     * The position to seek to in ms, or -1.
+     */
+    private volatile long seekTarget = -1;
+    /**
+     * False while a stream that can not seek is played.
+     */
+    private volatile boolean seekable = true;
+    private boolean fastSeek;
+    private FrameIndexCache indexCache;
+    /**
+     * While priming the decoder after a seek, writeBuffer drops the frames;
+     * after it, it drops the samples before the target, and those after the
+     * end of the track if its length is known (-1 if not).
+     */
+    private boolean mute;
+    private int skipSamples;
+    private long remainingSamples = -1;
 	public FloatControl volume;
 
+    // kept from one play call to the next
+    private Decoder output;
+    private Bitstream stream;
+    private AudioFormat format;
+    private AudioSink formatSink;
+    private byte[] chunk;
+    private Thread writer;
+    // the work of the writer thread, guarded by writerLock
+    private final Object writerLock = new Object();
+    private PcmRing writerRing;
+    private AudioSink writerSink;
+    // why the writer stopped before the end of the ring, for finish
+    private Exception writerError;
+    // the sink open for the ring, with its format, kept while the streams
+    // have the same format
+    private AudioSink openSink;
+    private int openFrequency;
+    private int openChannels;
+    // the overlap of the tracks of play(Iterator) in ms, and the crossfade
+    // of the current playlist (also the one writeBuffer goes through), or
+    // null
+    private int crossfade;
+    private Crossfade crossfader;
+    private Crossfade fade;
+    private volatile Exception lastError;
+
     public void decodeFrame(Header header, Bitstream stream) throws IOException {
-        
-    	if (!initialized) {
-            double scaleFactor = 32700.0f;
+        if (newStream) {
+            newStream = false;
             int mode = header.mode();
             int channels = mode == Header.MODE_SINGLE_CHANNEL ? 1 : 2;
-            filter1 = new SynthesisFilter(0, scaleFactor);
-            if (channels == 2) {
-                filter2 = new SynthesisFilter(1, scaleFactor);
+            if (l3decoder != null && l3decoder.header == header && l3decoder.channels == channels
+                    && l3precision == precision) {
+                l3decoder.reset();
+            } else {
+                l3decoder = null;
             }
-            initialized = true;
         }
-        if (l3decoder == null) {
-            l3decoder = new Layer3Decoder(stream, header, filter1, filter2,
-                    this);
+    	if (l3decoder == null) {
+            l3precision = precision;
+            double scaleFactor = 32700.0f;
+            int mode = header.mode();
+            int channels = mode == Header.MODE_SINGLE_CHANNEL ? 1 : 2;
+            if (precision == PRECISION_FLOAT) {
+                FloatSynthesisFilter filter1 = new FloatSynthesisFilter(0, (float) scaleFactor);
+                FloatSynthesisFilter filter2 = null;
+                if (channels == 2) {
+                    filter2 = new FloatSynthesisFilter(1, (float) scaleFactor);
+                }
+                l3decoder = new FloatLayer3Decoder(stream, header, filter1, filter2, this);
+            } else if (precision == PRECISION_FIXED) {
+                FixedSynthesisFilter filter1 = new FixedSynthesisFilter(0, scaleFactor);
+                FixedSynthesisFilter filter2 = null;
+                if (channels == 2) {
+                    filter2 = new FixedSynthesisFilter(1, scaleFactor);
+                }
+                l3decoder = new FixedLayer3Decoder(stream, header, filter1, filter2, this);
+            } else {
+                SynthesisFilter filter1 = new SynthesisFilter(0, scaleFactor);
+                SynthesisFilter filter2 = null;
+                if (channels == 2) {
+                    filter2 = new SynthesisFilter(1, scaleFactor);
+                }
+                l3decoder = new DoubleLayer3Decoder(stream, header, filter1, filter2, this);
+            }
         }
         l3decoder.decodeFrame();
         writeBuffer();
     }
 
-    protected void initOutputBuffer(SourceDataLine line, int numberOfChannels) {
-        this.line = line;
+    /**
+     * Starts a new stream in the same Bitstream: the next decodeFrame resets
+     * the decoding engine instead of creating a new one, if the number of
+     * channels and the precision did not change.
+     */
+    void newStream() {
+        newStream = true;
+    }
+
+    /**
+     * Moves the stream to the target frame for the next decodeFrame: the frames
+     * before it that its main data and overlap come from are decoded without
+     * output. Returns false if the stream ends before the target frame.
+     */
+    boolean seekFrame(Bitstream stream, int target, boolean fast) throws IOException {
+        // also if the seek fails, the stream is somewhere else
+        newStream();
+        if (stream.seek(target, fast) < 0) {
+            return false;
+        }
+        mute = true;
+        try {
+            // a bad header between the frames is no frame
+            while (stream.frame() < target) {
+                try {
+                    Header header = stream.readFrame();
+                    if (header == null) {
+                        return false;
+                    }
+                    decodeFrame(header, stream);
+                } catch (IOException e) {
+                    // like when playing, the frame is skipped
+                } catch (RuntimeException e) {
+                    // same
+                } finally {
+                    stream.closeFrame();
+                }
+            }
+        } finally {
+            mute = false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the given number of samples (per channel) from the next frames,
+     * to land in the middle of one.
+     */
+    void skipSamples(int samples) {
+        skipSamples = samples;
+    }
+
+    /**
+     * Writes no more than the given number of samples (per channel) after
+     * the skipped ones, or any number if -1.
+     */
+    void limitSamples(long samples) {
+        remainingSamples = samples;
+    }
+
+    /**
+     * Selects the arithmetic of the decoding engine, one of the PRECISION_
+     * constants. Takes effect with the next stream.
+     */
+    public void setPrecision(int precision) {
+        this.precision = precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Sets where play sends the audio (a JavaSoundSink by default). Takes
+     * effect with the next stream.
+     */
+    public void setSink(AudioSink sink) {
+        this.sink = sink;
+    }
+
+    public AudioSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Sets the number of frames decoded ahead of the sink (rounded up
+     * to a power of two). Takes effect with the next stream.
+     */
+    public void setDecodeAheadFrames(int frames) {
+        this.decodeAheadFrames = Math.max(1, frames);
+    }
+
+    public int getDecodeAheadFrames() {
+        return decodeAheadFrames;
+    }
+
+    /**
+     * Seeks to the given position of the stream being played, dropping the
+     * frames decoded ahead. Called before play, it sets where the next stream
+     * starts; while paused, it applies when playing resumes. Only streams
+     * played from a buffer or file channel can seek: for others, seek returns
+     * false and the stream plays on (one not started yet plays from the
+     * start).
+     */
+    public boolean seek(long millis) {
+        if (!seekable) {
+            return false;
+        }
+        seekTarget = Math.max(0, millis);
+        return true;
+    }
+
+    /**
+     * Whether seek may use the table of contents of a Xing or VBRI tag to jump
+     * to a part of the stream not read yet. That is quick for long files, but
+     * only about right; otherwise (the default) the frames are counted up to
+     * the target once, and the seek lands on the exact sample.
+     */
+    public void setFastSeek(boolean fastSeek) {
+        this.fastSeek = fastSeek;
+    }
+
+    public boolean isFastSeek() {
+        return fastSeek;
+    }
+
+    /**
+     * The number of decoded frames waiting for the sink.
+     */
+    public int getBufferedFrames() {
+        PcmRing r = ring;
+        return r == null ? 0 : r.size();
+    }
+
+    /**
+     * How often the sink had to wait for the decoder in the current (or
+     * last) stream.
+     */
+    public int getUnderruns() {
+        PcmRing r = ring;
+        return r == null ? 0 : r.underruns();
+    }
+
+    /**
+     * Sets where writeBuffer sends the frames, and the layout of the samples:
+     * 16 bit, interleaved, in the given byte order.
+     */
+    protected void initOutputBuffer(PcmRing ring, int numberOfChannels, boolean bigEndian) {
+        this.ring = ring;
         channels = numberOfChannels;
+        highByte = bigEndian ? 0 : 1;
+        lowByte = 1 - highByte;
+        sampleStep = 2 * numberOfChannels;
         for (int i = 0; i < channels; i++) {
             bufferPointer[i] = i + i;
         }
@@ -411,91 +940,363 @@ class Decoder {
 
     public void appendSamples(int channel, double[] f) {
         int p = bufferPointer[channel];
+        int h = highByte, l = lowByte, step = sampleStep;
         for (int i = 0; i < 32; i++) {
             double sample = f[i];
             int s = (int) ((sample > 32767.0f) ? 32767 : ((sample < -32768.0f) ? -32768 : sample));
-            buffer[p] = (byte) (s >> 8);
-            buffer[p + 1] = (byte) (s & 0xff);
-            p += 4;
+            buffer[p + h] = (byte) (s >> 8);
+            buffer[p + l] = (byte) (s & 0xff);
+            p += step;
+        }
+        bufferPointer[channel] = p;
+    }
+
+    public void appendSamples(int channel, float[] f) {
+        int p = bufferPointer[channel];
+        int h = highByte, l = lowByte, step = sampleStep;
+        for (int i = 0; i < 32; i++) {
+            float sample = f[i];
+            int s = (int) ((sample > 32767.0f) ? 32767 : ((sample < -32768.0f) ? -32768 : sample));
+            buffer[p + h] = (byte) (s >> 8);
+            buffer[p + l] = (byte) (s & 0xff);
+            p += step;
+        }
+        bufferPointer[channel] = p;
+    }
+
+    public void appendSamples(int channel, int[] f) {
+        int p = bufferPointer[channel];
+        int h = highByte, l = lowByte, step = sampleStep;
+        for (int i = 0; i < 32; i++) {
+            int sample = f[i];
+            int s = (sample > 32767) ? 32767 : ((sample < -32768) ? -32768 : sample);
+            buffer[p + h] = (byte) (s >> 8);
+            buffer[p + l] = (byte) (s & 0xff);
+            p += step;
         }
         bufferPointer[channel] = p;
     }
 
     protected void writeBuffer() throws IOException {
-        if (line != null) {
-            line.write(buffer, 0, bufferPointer[0]);
+        if (ring != null && !mute) {
+            int len = bufferPointer[0];
+            if (skipSamples > 0) {
+                int skip = (int) Math.min(len, (long) skipSamples * sampleStep);
+                skipSamples -= skip / sampleStep;
+                len -= skip;
+                System.arraycopy(buffer, skip, buffer, 0, len);
+            }
+            if (remainingSamples >= 0) {
+                len = (int) Math.min(len, remainingSamples * sampleStep);
+                remainingSamples -= len / sampleStep;
+            }
+            if (fade != null) {
+                fade.put(buffer, len);
+            } else if (len > 0) {
+                ring.put(buffer, len);
+            }
         }
         for (int i = 0; i < channels; i++) {
             bufferPointer[i] = i + i;
         }
     }
 
+    /**
+     * Decodes and plays a stream. This thread only decodes, up to
+     * decodeAheadFrames ahead; a second thread writes the frames to the sink,
+     * so that a slow frame or a pause of this thread does not interrupt the
+     * audio while frames are left. The decoder, buffers and writer thread are
+     * kept for the next stream, and the sink may keep its line open.
+     */
     public void play(String name, InputStream in) throws IOException {
-        stop = false;
-        int frameCount = Integer.MAX_VALUE;
+        if (stream == null) {
+            stream = new Bitstream(in);
+        } else {
+            stream.reset(in);
+        }
+        play(name, stream, in);
+    }
 
-        // int testing;
-        // frameCount = 100;
+    /**
+     * Decodes and plays the remaining bytes of the buffer, like play(String,
+     * InputStream).
+     */
+    public void play(String name, ByteBuffer in) throws IOException {
+        if (stream == null) {
+            stream = new Bitstream(in);
+        } else {
+            stream.reset(in);
+        }
+        play(name, stream, null);
+    }
 
-        Decoder decoder = new Decoder();
-        Bitstream stream = new Bitstream(in);
-        SourceDataLine line = null;
-        
-        int error = 0;
-        for (int frame = 0; !stop && frame < frameCount; frame++) {
-            if (pause) {
-                line.stop();
-                while (pause && !stop) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        // ignore
-                    }
+    /**
+     * Decodes and plays a file from the position of the channel through a
+     * memory mapped view, then closes the channel.
+     */
+    public void play(String name, FileChannel in) throws IOException {
+        try {
+            long position = in.position();
+            long size = in.size() - position;
+            if (size > Integer.MAX_VALUE) {
+                play(name, Channels.newInputStream(in));
+            } else {
+                play(name, in.map(FileChannel.MapMode.READ_ONLY, position, size));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Plays a file through a memory mapped view. With an index cache, the
+     * frame index of the file is loaded from its index file, and stored once
+     * the file has been read to the end.
+     */
+    public void play(File file) throws IOException {
+        stop = false;
+        fade = null;
+        decode(file);
+        finish();
+    }
+
+    /**
+     * Plays the files one after the other like play(File), until there is no
+     * next file or stop is called. Files of the same format go to the sink as
+     * one stream, without the samples the encoder added at the start and end
+     * of each (from a LAME tag), so that a track that goes on from the last
+     * one plays without a gap, or crossfades into it, see setCrossfade. A
+     * file that can not be opened is skipped (see getLastError); if a file
+     * comes again before any file played since it, none of the files plays,
+     * and the playlist ends with an IOException.
+     */
+    public void play(Iterator<File> files) throws IOException {
+        stop = false;
+        fade = null;
+        lastError = null;
+        // the files that played nothing since the last one that did
+        Set<File> silent = new HashSet<File>();
+        IOException failure = null;
+        if (crossfade > 0) {
+            if (crossfader == null) {
+                crossfader = new Crossfade();
+            }
+            fade = crossfader;
+        }
+        while (!stop && files.hasNext()) {
+            File file = files.next();
+            if (!silent.add(file)) {
+                failure = new IOException("No file of the playlist plays");
+                failure.initCause(lastError);
+                break;
+            }
+            try {
+                if (decode(file)) {
+                    silent.clear();
                 }
-                line.flush();
-                line.start();
+                if (fade != null && !stop) {
+                    fade.next();
+                }
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        finish();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The error of the last file that play(Iterator) skipped, or null.
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Returns whether a frame of the file was decoded.
+     */
+    private boolean decode(File file) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                InputStream in = Channels.newInputStream(channel);
+                if (stream == null) {
+                    stream = new Bitstream(in);
+                } else {
+                    stream.reset(in);
+                }
+                return decode(file.getName(), stream);
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (stream == null) {
+                stream = new Bitstream(in);
+            } else {
+                stream.reset(in);
             }
+            FrameIndexCache cache = indexCache;
+            boolean cached = cache != null && cache.load(file, stream.index());
+            boolean decoded = decode(file.getName(), stream);
+            if (cache != null && !cached) {
+                cache.store(file, stream.index());
+            }
+            return decoded;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Sets where play(File) keeps the frame indexes of the files, or null
+     * (the default) for none.
+     */
+    public void setIndexCache(FrameIndexCache indexCache) {
+        this.indexCache = indexCache;
+    }
+
+    public FrameIndexCache getIndexCache() {
+        return indexCache;
+    }
+
+    /**
+     * Sets how long consecutive tracks of play(Iterator) overlap in ms, the
+     * old one fading out while the new one fades in, or 0 (the default) to
+     * play them one after the other. Tracks of different formats are not
+     * mixed. The frames decoded ahead grow by the overlap. Takes effect with
+     * the next playlist.
+     */
+    public void setCrossfade(int millis) {
+        crossfade = Math.max(0, millis);
+    }
+
+    public int getCrossfade() {
+        return crossfade;
+    }
+
+    private void play(String name, Bitstream stream, InputStream in) throws IOException {
+        stop = false;
+        fade = null;
+        decode(name, stream);
+        finish();
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Decodes a stream into the ring of the open sink, after opening it if
+     * there is none or the last stream had another format. The tag frame, and
+     * the encoder delay and padding of a LAME tag are left out. Returns
+     * whether a frame was decoded.
+     */
+    private boolean decode(String name, Bitstream stream) throws IOException {
+        int frameCount = Integer.MAX_VALUE;
+
+        // int testing;
+        // frameCount = 100;
+
+        if (output == null) {
+            output = new Decoder();
+        }
+        Decoder decoder = output;
+        decoder.setPrecision(precision);
+        decoder.newStream();
+        decoder.skipSamples(0);
+        decoder.limitSamples(-1);
+        seekable = stream.canSeek();
+        PcmRing ring = null;
+        // the samples of the stream before the first one of the track (the
+        // tag frame and the delays), and the length of the track or -1
+        long start = 0;
+        long length = -1;
+
+        int error = 0;
+        boolean decoded = false;
+        // the sink failed, the stream can not play
+        IOException failure = null;
+        for (int frame = 0; !stop && frame < frameCount; frame++) {
             try {
                 Header header = stream.readFrame();
                 if (header == null) {
                     break;
                 }
-                if (decoder.channels == 0) {
+                boolean first = ring == null;
+                if (first) {
                     int channels = (header.mode() == Header.MODE_SINGLE_CHANNEL) ? 1 : 2;
-                    float sampleRate = header.frequency();
-                    int sampleSize = 16;
-                    AudioFormat format = new AudioFormat(
-                            AudioFormat.Encoding.PCM_SIGNED, sampleRate,
-                            sampleSize, channels, channels * (sampleSize / 8),
-                            sampleRate, true);
-                    // big endian
-                    SourceDataLine.Info info = new DataLine.Info(
-                            SourceDataLine.class, format);
-                    line = (SourceDataLine) AudioSystem.getLine(info);
-                    
-                    if (BENCHMARK) {
-                        decoder.initOutputBuffer(null, channels);
-                    } else {
-                        decoder.initOutputBuffer(line, channels);
+                    try {
+                        if (openSink != null && (openSink != this.sink || header.frequency() != openFrequency
+                                || channels != openChannels)) {
+                            finish();
+                        }
+                        if (openSink == null) {
+                            open(header.frequency(), channels, header.samplesPerFrame());
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                        break;
+                    }
+                    ring = this.ring;
+                    decoder.initOutputBuffer(ring, channels, format.isBigEndian());
+                    decoder.fade = fade;
+                    FrameIndex index = stream.index();
+                    start = index.startSamples();
+                    length = index.lengthSamples();
+                }
+                if (ring.isClosed()) {
+                    // stopped, or the writer failed
+                    break;
+                }
+                long target = seekTarget;
+                if (target >= 0 && !stream.canSeek()) {
+                    // set before the stream started
+                    seekTarget = -1;
+                    target = -1;
+                }
+                if (target >= 0) {
+                    seekTarget = -1;
+                    long sample = target * header.frequency() / 1000;
+                    if (length >= 0) {
+                        sample = Math.min(sample, length);
+                    }
+                    int samplesPerFrame = header.samplesPerFrame();
+                    stream.closeFrame();
+                    boolean found;
+                    try {
+                        found = decoder.seekFrame(stream,
+                                (int) Math.min(Integer.MAX_VALUE, (start + sample) / samplesPerFrame), fastSeek);
+                    } finally {
+                        // the old frames play on while the decoder is primed,
+                        // or until a failed seek goes on wherever it stopped
+                        ring.discard();
+                        if (fade != null) {
+                            fade.clear();
+                        }
+                    }
+                    if (!found) {
+                        break;
                     }
-                    // TODO sometimes the line can not be opened (maybe not enough system resources?): display error message
-                    // System.out.println(line.getFormat().toString());
-                    line.open(format);
-                    line.start();
-                    volume = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
-                    volume.setValue(-10F);
+                    decoder.skipSamples((int) ((start + sample) % samplesPerFrame));
+                    decoder.limitSamples(length < 0 ? -1 : length - sample);
+                    continue;
                 }
-                while (line.available() < 100) {
-                    Thread.yield();
-                    Thread.sleep(200);
+                if (first && start > 0) {
+                    // the tag frame has no audio
+                    decoder.skipSamples((int) (start - header.samplesPerFrame()));
+                    decoder.limitSamples(length);
+                    continue;
                 }
                 decoder.decodeFrame(header, stream);
+                decoded = true;
             } catch (Exception e) {
                 if (error++ > 1000) {
                     break;
                 }
-                // TODO should not write directly
-                System.out.println("Error at: " + name + " Frame: " + frame + " Error: " + e.toString());
+                if (error <= REPORTED_ERRORS) {
+                    // TODO should not write directly
+                    System.out.println("Error at: " + name + " Frame: " + frame + " Error: " + e.toString());
+                }
                 // e.printStackTrace();
             } finally {
                 stream.closeFrame();
@@ -504,21 +1305,266 @@ class Decoder {
         if (error > 0) {
             System.out.println("errors: " + error);
         }
-        in.close();
-        if (line != null) {
-            line.stop();
-            line.close();
-            line = null;
+        seekTarget = -1;
+        seekable = true;
+        if (failure != null) {
+            throw failure;
+        }
+        return decoded;
+    }
+
+    /**
+     * Opens the sink for the format and starts the writer on the ring.
+     */
+    private void open(int frequency, int channels, int samplesPerFrame) throws IOException {
+        AudioFormat format = outputFormat(this.sink, frequency, channels);
+        AudioSink sink = this.sink;
+        sink.open(format);
+        sink.start();
+        openSink = sink;
+        openFrequency = frequency;
+        openChannels = channels;
+        volume = sink.getVolumeControl();
+        if (volume != null) {
+            volume.setValue(-10F);
+        }
+        int fadeSamples = (int) ((long) crossfade * frequency / 1000);
+        int frames = decodeAheadFrames;
+        if (fade != null) {
+            // after each fade, a window of the new track is decoded before
+            // anything reaches the ring again: the ring has to last that long
+            frames += (fadeSamples + samplesPerFrame - 1) / samplesPerFrame;
+        }
+        PcmRing ring = this.ring;
+        if (ring == null || ring.capacity() < frames || ring.capacity() >= 2 * frames) {
+            ring = new PcmRing(frames, BUFFER_SIZE * 2);
+        } else {
+            ring.reset();
+        }
+        this.ring = ring;
+        if (stop) {
+            ring.close();
+        }
+        startWriter(ring, sink);
+        if (fade != null) {
+            fade.start(ring, fadeSamples, channels, format.isBigEndian());
+        }
+    }
+
+    /**
+     * Lets the writer play the rest of the ring, then closes the open sink.
+     * Throws the error that stopped the writer early, if any.
+     */
+    private void finish() throws IOException {
+        AudioSink sink = openSink;
+        if (sink == null) {
+            return;
+        }
+        openSink = null;
+        if (fade != null) {
+            if (stop) {
+                fade.clear();
+            } else {
+                fade.flush();
+            }
+        }
+        ring.close();
+        awaitWriter();
+        if (stop) {
+            sink.flush();
+        }
+        sink.close();
+        Exception error;
+        synchronized (writerLock) {
+            error = writerError;
+            writerError = null;
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error != null) {
+            IOException e = new IOException("Error writing");
+            e.initCause(error);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes what the sink keeps open for the next stream (the audio line),
+     * after it has played the rest of the last stream.
+     */
+    public void release() throws IOException {
+        sink.release();
+    }
+
+    /**
+     * The 16 bit format for the sink: in the native byte order if the sink
+     * supports it, so that the samples are not converted again on the way to
+     * the device.
+     */
+    private AudioFormat outputFormat(AudioSink sink, float sampleRate, int channels) {
+        AudioFormat format = this.format;
+        if (format != null && formatSink == sink && format.getSampleRate() == sampleRate
+                && format.getChannels() == channels) {
+            return format;
+        }
+        boolean bigEndian = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+        format = new AudioFormat(sampleRate, 16, channels, true, bigEndian);
+        if (!sink.isFormatSupported(format)) {
+            format = new AudioFormat(sampleRate, 16, channels, true, !bigEndian);
+        }
+        this.format = format;
+        formatSink = sink;
+        return format;
+    }
+
+    /**
+     * Hands the stream to the writer thread, which is started on first use.
+     */
+    private void startWriter(PcmRing ring, AudioSink sink) {
+        synchronized (writerLock) {
+            writerRing = ring;
+            writerSink = sink;
+            writerLock.notifyAll();
+        }
+        if (writer == null) {
+            writer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    while (true) {
+                        PcmRing ring;
+                        AudioSink sink;
+                        Exception error = null;
+                        synchronized (writerLock) {
+                            while (writerRing == null) {
+                                try {
+                                    writerLock.wait();
+                                } catch (InterruptedException e) {
+                                    // ignore
+                                }
+                            }
+                            ring = writerRing;
+                            sink = writerSink;
+                        }
+                        try {
+                            writeFrames(ring, sink);
+                        } catch (IOException e) {
+                            error = e;
+                        } catch (RuntimeException e) {
+                            error = e;
+                        } finally {
+                            ring.close();
+                            synchronized (writerLock) {
+                                writerError = error;
+                                writerRing = null;
+                                writerSink = null;
+                                writerLock.notifyAll();
+                            }
+                        }
+                    }
+                }
+            }, "MP3 writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Waits until the writer thread has written the stream.
+     */
+    private void awaitWriter() {
+        synchronized (writerLock) {
+            while (writerRing != null) {
+                try {
+                    writerLock.wait();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the decoded frames to the sink. The frames already decoded are
+     * written in chunks of up to half the sink buffer; the sink blocks the
+     * write until it has room, which paces this thread and (through the
+     * ring) the decoder without polling.
+     */
+    private void writeFrames(PcmRing ring, AudioSink sink) throws IOException {
+        int frameBytes = BUFFER_SIZE * 2;
+        int bufferSize = sink.getBufferSize();
+        int chunkSize = Math.max(frameBytes, bufferSize / 2);
+        byte[] chunk = this.chunk;
+        if (chunk == null || chunk.length < chunkSize) {
+            chunk = new byte[chunkSize];
+            this.chunk = chunk;
+        }
+        boolean started = false;
+        ring.awaitFull();
+        while (!stop) {
+            if (pause) {
+                sink.stop();
+                synchronized (pauseLock) {
+                    while (pause && !stop) {
+                        try {
+                            pauseLock.wait();
+                        } catch (InterruptedException e) {
+                            // ignore
+                        }
+                    }
+                }
+                sink.flush();
+                sink.start();
+            }
+            // only a sink that plays in real time can run dry
+            if (started && bufferSize > 0 && ring.size() == 0 && !ring.isClosed()
+                    && bufferSize - sink.available() < frameBytes) {
+                ring.underrun();
+            }
+            int len = ring.take(chunk, 0);
+            if (len < 0) {
+                break;
+            }
+            if (ring.discarded()) {
+                // after a seek: drop what the sink has of the old position
+                sink.flush();
+            }
+            started = true;
+            while (ring.size() > 0 && len + frameBytes <= chunkSize) {
+                int n = ring.take(chunk, len);
+                if (n < 0) {
+                    break;
+                }
+                if (ring.discarded()) {
+                    sink.flush();
+                    System.arraycopy(chunk, len, chunk, 0, n);
+                    len = n;
+                } else {
+                    len += n;
+                }
+            }
+            sink.write(chunk, 0, len);
         }
     }
 
     public void stop() {
         this.stop = true;
+        PcmRing r = ring;
+        if (r != null) {
+            // wake up both stages
+            r.close();
+        }
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
     }
     
     public boolean pause() {
-        this.pause = !pause;
-        return pause;
+        synchronized (pauseLock) {
+            this.pause = !pause;
+            pauseLock.notifyAll();
+            return pause;
+        }
     }
 
 }
@@ -536,10 +1582,6 @@ final class Bitstream {
      * Maximum size of the frame buffer. max. 1730 bytes per frame: 144 * 384kbit/s / 32000 Hz + 2 Bytes CRC
      */
     private static final int BUFFER_INT_SIZE = 433;
-    /**
-     * The frame buffer that holds the data for the current frame.
-     */
-    private final int[] frameBuffer = new int[BUFFER_INT_SIZE];
     /**
      * Number of valid bytes in the frame buffer.
      */
@@ -548,10 +1590,8 @@ final class Bitstream {
      * The bytes read from the stream.
      */
     private final byte[] frameBytes = new byte[BUFFER_INT_SIZE * 4];
-    // Index into frameBuffer where the next bits are retrieved.
-    private int wordPointer;
     /**
-     * Number (0-31, from MSB to LSB) of next bit for getBits()
+     * Index (from the MSB of frameBytes[0]) of the next bit for getBits(), or -1 if the frame is not parsed yet.
      */
     private int bitIndex;
     private int syncWord;
@@ -560,39 +1600,167 @@ final class Bitstream {
             0, // dummy
             0x00000001, 0x00000003, 0x00000007, 0x0000000F, 0x0000001F, 0x0000003F, 0x0000007F, 0x000000FF, 0x000001FF, 0x000003FF, 0x000007FF, 0x00000FFF, 0x00001FFF, 0x00003FFF,
             0x00007FFF, 0x0000FFFF, 0x0001FFFF };
-    private final PushbackInputStream source;
+    /**
+     * Size of the window a stream is read through.
+     */
+    private static final int WINDOW_SIZE = 16 * 1024;
+    /**
+     * Bytes kept before the read position when the window is refilled, so
+     * that a frame can be pushed back.
+     */
+    private static final int KEEP = BUFFER_INT_SIZE * 4;
+    /**
+     * The number of bytes of main data that a frame can take from the frames
+     * before it.
+     */
+    private static final int MAX_MAIN_DATA_BEGIN = 511;
+    /**
+     * The most bytes of a frame that are not main data: header, CRC and the
+     * side info of an MPEG1 stereo frame.
+     */
+    private static final int MAX_FRAME_OVERHEAD = 4 + 2 + 32;
+    /**
+     * The number of bad frames in a row after which a scan gives up.
+     */
+    private static final int MAX_ERRORS = 1000;
     private final Header header = new Header();
-    private final byte[] syncBuffer = new byte[4];
-    private byte[] rawID3v2 = null;
     private boolean firstFrame = true;
+    private boolean endOfStream;
+    /**
+     * The frames read so far (only in a buffer given by the caller), and the
+     * position of the buffer the offsets count from.
+     */
+    private final FrameIndex index = new FrameIndex();
+    private int origin;
+    /**
+     * The number of the next frame, and whether it is exact: not after a seek
+     * through the table of contents.
+     */
+    private int frame;
+    private boolean exact = true;
+    /**
+     * Whether readFrameData skips the data instead of copying it, while
+     * scanning headers.
+     */
+    private boolean skipData;
+    /**
+     * The bytes to read, from the position to the limit: a buffer given by the
+     * caller (like a memory mapped file), or the window over the stream.
+     */
+    private ByteBuffer buffer;
+    /**
+     * The stream the window is refilled from, or null if the whole input is
+     * in the buffer.
+     */
+    private InputStream in;
+    private ByteBuffer window;
 
     public Bitstream(InputStream in) {
-        source = new PushbackInputStream(in, BUFFER_INT_SIZE * 4);
+        setInput(in);
         loadID3v2();
+        startIndex();
         closeFrame();
     }
 
+    /**
+     * Reads the remaining bytes of the buffer, advancing its position. Sync
+     * search, ID3 skipping and the push back of frames are done on the
+     * buffer, without a stream.
+     */
+    public Bitstream(ByteBuffer in) {
+        buffer = in;
+        loadID3v2();
+        startIndex();
+        closeFrame();
+    }
+
+    /**
+     * Starts reading the next stream, reusing the buffers.
+     */
+    void reset(InputStream in) {
+        setInput(in);
+        start();
+    }
+
+    /**
+     * Starts reading the remaining bytes of the buffer, reusing the buffers.
+     */
+    void reset(ByteBuffer in) {
+        this.in = null;
+        buffer = in;
+        start();
+    }
+
+    private void setInput(InputStream in) {
+        this.in = in;
+        if (window == null) {
+            window = ByteBuffer.allocate(WINDOW_SIZE);
+        }
+        window.clear();
+        window.limit(0);
+        buffer = window;
+    }
+
+    private void start() {
+        header.reset();
+        firstFrame = true;
+        endOfStream = false;
+        loadID3v2();
+        startIndex();
+        closeFrame();
+    }
+
+    private void startIndex() {
+        index.clear();
+        origin = buffer.position();
+        frame = 0;
+        exact = true;
+    }
+
+    /**
+     * Makes at least n bytes readable, if the stream has them, by moving the
+     * unread bytes (and KEEP bytes before them) to the start of the window and
+     * filling the rest from the stream. Returns the number of readable bytes.
+     */
+    private int fill(int n) throws IOException {
+        ByteBuffer b = buffer;
+        int remaining = b.remaining();
+        if (remaining >= n || in == null) {
+            return remaining;
+        }
+        byte[] w = b.array();
+        int keep = Math.min(b.position(), KEEP);
+        int start = b.position() - keep;
+        int limit = b.limit() - start;
+        System.arraycopy(w, start, w, 0, limit);
+        while (limit - keep < n) {
+            int len = in.read(w, limit, w.length - limit);
+            if (len < 0) {
+                break;
+            }
+            limit += len;
+        }
+        b.limit(limit);
+        b.position(keep);
+        return limit - keep;
+    }
+
     private void loadID3v2() {
         int size = -1;
         try {
-            // read ID3v2 header
-            source.mark(10);
             size = readID3v2Header();
         } catch (IOException e) {
             // ignore
-        } finally {
-            try {
-                // unread ID3v2 header
-                source.reset();
-            } catch (IOException e) {
-                // ignore
-            }
         }
-        // load ID3v2 tags.
+        // skip ID3v2 tags (they are not used)
         try {
-            if (size > 0) {
-                rawID3v2 = new byte[size];
-                this.readBytes(rawID3v2, 0, rawID3v2.length);
+            while (size > 0) {
+                int len = Math.min(size, fill(1));
+                if (len <= 0) {
+                    break;
+                }
+                buffer.position(buffer.position() + len);
+                size -= len;
             }
         } catch (IOException e) {
             // ignore
@@ -600,7 +1768,8 @@ final class Bitstream {
     }
 
     /**
-     * Parse ID3v2 tag header to find out size of ID3v2 frames.
+     * Parse ID3v2 tag header to find out size of ID3v2 frames. The header is
+     * only looked at, it is not consumed.
      * 
      * @param in MP3 InputStream
      * @return size of ID3v2 frames + header
@@ -608,13 +1777,13 @@ final class Bitstream {
      * @author JavaZOOM
      */
     private int readID3v2Header() throws IOException {
-        byte[] buff = new byte[4];
+        ByteBuffer b = buffer;
         int size = -10;
-        readBytes(buff, 0, 3);
-        if (buff[0] == 'I' && buff[1] == 'D' && buff[2] == '3') {
-            readBytes(buff, 0, 3);
-            readBytes(buff, 0, 4);
-            size = (buff[0] << 21) + (buff[1] << 14) + (buff[2] << 7) + buff[3];
+        if (fill(10) >= 10) {
+            int p = b.position();
+            if (b.get(p) == 'I' && b.get(p + 1) == 'D' && b.get(p + 2) == '3') {
+                size = (b.get(p + 6) << 21) + (b.get(p + 7) << 14) + (b.get(p + 8) << 7) + b.get(p + 9);
+            }
         }
         return size + 10;
     }
@@ -626,15 +1795,155 @@ final class Bitstream {
      * @throws IOException
      */
     public Header readFrame() throws IOException {
+        Header result = readNextFrame();
+        if (result != null) {
+            indexFrame(result);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the frame just read, adds it to the index and takes the VBR tag
+     * from the first frame.
+     */
+    private void indexFrame(Header header) throws IOException {
+        int offset = buffer.position() - frameSize - 4 - origin;
+        if (exact && frame == index.size() && in == null) {
+            index.add(offset);
+        }
+        frame++;
+        if (firstFrame) {
+            firstFrame = false;
+            index.setFormat(header.frequency(), header.samplesPerFrame());
+            header.parseVBR(frameBytes, index, offset);
+        }
+    }
+
+    /**
+     * The frames read so far, or all frames once the stream has been read to
+     * the end.
+     */
+    FrameIndex index() {
+        return index;
+    }
+
+    /**
+     * The number of the next frame.
+     */
+    int frame() {
+        return frame;
+    }
+
+    /**
+     * Whether seek can move in the stream, which needs the input in a buffer.
+     */
+    boolean canSeek() {
+        return in == null;
+    }
+
+    /**
+     * Moves to a frame before the target frame, so that decoding from there
+     * fills the bit reservoir and the overlap of the decoder for the target
+     * frame; the decoder must be reset first. If not fast, the frames up to
+     * the target are indexed by reading their headers, once. If fast and a
+     * table of contents in a Xing or VBRI tag, a frame not indexed yet is
+     * looked up in the table, which is quick but only about right.
+     * 
+     * @return the number of the frame to decode first, or -1 if the stream
+     *         ends before the target frame
+     * @throws IOException if the input is not a buffer
+     */
+    int seek(int target, boolean fast) throws IOException {
+        if (in != null) {
+            throw new IOException("Stream can not seek");
+        }
+        target = Math.max(0, target);
+        closeFrame();
+        if (fast && index.size() == 0 && scanFrame() == null) {
+            // the first frame has the tag
+            return -1;
+        }
+        if (fast && target >= index.size() && index.hasToc()) {
+            int average = Math.max(1, index.averageFrameBytes() - MAX_FRAME_OVERHEAD);
+            int first = Math.max(0, target - 1 - (MAX_MAIN_DATA_BEGIN + average - 1) / average);
+            buffer.position(Math.min(buffer.limit(), origin + index.tocOffset(first)));
+            frame = first;
+            exact = false;
+            return first;
+        }
+        if (target >= index.size()) {
+            // read on from the last indexed frame
+            if (index.size() > 0) {
+                buffer.position(origin + index.offset(index.size() - 1));
+                frame = index.size() - 1;
+            } else {
+                buffer.position(origin);
+                frame = 0;
+            }
+            exact = true;
+            while (target >= index.size()) {
+                if (scanFrame() == null) {
+                    return -1;
+                }
+            }
+        }
+        // the frame before the target for the overlap, and enough before it
+        // for the main data of that frame
+        int first = Math.max(0, target - 1);
+        int bytes = 0;
+        while (first > 0 && bytes < MAX_MAIN_DATA_BEGIN) {
+            first--;
+            bytes += index.offset(first + 1) - index.offset(first) - MAX_FRAME_OVERHEAD;
+        }
+        buffer.position(origin + index.offset(first));
+        frame = first;
+        exact = true;
+        return first;
+    }
+
+    /**
+     * Reads the header of the next frame and adds it to the index like
+     * readFrame, but skips the frame data without copying it (apart from the
+     * first frame, which may have a VBR tag). The frame can not be decoded.
+     * Returns null at the end of the stream.
+     */
+    Header skipFrame() throws IOException {
+        skipData = true;
         try {
-            Header result = readNextFrame();
-            if (firstFrame) {
-                result.parseVBR(frameBytes);
-                firstFrame = false;
+            Header header = readNextFrame();
+            if (header != null) {
+                try {
+                    indexFrame(header);
+                } catch (IOException e) {
+                    // a corrupt VBR tag, the frame is still there
+                }
+            }
+            return header;
+        } finally {
+            skipData = false;
+            closeFrame();
+        }
+    }
+
+    /**
+     * Skips the next frame like skipFrame, and bad ones before it, like when
+     * playing. Returns null at the end of the stream.
+     * 
+     * @throws IOException after too many bad frames in a row
+     */
+    Header scanFrame() throws IOException {
+        int errors = 0;
+        while (true) {
+            try {
+                return skipFrame();
+            } catch (IOException e) {
+                // skipFrame closed the bad frame, the next header is searched
+                if (++errors > MAX_ERRORS) {
+                    IOException e2 = new IOException("Too many errors");
+                    e2.initCause(e);
+                    throw e2;
+                }
             }
-            return result;
-        } catch (EOFException e) {
-            return null;
         }
     }
 
@@ -645,21 +1954,30 @@ final class Bitstream {
                 if (ok) {
                     break;
                 }
+                if (endOfStream) {
+                    if (exact && frame == index.size() && in == null) {
+                        index.setComplete();
+                    }
+                    return null;
+                }
                 closeFrame();
             }
         }
         return header;
     }
 
+    /**
+     * Pushes back the frame read last. It is still in the buffer, since a
+     * refill keeps KEEP bytes.
+     */
     void unreadFrame() throws IOException {
-        if (wordPointer == -1 && bitIndex == -1 && frameSize > 0) {
-            source.unread(frameBytes, 0, frameSize);
+        if (bitIndex == -1 && frameSize > 0) {
+            buffer.position(buffer.position() - frameSize);
         }
     }
 
     public void closeFrame() {
         frameSize = -1;
-        wordPointer = -1;
         bitIndex = -1;
     }
 
@@ -667,46 +1985,54 @@ final class Bitstream {
      * Determines if the next 4 bytes of the stream represent a frame header.
      */
     boolean isSyncCurrentPosition(int syncMode) throws IOException {
-        int read = readBytes(syncBuffer, 0, 4);
-        int headerString = ((syncBuffer[0] << 24) & 0xFF000000) | ((syncBuffer[1] << 16) & 0x00FF0000) | ((syncBuffer[2] << 8) & 0x0000FF00) | ((syncBuffer[3] << 0) & 0x000000FF);
-        try {
-            source.unread(syncBuffer, 0, read);
-        } catch (IOException ex) {
-            // ignore
-        }
+        int read = Math.min(4, fill(4));
         if (read == 0) {
             return true;
         } else if (read == 4) {
-            return isSyncMark(headerString, syncMode, syncWord);
+            return isSyncMark(word(buffer.position()), syncMode, syncWord);
         } else {
             return false;
         }
     }
 
     /**
-     * Get next 32 bits from bitstream. They are stored in the headerstring. syncmod allows Synchro flag ID The returned
-     * value is False at the end of stream.
+     * The 4 bytes at the index of the buffer, big endian.
+     */
+    private int word(int p) {
+        ByteBuffer b = buffer;
+        return ((b.get(p) << 24) & 0xFF000000) | ((b.get(p + 1) << 16) & 0x00FF0000)
+                | ((b.get(p + 2) << 8) & 0x0000FF00) | (b.get(p + 3) & 0x000000FF);
+    }
+
+    /**
+     * Finds the next frame header and returns it, positioned after it. The
+     * buffer is scanned in place for the 0xFFE sync bits, and only those
+     * candidates are checked against the sync word. The returned value is 0
+     * at the end of stream, which is never a valid header.
      * 
      * @param syncMode
      */
     int syncHeader(byte syncMode) throws IOException {
-        boolean sync;
-        int headerString;
-        // read additional 2 bytes
-        int bytesRead = readBytes(syncBuffer, 0, 3);
-        if (bytesRead != 3) {
-            throw new EOFException();
-        }
-        headerString = ((syncBuffer[0] << 16) & 0x00FF0000) | ((syncBuffer[1] << 8) & 0x0000FF00) | ((syncBuffer[2] << 0) & 0x000000FF);
-        do {
-            headerString <<= 8;
-            if (readBytes(syncBuffer, 3, 1) != 1) {
-                throw new EOFException();
+        ByteBuffer b = buffer;
+        while (true) {
+            int p = b.position();
+            int end = b.limit() - 3;
+            for (; p < end; p++) {
+                if (b.get(p) == (byte) 0xFF && (b.get(p + 1) & 0xE0) == 0xE0) {
+                    int headerString = word(p);
+                    if (isSyncMark(headerString, syncMode, syncWord)) {
+                        b.position(p + 4);
+                        return headerString;
+                    }
+                }
+            }
+            b.position(p);
+            if (fill(4) < 4) {
+                b.position(b.limit());
+                endOfStream = true;
+                return 0;
             }
-            headerString |= (syncBuffer[3] & 0x000000FF);
-            sync = isSyncMark(headerString, syncMode, syncWord);
-        } while (!sync);
-        return headerString;
+        }
     }
 
     private boolean isSyncMark(int headerString, int syncMode, int word) {
@@ -736,9 +2062,12 @@ final class Bitstream {
      */
     int readFrameData(int byteSize) throws IOException {
         int numread = 0;
-        numread = readFully(frameBytes, 0, byteSize);
+        if (skipData && !firstFrame) {
+            numread = skip(byteSize);
+        } else {
+            numread = readFully(frameBytes, 0, byteSize);
+        }
         frameSize = byteSize;
-        wordPointer = -1;
         bitIndex = -1;
         return numread;
     }
@@ -747,63 +2076,32 @@ final class Bitstream {
      * Parses the data previously read with readFrameData().
      */
     void parseFrame() {
-        // Convert bytes read to int
-        int b = 0;
-        byte[] byteRead = frameBytes;
-        int byteSize = frameSize;
-        for (int k = 0; k < byteSize; k = k + 4) {
-            byte b0 = 0;
-            byte b1 = 0;
-            byte b2 = 0;
-            byte b3 = 0;
-            b0 = byteRead[k];
-            if (k + 1 < byteSize) {
-                b1 = byteRead[k + 1];
-            }
-            if (k + 2 < byteSize) {
-                b2 = byteRead[k + 2];
-            }
-            if (k + 3 < byteSize) {
-                b3 = byteRead[k + 3];
-            }
-            frameBuffer[b++] = ((b0 << 24) & 0xFF000000) | ((b1 << 16) & 0x00FF0000) | ((b2 << 8) & 0x0000FF00) | (b3 & 0x000000FF);
-        }
-        wordPointer = 0;
         bitIndex = 0;
     }
 
     /**
      * Read bits from buffer into the lower bits of an unsigned int. The LSB contains the latest read bit of the stream.
-     * (1 <= numberOfBits <= 16)
+     * (1 <= numberOfBits <= 16) Only for the frame returned by readFrame: Header.readHeader parses every frame it
+     * returns, which sets bitIndex to 0.
      */
     int getBits(int numberOfBits) {
-        int returnValue = 0;
-        int sum = bitIndex + numberOfBits;
-        // TODO There is a problem here, wordpointer could be -1 ?!
-        if (wordPointer < 0) {
-            System.out.println("wordPointer < 0");
-            wordPointer = 0;
-        }
-        if (sum <= 32) {
-            // all bits contained in *wordpointer
-            returnValue = (frameBuffer[wordPointer] >>> (32 - sum)) & BITMASK[numberOfBits];
-            bitIndex += numberOfBits;
-            if (bitIndex == 32) {
-                bitIndex = 0;
-                wordPointer++;
-            }
-            return returnValue;
-        }
-        int right = (frameBuffer[wordPointer] & 0x0000FFFF);
-        wordPointer++;
-        int left = (frameBuffer[wordPointer] & 0xFFFF0000);
-        returnValue = ((right << 16) & 0xFFFF0000) | ((left >>> 16) & 0x0000FFFF);
-        returnValue >>>= 48 - sum;
-        returnValue &= BITMASK[numberOfBits];
-        bitIndex = sum - 32;
+        byte[] b = frameBytes;
+        int p = bitIndex >>> 3;
+        int bits = ((b[p] & 0xFF) << 16) | ((b[p + 1] & 0xFF) << 8) | (b[p + 2] & 0xFF);
+        int returnValue = (bits >>> (24 - (bitIndex & 7) - numberOfBits)) & BITMASK[numberOfBits];
+        bitIndex += numberOfBits;
         return returnValue;
     }
 
+    /**
+     * Appends the next len bytes of the frame to the bit reservoir, without going through getBits(). The read
+     * position must be at a byte boundary, which is the case after the side info.
+     */
+    void getBytes(BitReservoir br, int len) {
+        br.putBytes(frameBytes, bitIndex >>> 3, len);
+        bitIndex += len << 3;
+    }
+
     /**
      * Set the word we want to sync the header to. In Big-Endian byte order
      */
@@ -812,6 +2110,19 @@ final class Bitstream {
         singleChMode = ((s & 0x000000C0) == 0x000000C0);
     }
 
+    /**
+     * Skips up to len bytes and returns the number skipped, less only at the
+     * end of the stream.
+     */
+    private int skip(int len) throws IOException {
+        if (len <= 0) {
+            return 0;
+        }
+        int skipped = Math.min(len, fill(len));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
     /**
      * Reads the exact number of bytes from the source input stream into a byte array.
      * 
@@ -823,110 +2134,105 @@ final class Bitstream {
      */
     private int readFully(byte[] b, int offs, int len) throws IOException {
         // TODO does not in fact throw an exception, probably return not required
-        int read = 0;
-        while (len > 0) {
-            int bytesRead = source.read(b, offs, len);
-            if (bytesRead == -1) {
-                while (len-- > 0) {
-                    b[offs++] = 0;
-                }
-                break;
-            }
-            read = read + bytesRead;
-            offs += bytesRead;
-            len -= bytesRead;
+        if (len <= 0) {
+            return 0;
         }
-        return read;
-    }
-
-    /**
-     * Simlar to readFully, but doesn't throw exception when EOF is reached.
-     */
-    private int readBytes(byte[] b, int offs, int len) throws IOException {
-        int totalBytesRead = 0;
-        while (len > 0) {
-            int bytesRead = source.read(b, offs, len);
-            if (bytesRead == -1) {
-                break;
-            }
-            totalBytesRead += bytesRead;
-            offs += bytesRead;
-            len -= bytesRead;
+        int read = Math.min(len, fill(len));
+        buffer.get(b, offs, read);
+        for (int i = read; i < len; i++) {
+            b[offs + i] = 0;
         }
-        return totalBytesRead;
+        return read;
     }
 }
 
+/**
+ * Main data ring buffer. The bytes are kept packed, bit reads of up to 25 bits
+ * are done with one big-endian 32 bit load plus shifts. The first 3 bytes of
+ * the ring are mirrored behind its end so that such a load never has to wrap.
+ */
 class BitReservoir {
 
-    private static final int BUFFER_SIZE = 4096 * 8;
+    private static final int BUFFER_SIZE = 4096;
     private static final int BUFFER_SIZE_MASK = BUFFER_SIZE - 1;
-    private int offset, bitCount, bufferIndex;
-    private final int[] buffer = new int[BUFFER_SIZE];
+    private static final int BIT_INDEX_MASK = (BUFFER_SIZE << 3) - 1;
+    private static final int MIRROR = 3;
+    private int offset, bitCount, bitIndex;
+    private final byte[] buffer = new byte[BUFFER_SIZE + MIRROR];
 
     int getBitCount() {
         return bitCount;
     }
 
+    void reset() {
+        offset = bitCount = bitIndex = 0;
+        Arrays.fill(buffer, (byte) 0);
+    }
+
+    /**
+     * The next 32 bits starting at the byte that contains the bit index.
+     */
+    private int word(int index) {
+        byte[] b = buffer;
+        int p = index >>> 3;
+        return (b[p] << 24) | ((b[p + 1] & 0xff) << 16) | ((b[p + 2] & 0xff) << 8) | (b[p + 3] & 0xff);
+    }
+
+    /**
+     * Read bits into the lower bits of an unsigned int (0 <= n <= 25).
+     */
     int getBits(int n) {
+        int index = bitIndex;
         bitCount += n;
-        int val = 0;
-        int pos = bufferIndex;
-        if (pos + n < BUFFER_SIZE) {
-            while (n-- > 0) {
-                val <<= 1;
-                val |= ((buffer[pos++] != 0) ? 1 : 0);
-            }
-        } else {
-            while (n-- > 0) {
-                val <<= 1;
-                val |= ((buffer[pos] != 0) ? 1 : 0);
-                pos = (pos + 1) & BUFFER_SIZE_MASK;
-            }
-        }
-        bufferIndex = pos;
-        return val;
+        bitIndex = (index + n) & BIT_INDEX_MASK;
+        return (int) (((word(index) << (index & 7)) & 0xFFFFFFFFL) >>> (32 - n));
+    }
+
+    /**
+     * Returns the next n bits without consuming them (0 <= n <= 25).
+     */
+    int peekBits(int n) {
+        int index = bitIndex;
+        return (int) (((word(index) << (index & 7)) & 0xFFFFFFFFL) >>> (32 - n));
+    }
+
+    void skipBits(int n) {
+        bitCount += n;
+        bitIndex = (bitIndex + n) & BIT_INDEX_MASK;
     }
 
     int getOneBit() {
+        int index = bitIndex;
         bitCount++;
-        int val = buffer[bufferIndex];
-        bufferIndex = (bufferIndex + 1) & BUFFER_SIZE_MASK;
-        return val;
+        bitIndex = (index + 1) & BIT_INDEX_MASK;
+        return (buffer[index >>> 3] >>> (7 - (index & 7))) & 1;
     }
 
-    void putByte(int val) {
+    /**
+     * Appends len bytes of main data.
+     */
+    void putBytes(byte[] b, int off, int len) {
         int ofs = offset;
-        buffer[ofs++] = val & 0x80;
-        buffer[ofs++] = val & 0x40;
-        buffer[ofs++] = val & 0x20;
-        buffer[ofs++] = val & 0x10;
-        buffer[ofs++] = val & 0x08;
-        buffer[ofs++] = val & 0x04;
-        buffer[ofs++] = val & 0x02;
-        buffer[ofs++] = val & 0x01;
-        if (ofs == BUFFER_SIZE) {
-            offset = 0;
-        } else {
-            offset = ofs;
+        while (len > 0) {
+            int n = Math.min(len, BUFFER_SIZE - ofs);
+            System.arraycopy(b, off, buffer, ofs, n);
+            if (ofs < MIRROR) {
+                System.arraycopy(buffer, ofs, buffer, BUFFER_SIZE + ofs, Math.min(n, MIRROR - ofs));
+            }
+            off += n;
+            len -= n;
+            ofs = (ofs + n) & BUFFER_SIZE_MASK;
         }
+        offset = ofs;
     }
 
     void rewindBits(int n) {
         bitCount -= n;
-        bufferIndex -= n;
-        if (bufferIndex < 0) {
-            bufferIndex += BUFFER_SIZE;
-        }
+        bitIndex = (bitIndex - n) & BIT_INDEX_MASK;
     }
 
     void rewindBytes(int n) {
-        int bits = (n << 3);
-        bitCount -= bits;
-        bufferIndex -= bits;
-        if (bufferIndex < 0) {
-            bufferIndex += BUFFER_SIZE;
-        }
+        rewindBits(n << 3);
     }
 
 }
@@ -938,7 +2244,7 @@ class Constants {
             POW2[i] = Math.pow(2.0, (0.25 * (i - 210.0)));
         }
     }
-    private static final double[] D = { 0.0f, -4.42505E-4f, 0.003250122f, -0.007003784f, 0.031082153f, -0.07862854f,
+    static final double[] D = { 0.0f, -4.42505E-4f, 0.003250122f, -0.007003784f, 0.031082153f, -0.07862854f,
             0.10031128f, -0.57203674f, 1.144989f, 0.57203674f, 0.10031128f, 0.07862854f, 0.031082153f, 0.007003784f,
             0.003250122f, 4.42505E-4f, -1.5259E-5f, -4.73022E-4f, 0.003326416f, -0.007919312f, 0.030517578f,
             -0.08418274f, 0.090927124f, -0.6002197f, 1.1442871f, 0.54382324f, 0.1088562f, 0.07305908f, 0.03147888f,
@@ -1024,7 +2330,10 @@ class Constants {
             3.2927225399E-10f };
     static final double[] TAN12 = { 0.0f, 0.26794919f, 0.57735027f, 1.0f, 1.73205081f, 3.73205081f, 9.9999999e10f,
             -3.73205081f, -1.73205081f, -1.0f, -0.57735027f, -0.26794919f, 0.0f, 0.26794919f, 0.57735027f, 1.0f };
-    static final int T43_SIZE = 8192;
+    /**
+     * |x|^(4/3) for every quantized magnitude: 15 plus up to 13 linbits.
+     */
+    static final int T43_SIZE = 15 + (1 << 13);
     static final double[] T43 = new double[T43_SIZE];
     static {
         // DOUBLE
@@ -1090,6 +2399,20 @@ class Constants {
                     9.7656250004E-04f, 6.9053396603E-04f, 4.8828125002E-04f, 3.4526698302E-04f, 2.4414062501E-04f,
                     1.7263349151E-04f, 1.2207031251E-04f, 8.6316745755E-05f, 6.1035156254E-05f, 4.3158372878E-05f,
                     3.0517578127E-05f, 2.1579186439E-05f } };
+    /**
+     * Intensity stereo factors of the left and right channel for LSF, per
+     * ioType and intensity position (from IO).
+     */
+    static final double[][] IO_LEFT = new double[2][2 * IO[0].length - 1];
+    static final double[][] IO_RIGHT = new double[2][2 * IO[0].length - 1];
+    static {
+        for (int type = 0; type < 2; type++) {
+            for (int pos = 0; pos < IO_LEFT[type].length; pos++) {
+                IO_LEFT[type][pos] = ((pos & 1) != 0) ? IO[type][(pos + 1) >>> 1] : 1.0;
+                IO_RIGHT[type][pos] = (pos != 0 && (pos & 1) == 0) ? IO[type][pos >>> 1] : 1.0;
+            }
+        }
+    }
     static final int[] PRETAB = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 3, 2, 0 };
     static final int[][] SLEN = { { 0, 0, 0, 0, 3, 1, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4 },
             { 0, 1, 2, 3, 0, 1, 2, 3, 1, 2, 3, 1, 2, 3, 2, 3 } };
@@ -1413,7 +2736,17 @@ class Constants {
                     224000, 256000, 320000, 0 },
             { 0 /* free format */, 8000, 16000, 24000, 32000, 40000, 48000, 56000, 64000, 80000, 96000, 112000,
                     128000, 144000, 160000, 0 } };
+    /**
+     * The source line of each line of a granule of short blocks, per
+     * sampling frequency (sfreq): the samples of the three windows of each
+     * band are interleaved.
+     */
     static final int[][] REORDER_TABLE;
+    /**
+     * The same for mixed blocks, whose long subbands 0 and 1 keep their
+     * lines, and so do the lines up to the first short band above them.
+     */
+    static final int[][] MIXED_REORDER_TABLE;
 
     public static class SBI {
         public int[] l;
@@ -1455,8 +2788,14 @@ class Constants {
         SF_BAND_INDEX[7] = new SBI(l7, s7);
         SF_BAND_INDEX[8] = new SBI(l8, s8);
         REORDER_TABLE = new int[9][];
+        MIXED_REORDER_TABLE = new int[9][];
         for (int i = 0; i < 9; i++) {
             REORDER_TABLE[i] = reorder(SF_BAND_INDEX[i].s);
+            MIXED_REORDER_TABLE[i] = REORDER_TABLE[i].clone();
+            int mixedStart = 3 * SF_BAND_INDEX[i].s[3];
+            for (int j = 0; j < mixedStart; j++) {
+                MIXED_REORDER_TABLE[i][j] = j;
+            }
         }
     }
 
@@ -1476,62 +2815,22 @@ class Constants {
     }
 
     /**
-     * d[] split into subarrays of length 16. This provides for more faster
-     * access by allowing a block of 16 to be addressed with constant offset.
-     */
-    static final double[][] D16;
-    static {
-        D16 = splitArray(D, 16);
-    }
-
-    /**
-     * Converts a 1D array into a number of smaller arrays. This is used to
-     * achieve offset + constant indexing into an array. Each sub-array
-     * represents a block of values of the original array.
-     * 
-     * @param array
-     *            The array to split up into blocks.
-     * @param blockSize
-     *            The size of the blocks to split the array into. This must be
-     *            an exact divisor of the length of the array, or some data will
-     *            be lost from the main array.
-     * 
-     * @return An array of arrays in which each element in the returned array
-     *         will be of length <code>blockSize</code>.
+     * Returns a single precision copy of a table.
      */
-    private static double[][] splitArray(final double[] array, final int blockSize) {
-        int size = array.length / blockSize;
-        double[][] split = new double[size][];
-        for (int i = 0; i < size; i++) {
-            split[i] = subArray(array, i * blockSize, blockSize);
+    static float[] toFloat(final double[] array) {
+        float[] result = new float[array.length];
+        for (int i = 0; i < array.length; i++) {
+            result[i] = (float) array[i];
         }
-        return split;
+        return result;
     }
 
-    /**
-     * Returns a subarray of an existing array.
-     * 
-     * @param array
-     *            The array to retrieve a subarra from.
-     * @param offs
-     *            The offset in the array that corresponds to the first index of
-     *            the subarray.
-     * @param len
-     *            The number of indeces in the subarray.
-     * @return The subarray, which may be of length 0.
-     */
-    private static double[] subArray(final double[] array, final int offs, int len) {
-        if (offs + len > array.length) {
-            len = array.length - offs;
-        }
-        if (len < 0) {
-            len = 0;
+    static float[][] toFloat(final double[][] array) {
+        float[][] result = new float[array.length][];
+        for (int i = 0; i < array.length; i++) {
+            result[i] = toFloat(array[i]);
         }
-        double[] subarray = new double[len];
-        for (int i = 0; i < len; i++) {
-            subarray[i] = array[offs + i];
-        }
-        return subarray;
+        return result;
     }
 }
 
@@ -1543,8 +2842,12 @@ class Constants {
  * 511 byte.
  * http://www.hydrogenaudio.org/forums/lofiversion/index.php/t42194.html gr:
  * granules (sub-frames)
+ * <p>
+ * This class reads the side info, scalefactors and huffman coded samples,
+ * which does not depend on the arithmetic used. Dequantization, stereo
+ * processing, IMDCT and polyphase synthesis are done by the subclasses.
  */
-final class Layer3Decoder {
+abstract class Layer3Decoder {
     static class GrInfo {
         int part23Length;
         int bigValues;
@@ -1577,63 +2880,72 @@ final class Layer3Decoder {
         int[][] s = new int[3][13]; /* [window][cb] */
     }
 
-    private static final int SSLIMIT = 18;
-    private static final int SBLIMIT = 32;
-    // DOUBLE
-    private static final double D43 = (4.0 / 3.0);
+    static final int SSLIMIT = 18;
+    static final int SBLIMIT = 32;
     private final int[] scaleFactorBuffer = new int[54];
     // TODO why +4?
-    private final int[] is1d = new int[SBLIMIT * SSLIMIT + 4];
-    private final double[][] ro0 = new double[SBLIMIT][SSLIMIT];
-    private final double[][] ro1 = new double[SBLIMIT][SSLIMIT];
-    private final double[][] lr0 = new double[SBLIMIT][SSLIMIT];
-    private final double[][] lr1 = new double[SBLIMIT][SSLIMIT];
-    private final double[] out1d = new double[SBLIMIT * SSLIMIT];
-    private final double[][] prevBlock = new double[2][SBLIMIT * SSLIMIT];
-    private final double[] k0 = new double[SBLIMIT * SSLIMIT];
-    private final double[] k1 = new double[SBLIMIT * SSLIMIT];
-    private final int[] nonzero = new int[2];
+    final int[] is1d = new int[SBLIMIT * SSLIMIT + 4];
+    final int[] scaleIndex = new int[SBLIMIT * SSLIMIT];
+    final int[] nonzero = new int[2];
+    // number of subbands of the overlap that may be nonzero, per channel
+    private final int[] prevLimit = new int[2];
     private final Bitstream stream;
-    private final Header header;
-    private final SynthesisFilter filter1, filter2;
-    private final Decoder player;
+    final Header header;
+    final Decoder player;
     private final BitReservoir br = new BitReservoir();
-    private final SideInfo si = new SideInfo();
-    private final ScaleFactor[] scaleFactors = new ScaleFactor[] { new ScaleFactor(), new ScaleFactor() };
+    final SideInfo si = new SideInfo();
+    final ScaleFactor[] scaleFactors = new ScaleFactor[] { new ScaleFactor(), new ScaleFactor() };
     private int maxGr;
     private int frameStart;
     private int part2Start;
-    private int channels;
+    final int channels;
     private int firstChannel;
     private int lastChannel;
-    private int sfreq;
-    private final int[] isPos = new int[576];
-    private final double[] isRatio = new double[576];
-    private final double[] tsOutCopy = new double[18];
-    private final double[] rawout = new double[36];
-    // subband samples are buffered and passed to the
-    // SynthesisFilter in one go.
-    private double[] samples1 = new double[32];
-    private double[] samples2 = new double[32];
+    int sfreq;
+    boolean lsf;
+    final int[] isPos = new int[576];
+    boolean msStereo, iStereo;
+    int ioType;
     private final int[] newSlen = new int[4];
     int x, y, v, w;
 
-    public Layer3Decoder(Bitstream stream, Header header, SynthesisFilter filter1, SynthesisFilter filter2,
-            Decoder player) {
+    Layer3Decoder(Bitstream stream, Header header, Decoder player) {
         this.stream = stream;
         this.header = header;
-        this.filter1 = filter1;
-        this.filter2 = filter2;
         this.player = player;
         channels = (header.mode() == Header.MODE_SINGLE_CHANNEL) ? 1 : 2;
-        maxGr = (header.version() == Header.VERSION_MPEG1) ? 2 : 1;
-        sfreq = header.sampleFrequency()
-                + ((header.version() == Header.VERSION_MPEG1) ? 3 : (header.version() == Header.VERSION_MPEG25_LSF) ? 6
-                        : 0);
         if (channels == 2) {
             firstChannel = 0;
             lastChannel = 1;
         }
+        initStream();
+    }
+
+    /**
+     * Prepares the decoder for a new stream in the same bitstream, with the
+     * same number of channels: clears the bit reservoir and the samples that
+     * overlap into the next frame. The header must already hold the first
+     * frame of the new stream.
+     */
+    void reset() {
+        br.reset();
+        frameStart = 0;
+        prevLimit[0] = prevLimit[1] = 0;
+        for (ScaleFactor scaleFactor : scaleFactors) {
+            Arrays.fill(scaleFactor.l, 0);
+            for (int[] s : scaleFactor.s) {
+                Arrays.fill(s, 0);
+            }
+        }
+        initStream();
+    }
+
+    private void initStream() {
+        maxGr = (header.version() == Header.VERSION_MPEG1) ? 2 : 1;
+        sfreq = header.sampleFrequency()
+                + ((header.version() == Header.VERSION_MPEG1) ? 3 : (header.version() == Header.VERSION_MPEG25_LSF) ? 6
+                        : 0);
+        lsf = ((header.version() == Header.VERSION_MPEG2_LSF || header.version() == Header.VERSION_MPEG25_LSF));
         nonzero[0] = nonzero[1] = 576;
     }
 
@@ -1642,11 +2954,11 @@ final class Layer3Decoder {
         getSideInfo();
         int flushMain = br.getBitCount() & 7;
         if (flushMain != 0) {
-            br.getBits(8 - flushMain);
+            br.skipBits(8 - flushMain);
         }
         int mainDataEnd = br.getBitCount() >>> 3; // of previous frame
-        for (int i = 0; i < slots; i++) {
-            br.putByte(stream.getBits(8));
+        if (slots > 0) {
+            stream.getBytes(br, slots);
         }
         int bytesToDiscard = frameStart - mainDataEnd - si.mainDataBegin;
         frameStart += slots;
@@ -1657,8 +2969,8 @@ final class Layer3Decoder {
             frameStart -= 4096;
             br.rewindBytes(4096);
         }
-        for (; bytesToDiscard > 0; bytesToDiscard--) {
-            br.getBits(8);
+        if (bytesToDiscard > 0) {
+            br.skipBits(bytesToDiscard << 3);
         }
         for (int gr = 0; gr < maxGr; gr++) {
             for (int ch = 0; ch < channels; ch++) {
@@ -1669,41 +2981,107 @@ final class Layer3Decoder {
                     // MPEG-2 LSF, MPEG-2.5 LSF
                     getLsfScaleFactors(ch, gr);
                 }
+                clearUnusedScaleFactors(ch, gr);
                 huffmanDecode(ch, gr);
-                dequantizeSample(ch == 0 ? ro0 : ro1, ch, gr);
+                dequantizeSample(ch, gr);
             }
             stereo(gr);
             for (int ch = firstChannel; ch <= lastChannel; ch++) {
-                reorder(ch == 0 ? lr0 : lr1, ch, gr);
-                antialias(ch, gr);
-                hybrid(ch, gr);
-                for (int sb18 = 18; sb18 < 576; sb18 += 36) {
-                    // Frequency inversion
-                    for (int ss = 1; ss < SSLIMIT; ss += 2) {
-                        out1d[sb18 + ss] = -out1d[sb18 + ss];
-                    }
-                }
-                if (ch == 0) {
-                    for (int ss = 0; ss < SSLIMIT; ss++) {
-                        // Polyphase synthesis
-                        for (int sb18 = 0, sb = 0; sb18 < 576; sb18 += 18, sb++) {
-                            samples1[sb] = out1d[sb18 + ss];
-                        }
-                        filter1.calculatePcmSamples(samples1, player);
-                    }
-                } else {
-                    for (int ss = 0; ss < SSLIMIT; ss++) {
-                        // Polyphase synthesis
-                        for (int sb18 = 0, sb = 0; sb18 < 576; sb18 += 18, sb++) {
-                            samples2[sb] = out1d[sb18 + ss];
-                        }
-                        filter2.calculatePcmSamples(samples2, player);
-                    }
-                }
+                decodeChannel(ch, gr);
             }
         }
     }
 
+    /**
+     * Dequantizes the huffman decoded samples of one channel.
+     */
+    abstract void dequantizeSample(int ch, int gr);
+
+    /**
+     * Joint stereo processing, or passing through the single channel.
+     */
+    abstract void stereo(int gr);
+
+    /**
+     * Reorder, alias reduction, IMDCT and polyphase synthesis of one channel.
+     * The subbands above the last nonzero line stay zero, except for the next
+     * one which alias reduction mixes into. Their IMDCT is zero as well, so
+     * they just take over the overlap of the previous granule.
+     */
+    final void decodeChannel(int ch, int gr) {
+        GrInfo gi = si.ch[ch].gr[gr];
+        boolean shortBlocks = gi.windowSwitching && gi.blockType == 2;
+        if (!shortBlocks) {
+            reorder(ch, null);
+        } else if (gi.mixedBlock) {
+            reorder(ch, Constants.MIXED_REORDER_TABLE[sfreq]);
+        } else {
+            reorder(ch, Constants.REORDER_TABLE[sfreq]);
+        }
+        int lines = lines();
+        int sbLimit = (lines == 0) ? 0 : Math.min(SBLIMIT, (lines + SSLIMIT - 1) / SSLIMIT + 1);
+        // 31 alias-reduction operations between each pair of sub-bands, but
+        // only the long ones of a mixed block and none of short blocks
+        if (!shortBlocks || gi.mixedBlock) {
+            int sb18lim = shortBlocks ? 18 : 558;
+            // butterflies between two zero subbands have no effect
+            antialias(Math.min(sb18lim, (sbLimit - 1) * 18));
+        }
+        int sb18Limit = sbLimit * SSLIMIT;
+        for (int sb18 = 0; sb18 < sb18Limit; sb18 += 18) {
+            int bt = (gi.windowSwitching && gi.mixedBlock && (sb18 < 36)) ? 0 : gi.blockType;
+            invMdct(ch, sb18, bt);
+        }
+        takeOverlap(ch, sb18Limit, prevLimit[ch] * SSLIMIT);
+        int limit = Math.max(sbLimit, prevLimit[ch]);
+        prevLimit[ch] = sbLimit;
+        // Frequency inversion, then polyphase synthesis
+        invertFrequencies(limit * SSLIMIT);
+        synthesize(ch, limit == 0);
+    }
+
+    /**
+     * Copies the stereo processed lines of the channel to the working buffer,
+     * line i from line table[i] (unchanged if the table is null).
+     */
+    abstract void reorder(int ch, int[] table);
+
+    /**
+     * The number of lines of the working buffer up to the last nonzero one.
+     */
+    abstract int lines();
+
+    /**
+     * Alias reduction between the subbands of the working buffer below the
+     * given line (a multiple of 18, none if not positive).
+     */
+    abstract void antialias(int sb18Limit);
+
+    /**
+     * IMDCT, windowing and overlap addition of the subband at line sb18 of
+     * the working buffer, in place, keeping the overlap of the channel for
+     * the next granule.
+     */
+    abstract void invMdct(int ch, int sb18, int blockType);
+
+    /**
+     * Moves the overlap of the channel from line from to line to into the
+     * working buffer, leaving zeros.
+     */
+    abstract void takeOverlap(int ch, int from, int to);
+
+    /**
+     * Negates the odd samples of the odd subbands of the working buffer below
+     * the given line.
+     */
+    abstract void invertFrequencies(int sb18Limit);
+
+    /**
+     * Polyphase synthesis of the working buffer, of subband samples ss, ss +
+     * 18, ..., or of silence.
+     */
+    abstract void synthesize(int ch, boolean silent);
+
     /**
      * Reads the side info from the stream, assuming the entire frame has been
      * read already. Mono : 136 bits (= 17 bytes) Stereo : 256 bits (= 32 bytes)
@@ -1910,6 +3288,31 @@ final class Layer3Decoder {
         }
     }
 
+    /**
+     * Zeroes the scalefactors that the granule does not have, like those of
+     * long blocks in a granule of short blocks. Bad streams read them anyway
+     * (intensity stereo with other block types in the two channels, scfsi
+     * after a granule of short blocks), and must not find those of an older
+     * frame: the output would depend on where decoding started, like after
+     * a seek.
+     */
+    private void clearUnusedScaleFactors(int ch, int gr) {
+        GrInfo gi = si.ch[ch].gr[gr];
+        ScaleFactor sf = scaleFactors[ch];
+        if (gi.windowSwitching && gi.blockType == 2) {
+            Arrays.fill(sf.l, gi.mixedBlock ? 8 : 0, sf.l.length, 0);
+            if (gi.mixedBlock) {
+                for (int window = 0; window < 3; window++) {
+                    Arrays.fill(sf.s[window], 0, 3, 0);
+                }
+            }
+        } else {
+            for (int window = 0; window < 3; window++) {
+                Arrays.fill(sf.s[window], 0);
+            }
+        }
+    }
+
     private void getLsfScaleData(int ch, int gr) {
         int scaleFactorComp, intScalefacComp;
         int modeExt = header.modeExtension();
@@ -2085,7 +3488,7 @@ final class Layer3Decoder {
         numBits = br.getBitCount();
         // Dismiss stuffing bits
         if (numBits < part23End) {
-            br.getBits(part23End - numBits);
+            br.skipBits(part23End - numBits);
         }
         // Zero out rest
         if (index < 576) {
@@ -2102,54 +3505,11 @@ final class Layer3Decoder {
         }
     }
 
-    private void iStereoKValues(int pos, int type, int i) {
-        if (pos == 0) {
-            k0[i] = 1.0f;
-            k1[i] = 1.0f;
-        } else if ((pos & 1) != 0) {
-            k0[i] = Constants.IO[type][(pos + 1) >>> 1];
-            k1[i] = 1.0f;
-        } else {
-            k0[i] = 1.0f;
-            k1[i] = Constants.IO[type][pos >>> 1];
-        }
-    }
-
-    private double getT43(int abv, double globalGain) {
-        switch (abv) {
-        case 0:
-            return 0.0f;
-        case 1:
-            return globalGain;
-        case -1:
-            return -globalGain;
-        case 2:
-        case 3:
-        case 4:
-        case 5:
-        case 6:
-            return globalGain * Constants.T43[abv];
-        case -2:
-        case -3:
-        case -4:
-        case -5:
-        case -6:
-            return -globalGain * Constants.T43[-abv];
-        default:
-            if (abv > 0) {
-                if (abv < Constants.T43_SIZE) {
-                    return globalGain * Constants.T43[abv];
-                }
-                return globalGain * Math.pow(abv, D43);
-            }
-            if (-abv < Constants.T43_SIZE) {
-                return -globalGain * Constants.T43[-abv];
-            }
-            return -globalGain * Math.pow(-abv, D43);
-        }
-    }
-
-    private void dequantizeSample(double[][] xr, int ch, int gr) {
+    /**
+     * Computes the scalefactor index (into TWO_TO_NEGATIVE_HALF_POW) of every
+     * nonzero sample of the granule, per block type.
+     */
+    final void scaleIndices(int ch, int gr) {
         GrInfo gi = si.ch[ch].gr[gr];
         int nextCb; // next critical band boundary
         Constants.SBI sbif = Constants.SF_BAND_INDEX[sfreq];
@@ -2157,16 +3517,6 @@ final class Layer3Decoder {
         int[] l = sbif.l;
         int cbWidth = 0;
         int len = nonzero[ch];
-        // Compute overall (global) scaling
-        double globalGain = Constants.POW2[gi.globalGain];
-        for (int i = 0, sb = 0; sb < SBLIMIT; sb++) {
-            for (int ss = 0; ss < SSLIMIT; ss++, i++) {
-                if (i >= len) {
-                    break;
-                }
-                xr[sb][ss] = getT43(is1d[i], globalGain);
-            }
-        }
         // choose correct scalefactor band per block type, initalize boundary
         if (gi.windowSwitching && (gi.blockType == 2)) {
             if (gi.mixedBlock) {
@@ -2216,8 +3566,6 @@ final class Layer3Decoder {
                     nextCb = l[(++cb) + 1];
                 }
             }
-            int sb = j / SSLIMIT;
-            int ss = j - sb * SSLIMIT; // % SSLIMIT
             // Do long/short dependent scaling operations
             int idx;
             if (gi.windowSwitching && gi.blockType == 2 && (!gi.mixedBlock || j >= 36)) {
@@ -2232,95 +3580,27 @@ final class Layer3Decoder {
                 }
                 idx = idx << gi.scaleFactorScale;
             }
-            xr[sb][ss] *= Constants.TWO_TO_NEGATIVE_HALF_POW[idx];
+            scaleIndex[j] = idx;
             index++;
         }
-        for (int j = len; j < 576; j++) {
-            int sb = j / SSLIMIT;
-            int ss = j - sb * SSLIMIT; // % SSLIMIT
-            xr[sb][ss] = 0.0f;
-        }
-        return;
-    }
-
-    private void reorder(double[][] xr, int ch, int gr) {
-        GrInfo gi = si.ch[ch].gr[gr];
-        if (gi.windowSwitching && gi.blockType == 2) {
-            for (int index = 0; index < 576; index++) {
-                out1d[index] = 0.0f;
-            }
-            if (gi.mixedBlock) {
-                // NO REORDER FOR LOW 2 SUBBANDS
-                for (int index = 0; index < 36; index++) {
-                    int sb = index / SSLIMIT;
-                    int ss = index - sb * SSLIMIT; // % SSLIMIT
-                    out1d[index] = xr[sb][ss];
-                }
-                // REORDERING FOR REST SWITCHED SHORT
-                for (int sfb = 3; sfb < 13; sfb++) {
-                    int sfbStart = Constants.SF_BAND_INDEX[sfreq].s[sfb];
-                    int sfbLines = Constants.SF_BAND_INDEX[sfreq].s[sfb + 1] - sfbStart;
-                    int sfbStart3 = (sfbStart << 2) - sfbStart;
-                    for (int freq = 0, freq3 = 0; freq < sfbLines; freq++, freq3 += 3) {
-                        int srcLine = sfbStart3 + freq;
-                        int desLine = sfbStart3 + freq3;
-                        int sb = srcLine / SSLIMIT;
-                        int ss = srcLine - sb * SSLIMIT; // % SSLIMIT
-                        out1d[desLine] = xr[sb][ss];
-                        srcLine += sfbLines;
-                        desLine++;
-                        sb = srcLine / SSLIMIT;
-                        ss = srcLine - sb * SSLIMIT; // % SSLIMIT
-                        out1d[desLine] = xr[sb][ss];
-                        srcLine += sfbLines;
-                        desLine++;
-                        sb = srcLine / SSLIMIT;
-                        ss = srcLine - sb * SSLIMIT; // % SSLIMIT
-                        out1d[desLine] = xr[sb][ss];
-                    }
-                }
-            } else {
-                // pure short
-                int[] reorder = Constants.REORDER_TABLE[sfreq];
-                for (int index = 0; index < 576; index++) {
-                    int j = reorder[index];
-                    int sb = j / SSLIMIT;
-                    int ss = j - sb * SSLIMIT; // % SSLIMIT
-                    out1d[index] = xr[sb][ss];
-                }
-            }
-        } else {
-            // long blocks
-            for (int i = 0, sb = 0; sb < SBLIMIT; sb++) {
-                for (int ss = 0; ss < SSLIMIT; ss++, i++) {
-                    out1d[i] = xr[sb][ss];
-                }
-            }
-        }
     }
 
-    private void stereo(int gr) {
-        if (channels == 1) { // mono , bypass xr[0][][] to lr[0][][]
-            for (int sb = 0; sb < SBLIMIT; sb++) {
-                for (int ss = 0; ss < SSLIMIT; ss += 3) {
-                    lr0[sb][ss] = ro0[sb][ss];
-                    lr0[sb][ss + 1] = ro0[sb][ss + 1];
-                    lr0[sb][ss + 2] = ro0[sb][ss + 2];
-                }
-            }
-            return;
-        }
+    /**
+     * Determines the stereo processing of the granule. For intensity stereo,
+     * isPos holds the intensity position of each line of the right channel,
+     * or 7 if the line is not intensity coded. The right channel is the last
+     * one decoded, so its quantized values are still in is1d.
+     */
+    final void stereoPositions(int gr) {
         GrInfo gi = si.ch[0].gr[gr];
         int modeExt = header.modeExtension();
         int sfb;
         int temp, temp2;
-        boolean msStereo = ((header.mode() == Header.MODE_JOINT_STEREO) && ((modeExt & 0x2) != 0));
-        boolean iStereo = ((header.mode() == Header.MODE_JOINT_STEREO) && ((modeExt & 0x1) != 0));
-        boolean lsf = ((header.version() == Header.VERSION_MPEG2_LSF || header.version() == Header.VERSION_MPEG25_LSF));
-        int ioType = (gi.scaleFactorCompress & 1);
+        msStereo = ((header.mode() == Header.MODE_JOINT_STEREO) && ((modeExt & 0x2) != 0));
+        iStereo = ((header.mode() == Header.MODE_JOINT_STEREO) && ((modeExt & 0x1) != 0));
+        ioType = (gi.scaleFactorCompress & 1);
         for (int i = 0; i < 576; i++) {
             isPos[i] = 7;
-            isRatio[i] = 0.0f;
         }
         if (iStereo) {
             Constants.SBI sbif = Constants.SF_BAND_INDEX[sfreq];
@@ -2336,7 +3616,7 @@ final class Layer3Decoder {
                             int lines = s[sfb + 1] - i;
                             i = (i << 2) - i + (j + 1) * lines - 1;
                             while (lines > 0) {
-                                if (ro1[i / 18][i % 18] != 0.0f) {
+                                if (is1d[i] != 0) {
                                     sfbcnt = sfb;
                                     sfb = -10;
                                     lines = -10;
@@ -2355,13 +3635,6 @@ final class Layer3Decoder {
                             int i = (temp << 2) - temp + j * sb;
                             for (; sb > 0; sb--) {
                                 isPos[i] = scaleFactors[1].s[j][sfb];
-                                if (isPos[i] != 7) {
-                                    if (lsf) {
-                                        iStereoKValues(isPos[i], ioType, i);
-                                    } else {
-                                        isRatio[i] = Constants.TAN12[isPos[i]];
-                                    }
-                                }
                                 i++;
                             }
                             sfb++;
@@ -2374,12 +3647,6 @@ final class Layer3Decoder {
                         int i = (temp << 2) - temp + j * sb;
                         for (; sb > 0; sb--) {
                             isPos[i] = isPos[sfb];
-                            if (lsf) {
-                                k0[i] = k0[sfb];
-                                k1[i] = k1[sfb];
-                            } else {
-                                isRatio[i] = isRatio[sfb];
-                            }
                             i++;
                         }
                     }
@@ -2388,7 +3655,7 @@ final class Layer3Decoder {
                         int ss = 17;
                         int sb = -1;
                         while (i >= 0) {
-                            if (ro1[i][ss] != 0.0f) {
+                            if (is1d[i * SSLIMIT + ss] != 0) {
                                 sb = (i << 4) + (i << 1) + ss;
                                 i = -1;
                             } else {
@@ -2409,13 +3676,6 @@ final class Layer3Decoder {
                             sb = l[sfb + 1] - l[sfb];
                             for (; sb > 0; sb--) {
                                 isPos[i] = scaleFactors[1].l[sfb];
-                                if (isPos[i] != 7) {
-                                    if (lsf) {
-                                        iStereoKValues(isPos[i], ioType, i);
-                                    } else {
-                                        isRatio[i] = Constants.TAN12[isPos[i]];
-                                    }
-                                }
                                 i++;
                             }
                         }
@@ -2429,7 +3689,7 @@ final class Layer3Decoder {
                             int lines = s[sfb + 1] - temp;
                             int i = (temp << 2) - temp + (j + 1) * lines - 1;
                             while (lines > 0) {
-                                if (ro1[i / 18][i % 18] != 0.0f) {
+                                if (is1d[i] != 0) {
                                     sfbcnt = sfb;
                                     sfb = -10;
                                     lines = -10;
@@ -2445,13 +3705,6 @@ final class Layer3Decoder {
                             int i = (temp << 2) - temp + j * sb;
                             for (; sb > 0; sb--) {
                                 isPos[i] = scaleFactors[1].s[j][sfb];
-                                if (isPos[i] != 7) {
-                                    if (lsf) {
-                                        iStereoKValues(isPos[i], ioType, i);
-                                    } else {
-                                        isRatio[i] = Constants.TAN12[isPos[i]];
-                                    }
-                                }
                                 i++;
                             } // for (; sb>0 ...
                             sfb++;
@@ -2464,12 +3717,6 @@ final class Layer3Decoder {
                         int i = (temp2 << 2) - temp2 + j * sb;
                         for (; sb > 0; sb--) {
                             isPos[i] = isPos[sfb];
-                            if (lsf) {
-                                k0[i] = k0[sfb];
-                                k1[i] = k1[sfb];
-                            } else {
-                                isRatio[i] = isRatio[sfb];
-                            }
                             i++;
                         }
                     }
@@ -2479,7 +3726,7 @@ final class Layer3Decoder {
                 int ss = 17;
                 int sb = 0;
                 while (i >= 0) {
-                    if (ro1[i][ss] != 0.0f) {
+                    if (is1d[i * SSLIMIT + ss] != 0) {
                         sb = (i << 4) + (i << 1) + ss;
                         i = -1;
                     } else {
@@ -2500,68 +3747,124 @@ final class Layer3Decoder {
                     sb = l[sfb + 1] - l[sfb];
                     for (; sb > 0; sb--) {
                         isPos[i] = scaleFactors[1].l[sfb];
-                        if (isPos[i] != 7) {
-                            if (lsf) {
-                                iStereoKValues(isPos[i], ioType, i);
-                            } else {
-                                isRatio[i] = Constants.TAN12[isPos[i]];
-                            }
-                        }
                         i++;
                     }
                 }
                 sfb = l[20];
                 for (sb = 576 - l[21]; (sb > 0) && (i < 576); sb--) {
                     isPos[i] = isPos[sfb]; // error here : i >=576
-                    if (lsf) {
-                        k0[i] = k0[sfb];
-                        k1[i] = k1[sfb];
-                    } else {
-                        isRatio[i] = isRatio[sfb];
-                    }
                     i++;
                 }
             }
         }
-        for (int sb = 0, i = 0; sb < SBLIMIT; sb++) {
-            for (int ss = 0; ss < SSLIMIT; ss++) {
-                if (isPos[i] == 7) {
-                    if (msStereo) {
-                        lr0[sb][ss] = (ro0[sb][ss] + ro1[sb][ss]) * 0.707106781f;
-                        lr1[sb][ss] = (ro0[sb][ss] - ro1[sb][ss]) * 0.707106781f;
-                    } else {
-                        lr0[sb][ss] = ro0[sb][ss];
-                        lr1[sb][ss] = ro1[sb][ss];
-                    }
-                } else if (iStereo) {
-                    if (lsf) {
-                        lr0[sb][ss] = ro0[sb][ss] * k0[i];
-                        lr1[sb][ss] = ro0[sb][ss] * k1[i];
-                    } else {
-                        lr1[sb][ss] = ro0[sb][ss] / (1 + isRatio[i]);
-                        lr0[sb][ss] = lr1[sb][ss] * isRatio[i];
-                    }
-                }
-                i++;
-            }
+    }
+}
+
+/**
+ * Layer 3 decoder working in double precision.
+ */
+final class DoubleLayer3Decoder extends Layer3Decoder {
+    // DOUBLE
+    private final double[] ro0 = new double[SBLIMIT * SSLIMIT];
+    private final double[] ro1 = new double[SBLIMIT * SSLIMIT];
+    private final double[] lr0 = new double[SBLIMIT * SSLIMIT];
+    private final double[] lr1 = new double[SBLIMIT * SSLIMIT];
+    private final double[] out1d = new double[SBLIMIT * SSLIMIT];
+    private final double[][] prevBlock = new double[2][SBLIMIT * SSLIMIT];
+    private final SynthesisFilter filter1, filter2;
+    private final double[] rawout = new double[36];
+
+    DoubleLayer3Decoder(Bitstream stream, Header header, SynthesisFilter filter1, SynthesisFilter filter2,
+            Decoder player) {
+        super(stream, header, player);
+        this.filter1 = filter1;
+        this.filter2 = filter2;
+    }
+
+    void reset() {
+        super.reset();
+        Arrays.fill(prevBlock[0], 0);
+        Arrays.fill(prevBlock[1], 0);
+        filter1.reset();
+        if (filter2 != null) {
+            filter2.reset();
         }
     }
 
-    private void antialias(int ch, int gr) {
-        int sb18, ss, sb18lim;
+    void dequantizeSample(int ch, int gr) {
+        double[] xr = (ch == 0) ? ro0 : ro1;
         GrInfo gi = si.ch[ch].gr[gr];
-        // 31 alias-reduction operations between each pair of sub-bands
-        // with 8 butterflies between each pair
-        if (gi.windowSwitching && (gi.blockType == 2) && !gi.mixedBlock) {
+        int len = nonzero[ch];
+        scaleIndices(ch, gr);
+        // Compute overall (global) scaling, combined with the scalefactor
+        // gain once per band
+        double globalGain = Constants.POW2[gi.globalGain];
+        double gain = globalGain;
+        int gainIndex = 0;
+        for (int j = 0; j < len; j++) {
+            int idx = scaleIndex[j];
+            if (idx != gainIndex) {
+                gainIndex = idx;
+                gain = globalGain * Constants.TWO_TO_NEGATIVE_HALF_POW[idx];
+            }
+            int abv = is1d[j];
+            xr[j] = (abv < 0) ? -Constants.T43[-abv] * gain : Constants.T43[abv] * gain;
+        }
+        for (int j = len; j < 576; j++) {
+            xr[j] = 0.0f;
+        }
+    }
+
+    void stereo(int gr) {
+        if (channels == 1) { // mono , bypass xr[0][][] to lr[0][][]
+            System.arraycopy(ro0, 0, lr0, 0, 576);
             return;
         }
-        if (gi.windowSwitching && gi.mixedBlock && (gi.blockType == 2)) {
-            sb18lim = 18;
+        stereoPositions(gr);
+        for (int i = 0; i < 576; i++) {
+            if (isPos[i] == 7) {
+                if (msStereo) {
+                    lr0[i] = (ro0[i] + ro1[i]) * 0.707106781f;
+                    lr1[i] = (ro0[i] - ro1[i]) * 0.707106781f;
+                } else {
+                    lr0[i] = ro0[i];
+                    lr1[i] = ro1[i];
+                }
+            } else if (iStereo) {
+                if (lsf) {
+                    lr0[i] = ro0[i] * Constants.IO_LEFT[ioType][isPos[i]];
+                    lr1[i] = ro0[i] * Constants.IO_RIGHT[ioType][isPos[i]];
+                } else {
+                    double isRatio = Constants.TAN12[isPos[i]];
+                    lr1[i] = ro0[i] / (1 + isRatio);
+                    lr0[i] = lr1[i] * isRatio;
+                }
+            }
+        }
+    }
+
+    void reorder(int ch, int[] table) {
+        double[] xr = (ch == 0) ? lr0 : lr1;
+        if (table == null) {
+            System.arraycopy(xr, 0, out1d, 0, 576);
         } else {
-            sb18lim = 558;
+            for (int index = 0; index < 576; index++) {
+                out1d[index] = xr[table[index]];
+            }
+        }
+    }
+
+    int lines() {
+        int lines = 576;
+        while (lines > 0 && out1d[lines - 1] == 0) {
+            lines--;
         }
-        for (sb18 = 0; sb18 < sb18lim; sb18 += 18) {
-            for (ss = 0; ss < 8; ss++) {
+        return lines;
+    }
+
+    void antialias(int sb18Limit) {
+        for (int sb18 = 0; sb18 < sb18Limit; sb18 += 18) {
+            for (int ss = 0; ss < 8; ss++) {
                 int srcIdx1 = sb18 + 17 - ss;
                 int srcIdx2 = sb18 + 18 + ss;
                 double bu = out1d[srcIdx1];
@@ -2572,64 +3875,47 @@ final class Layer3Decoder {
         }
     }
 
-    private void hybrid(int ch, int gr) {
-        GrInfo gi = si.ch[ch].gr[gr];
-        for (int sb18 = 0; sb18 < 576; sb18 += 18) {
-            int bt = (gi.windowSwitching && gi.mixedBlock && (sb18 < 36)) ? 0 : gi.blockType;
-            double[] tsOut = out1d;
-            double[] r = rawout;
-            for (int cc = 0; cc < 18; cc++) {
-                tsOutCopy[cc] = tsOut[cc + sb18];
-            }
-            fastInvMdct(tsOutCopy, r, bt);
-            for (int cc = 0; cc < 18; cc++) {
-                tsOut[cc + sb18] = tsOutCopy[cc];
-            }
-            // overlap addition
-            double[] p = prevBlock[ch];
-            tsOut[0 + sb18] = r[0] + p[sb18 + 0];
-            p[sb18 + 0] = r[18];
-            tsOut[1 + sb18] = r[1] + p[sb18 + 1];
-            p[sb18 + 1] = r[19];
-            tsOut[2 + sb18] = r[2] + p[sb18 + 2];
-            p[sb18 + 2] = r[20];
-            tsOut[3 + sb18] = r[3] + p[sb18 + 3];
-            p[sb18 + 3] = r[21];
-            tsOut[4 + sb18] = r[4] + p[sb18 + 4];
-            p[sb18 + 4] = r[22];
-            tsOut[5 + sb18] = r[5] + p[sb18 + 5];
-            p[sb18 + 5] = r[23];
-            tsOut[6 + sb18] = r[6] + p[sb18 + 6];
-            p[sb18 + 6] = r[24];
-            tsOut[7 + sb18] = r[7] + p[sb18 + 7];
-            p[sb18 + 7] = r[25];
-            tsOut[8 + sb18] = r[8] + p[sb18 + 8];
-            p[sb18 + 8] = r[26];
-            tsOut[9 + sb18] = r[9] + p[sb18 + 9];
-            p[sb18 + 9] = r[27];
-            tsOut[10 + sb18] = r[10] + p[sb18 + 10];
-            p[sb18 + 10] = r[28];
-            tsOut[11 + sb18] = r[11] + p[sb18 + 11];
-            p[sb18 + 11] = r[29];
-            tsOut[12 + sb18] = r[12] + p[sb18 + 12];
-            p[sb18 + 12] = r[30];
-            tsOut[13 + sb18] = r[13] + p[sb18 + 13];
-            p[sb18 + 13] = r[31];
-            tsOut[14 + sb18] = r[14] + p[sb18 + 14];
-            p[sb18 + 14] = r[32];
-            tsOut[15 + sb18] = r[15] + p[sb18 + 15];
-            p[sb18 + 15] = r[33];
-            tsOut[16 + sb18] = r[16] + p[sb18 + 16];
-            p[sb18 + 16] = r[34];
-            tsOut[17 + sb18] = r[17] + p[sb18 + 17];
-            p[sb18 + 17] = r[35];
-        }
-    }
-
-    private void fastInvMdct(double[] in, double[] out, int blockType) {
+    void invMdct(int ch, int sb18, int blockType) {
+        fastInvMdct(out1d, sb18, prevBlock[ch], blockType);
+    }
+
+    void takeOverlap(int ch, int from, int to) {
+        double[] p = prevBlock[ch];
+        for (int i = from; i < to; i++) {
+            out1d[i] = p[i];
+            p[i] = 0;
+        }
+    }
+
+    void invertFrequencies(int sb18Limit) {
+        for (int sb18 = 18; sb18 < sb18Limit; sb18 += 36) {
+            for (int ss = 1; ss < SSLIMIT; ss += 2) {
+                out1d[sb18 + ss] = -out1d[sb18 + ss];
+            }
+        }
+    }
+
+    void synthesize(int ch, boolean silent) {
+        SynthesisFilter filter = (ch == 0) ? filter1 : filter2;
+        for (int ss = 0; ss < SSLIMIT; ss++) {
+            if (silent) {
+                filter.calculateSilentPcmSamples(player);
+            } else {
+                filter.calculatePcmSamples(out1d, ss, player);
+            }
+        }
+    }
+
+    /**
+     * IMDCT, windowing and overlap addition of one subband, in place: the 18
+     * lines at in[off] are replaced by the output samples, and prev[off]
+     * receives the second half of the block for the next granule.
+     */
+    private void fastInvMdct(double[] in, int off, double[] prev, int blockType) {
         double t0, t1, t2, t3, t4, t5, t6, t7, t8, t9;
         double t10, t11, t12, t13, t14, t15, t16, t17;
         if (blockType == 2) {
+            double[] out = rawout;
             for (int p = 0; p < 36; p += 9) {
                 out[p] = out[p + 1] = out[p + 2] = out[p + 3] = out[p + 4] = 0.0f;
                 out[p + 5] = out[p + 6] = out[p + 7] = out[p + 8] = 0.0f;
@@ -2639,28 +3925,28 @@ final class Layer3Decoder {
                 // 12 point IMDCT
                 // Begin 12 point IDCT
                 // Input aliasing for 12 pt IDCT
-                in[15 + i] += in[12 + i];
-                in[12 + i] += in[9 + i];
-                in[9 + i] += in[6 + i];
-                in[6 + i] += in[3 + i];
-                in[3 + i] += in[0 + i];
+                in[off + 15 + i] += in[off + 12 + i];
+                in[off + 12 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 6 + i];
+                in[off + 6 + i] += in[off + 3 + i];
+                in[off + 3 + i] += in[off + 0 + i];
                 // Input aliasing on odd indices (for 6 point IDCT)
-                in[15 + i] += in[9 + i];
-                in[9 + i] += in[3 + i];
+                in[off + 15 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 3 + i];
                 // 3 point IDCT on even indices
                 double pp1, pp2, sum;
-                pp2 = in[12 + i] * 0.500000000f;
-                pp1 = in[6 + i] * 0.866025403f;
-                sum = in[0 + i] + pp2;
-                t1 = in[0 + i] - in[12 + i];
+                pp2 = in[off + 12 + i] * 0.500000000f;
+                pp1 = in[off + 6 + i] * 0.866025403f;
+                sum = in[off + 0 + i] + pp2;
+                t1 = in[off + 0 + i] - in[off + 12 + i];
                 t0 = sum + pp1;
                 t2 = sum - pp1;
                 // End 3 point IDCT on even indices
                 // 3 point IDCT on odd indices (for 6 point IDCT)
-                pp2 = in[15 + i] * 0.500000000f;
-                pp1 = in[9 + i] * 0.866025403f;
-                sum = in[3 + i] + pp2;
-                t4 = in[3 + i] - in[15 + i];
+                pp2 = in[off + 15 + i] * 0.500000000f;
+                pp1 = in[off + 9 + i] * 0.866025403f;
+                sum = in[off + 3 + i] + pp2;
+                t4 = in[off + 3 + i] - in[off + 15 + i];
                 t5 = sum + pp1;
                 t3 = sum - pp1;
                 // End 3 point IDCT on odd indices
@@ -2715,36 +4001,41 @@ final class Layer3Decoder {
                 out[sixI + 17] += t11;
                 sixI += 6;
             }
+            // overlap addition; the input is not needed any more
+            for (int k = 0; k < 18; k++) {
+                in[off + k] = out[k] + prev[off + k];
+                prev[off + k] = out[18 + k];
+            }
         } else {
             // 36 point IDCT
             // input aliasing for 36 point IDCT
-            in[17] += in[16];
-            in[16] += in[15];
-            in[15] += in[14];
-            in[14] += in[13];
-            in[13] += in[12];
-            in[12] += in[11];
-            in[11] += in[10];
-            in[10] += in[9];
-            in[9] += in[8];
-            in[8] += in[7];
-            in[7] += in[6];
-            in[6] += in[5];
-            in[5] += in[4];
-            in[4] += in[3];
-            in[3] += in[2];
-            in[2] += in[1];
-            in[1] += in[0];
+            in[off + 17] += in[off + 16];
+            in[off + 16] += in[off + 15];
+            in[off + 15] += in[off + 14];
+            in[off + 14] += in[off + 13];
+            in[off + 13] += in[off + 12];
+            in[off + 12] += in[off + 11];
+            in[off + 11] += in[off + 10];
+            in[off + 10] += in[off + 9];
+            in[off + 9] += in[off + 8];
+            in[off + 8] += in[off + 7];
+            in[off + 7] += in[off + 6];
+            in[off + 6] += in[off + 5];
+            in[off + 5] += in[off + 4];
+            in[off + 4] += in[off + 3];
+            in[off + 3] += in[off + 2];
+            in[off + 2] += in[off + 1];
+            in[off + 1] += in[off + 0];
             // 18 point IDCT for odd indices
             // input aliasing for 18 point IDCT
-            in[17] += in[15];
-            in[15] += in[13];
-            in[13] += in[11];
-            in[11] += in[9];
-            in[9] += in[7];
-            in[7] += in[5];
-            in[5] += in[3];
-            in[3] += in[1];
+            in[off + 17] += in[off + 15];
+            in[off + 15] += in[off + 13];
+            in[off + 13] += in[off + 11];
+            in[off + 11] += in[off + 9];
+            in[off + 9] += in[off + 7];
+            in[off + 7] += in[off + 5];
+            in[off + 5] += in[off + 3];
+            in[off + 3] += in[off + 1];
             double tmp0, tmp1, tmp2, tmp3, tmp4, tmp0b, tmp1b, tmp2b, tmp3b;
             double tmp0o, tmp1o, tmp2o, tmp3o, tmp4o, tmp0ob, tmp1ob, tmp2ob, tmp3ob;
             // Fast 9 Point Inverse Discrete Cosine Transform
@@ -2760,36 +4051,36 @@ final class Layer3Decoder {
             // It is a simple "factorization" of the IDCT matrix.
             // 9 point IDCT on even indices
             // 5 points on odd indices (not really an IDCT)
-            double i00 = in[0] + in[0];
-            double iip12 = i00 + in[12];
-            tmp0 = iip12 + in[4] * 1.8793852415718f + in[8] * 1.532088886238f + in[16] * 0.34729635533386f;
-            tmp1 = i00 + in[4] - in[8] - in[12] - in[12] - in[16];
-            tmp2 = iip12 - in[4] * 0.34729635533386f - in[8] * 1.8793852415718f + in[16] * 1.532088886238f;
-            tmp3 = iip12 - in[4] * 1.532088886238f + in[8] * 0.34729635533386f - in[16] * 1.8793852415718f;
-            tmp4 = in[0] - in[4] + in[8] - in[12] + in[16];
+            double i00 = in[off + 0] + in[off + 0];
+            double iip12 = i00 + in[off + 12];
+            tmp0 = iip12 + in[off + 4] * 1.8793852415718f + in[off + 8] * 1.532088886238f + in[off + 16] * 0.34729635533386f;
+            tmp1 = i00 + in[off + 4] - in[off + 8] - in[off + 12] - in[off + 12] - in[off + 16];
+            tmp2 = iip12 - in[off + 4] * 0.34729635533386f - in[off + 8] * 1.8793852415718f + in[off + 16] * 1.532088886238f;
+            tmp3 = iip12 - in[off + 4] * 1.532088886238f + in[off + 8] * 0.34729635533386f - in[off + 16] * 1.8793852415718f;
+            tmp4 = in[off + 0] - in[off + 4] + in[off + 8] - in[off + 12] + in[off + 16];
             // 4 points on even indices
-            double i6s = in[6] * 1.732050808f; // Sqrt[3]
-            tmp0b = in[2] * 1.9696155060244f + i6s + in[10] * 1.2855752193731f + in[14] * 0.68404028665134f;
-            tmp1b = (in[2] - in[10] - in[14]) * 1.732050808f;
-            tmp2b = in[2] * 1.2855752193731f - i6s - in[10] * 0.68404028665134f + in[14] * 1.9696155060244f;
-            tmp3b = in[2] * 0.68404028665134f - i6s + in[10] * 1.9696155060244f - in[14] * 1.2855752193731f;
+            double i6s = in[off + 6] * 1.732050808f; // Sqrt[3]
+            tmp0b = in[off + 2] * 1.9696155060244f + i6s + in[off + 10] * 1.2855752193731f + in[off + 14] * 0.68404028665134f;
+            tmp1b = (in[off + 2] - in[off + 10] - in[off + 14]) * 1.732050808f;
+            tmp2b = in[off + 2] * 1.2855752193731f - i6s - in[off + 10] * 0.68404028665134f + in[off + 14] * 1.9696155060244f;
+            tmp3b = in[off + 2] * 0.68404028665134f - i6s + in[off + 10] * 1.9696155060244f - in[off + 14] * 1.2855752193731f;
             // 9 point IDCT on odd indices
             // 5 points on odd indices (not really an IDCT)
-            double i0 = in[0 + 1] + in[0 + 1];
-            double i0p12 = i0 + in[12 + 1];
-            tmp0o = i0p12 + in[4 + 1] * 1.8793852415718f + in[8 + 1] * 1.532088886238f + in[16 + 1] * 0.34729635533386f;
-            tmp1o = i0 + in[4 + 1] - in[8 + 1] - in[12 + 1] - in[12 + 1] - in[16 + 1];
-            tmp2o = i0p12 - in[4 + 1] * 0.34729635533386f - in[8 + 1] * 1.8793852415718f + in[16 + 1] * 1.532088886238f;
-            tmp3o = i0p12 - in[4 + 1] * 1.532088886238f + in[8 + 1] * 0.34729635533386f - in[16 + 1] * 1.8793852415718f;
-            tmp4o = (in[0 + 1] - in[4 + 1] + in[8 + 1] - in[12 + 1] + in[16 + 1]) * 0.707106781f; // Twiddled
+            double i0 = in[off + 0 + 1] + in[off + 0 + 1];
+            double i0p12 = i0 + in[off + 12 + 1];
+            tmp0o = i0p12 + in[off + 4 + 1] * 1.8793852415718f + in[off + 8 + 1] * 1.532088886238f + in[off + 16 + 1] * 0.34729635533386f;
+            tmp1o = i0 + in[off + 4 + 1] - in[off + 8 + 1] - in[off + 12 + 1] - in[off + 12 + 1] - in[off + 16 + 1];
+            tmp2o = i0p12 - in[off + 4 + 1] * 0.34729635533386f - in[off + 8 + 1] * 1.8793852415718f + in[off + 16 + 1] * 1.532088886238f;
+            tmp3o = i0p12 - in[off + 4 + 1] * 1.532088886238f + in[off + 8 + 1] * 0.34729635533386f - in[off + 16 + 1] * 1.8793852415718f;
+            tmp4o = (in[off + 0 + 1] - in[off + 4 + 1] + in[off + 8 + 1] - in[off + 12 + 1] + in[off + 16 + 1]) * 0.707106781f; // Twiddled
             // 4 points on even indices
-            double i7s = in[6 + 1] * 1.732050808f; // Sqrt[3]
-            tmp0ob = in[2 + 1] * 1.9696155060244f + i7s + in[10 + 1] * 1.2855752193731f + in[14 + 1]
+            double i7s = in[off + 6 + 1] * 1.732050808f; // Sqrt[3]
+            tmp0ob = in[off + 2 + 1] * 1.9696155060244f + i7s + in[off + 10 + 1] * 1.2855752193731f + in[off + 14 + 1]
                     * 0.68404028665134f;
-            tmp1ob = (in[2 + 1] - in[10 + 1] - in[14 + 1]) * 1.732050808f;
-            tmp2ob = in[2 + 1] * 1.2855752193731f - i7s - in[10 + 1] * 0.68404028665134f + in[14 + 1]
+            tmp1ob = (in[off + 2 + 1] - in[off + 10 + 1] - in[off + 14 + 1]) * 1.732050808f;
+            tmp2ob = in[off + 2 + 1] * 1.2855752193731f - i7s - in[off + 10 + 1] * 0.68404028665134f + in[off + 14 + 1]
                     * 1.9696155060244f;
-            tmp3ob = in[2 + 1] * 0.68404028665134f - i7s + in[10 + 1] * 1.9696155060244f - in[14 + 1]
+            tmp3ob = in[off + 2 + 1] * 0.68404028665134f - i7s + in[off + 10 + 1] * 1.9696155060244f - in[off + 14 + 1]
                     * 1.2855752193731f;
             // Twiddle factors on odd indices and
             // Butterflies on 9 point IDCT's and
@@ -2830,44 +4121,44 @@ final class Layer3Decoder {
             t8 = e + o;
             t9 = e - o;
             // end 36 point IDCT */
-            // shift to modified IDCT
+            // shift to modified IDCT, window and add the previous block
             double[] win = Constants.WIN[blockType];
-            out[0] = -t9 * win[0];
-            out[1] = -t10 * win[1];
-            out[2] = -t11 * win[2];
-            out[3] = -t12 * win[3];
-            out[4] = -t13 * win[4];
-            out[5] = -t14 * win[5];
-            out[6] = -t15 * win[6];
-            out[7] = -t16 * win[7];
-            out[8] = -t17 * win[8];
-            out[9] = t17 * win[9];
-            out[10] = t16 * win[10];
-            out[11] = t15 * win[11];
-            out[12] = t14 * win[12];
-            out[13] = t13 * win[13];
-            out[14] = t12 * win[14];
-            out[15] = t11 * win[15];
-            out[16] = t10 * win[16];
-            out[17] = t9 * win[17];
-            out[18] = t8 * win[18];
-            out[19] = t7 * win[19];
-            out[20] = t6 * win[20];
-            out[21] = t5 * win[21];
-            out[22] = t4 * win[22];
-            out[23] = t3 * win[23];
-            out[24] = t2 * win[24];
-            out[25] = t1 * win[25];
-            out[26] = t0 * win[26];
-            out[27] = t0 * win[27];
-            out[28] = t1 * win[28];
-            out[29] = t2 * win[29];
-            out[30] = t3 * win[30];
-            out[31] = t4 * win[31];
-            out[32] = t5 * win[32];
-            out[33] = t6 * win[33];
-            out[34] = t7 * win[34];
-            out[35] = t8 * win[35];
+            in[off + 0] = -t9 * win[0] + prev[off + 0];
+            in[off + 1] = -t10 * win[1] + prev[off + 1];
+            in[off + 2] = -t11 * win[2] + prev[off + 2];
+            in[off + 3] = -t12 * win[3] + prev[off + 3];
+            in[off + 4] = -t13 * win[4] + prev[off + 4];
+            in[off + 5] = -t14 * win[5] + prev[off + 5];
+            in[off + 6] = -t15 * win[6] + prev[off + 6];
+            in[off + 7] = -t16 * win[7] + prev[off + 7];
+            in[off + 8] = -t17 * win[8] + prev[off + 8];
+            in[off + 9] = t17 * win[9] + prev[off + 9];
+            in[off + 10] = t16 * win[10] + prev[off + 10];
+            in[off + 11] = t15 * win[11] + prev[off + 11];
+            in[off + 12] = t14 * win[12] + prev[off + 12];
+            in[off + 13] = t13 * win[13] + prev[off + 13];
+            in[off + 14] = t12 * win[14] + prev[off + 14];
+            in[off + 15] = t11 * win[15] + prev[off + 15];
+            in[off + 16] = t10 * win[16] + prev[off + 16];
+            in[off + 17] = t9 * win[17] + prev[off + 17];
+            prev[off + 0] = t8 * win[18];
+            prev[off + 1] = t7 * win[19];
+            prev[off + 2] = t6 * win[20];
+            prev[off + 3] = t5 * win[21];
+            prev[off + 4] = t4 * win[22];
+            prev[off + 5] = t3 * win[23];
+            prev[off + 6] = t2 * win[24];
+            prev[off + 7] = t1 * win[25];
+            prev[off + 8] = t0 * win[26];
+            prev[off + 9] = t0 * win[27];
+            prev[off + 10] = t1 * win[28];
+            prev[off + 11] = t2 * win[29];
+            prev[off + 12] = t3 * win[30];
+            prev[off + 13] = t4 * win[31];
+            prev[off + 14] = t5 * win[32];
+            prev[off + 15] = t6 * win[33];
+            prev[off + 16] = t7 * win[34];
+            prev[off + 17] = t8 * win[35];
         }
     }
 }
@@ -2877,7 +4168,6 @@ final class SynthesisFilter {
     private double[] v2 = new double[512];
     private double[] actualV = v1; // v1 or v2
     private int actualWritePos = 15; // 0-15
-    private double[] samples = new double[32]; // 32 new subband samples
     private int channel;
     private double scaleFactor;
     private double[] tmpOutBuffer = new double[32];
@@ -2914,7 +4204,7 @@ final class SynthesisFilter {
     private static final double COS1_8 = divCos(MY_PI / 8.0);
     private static final double COS3_8 = divCos(MY_PI * 3.0 / 8.0);
     private static final double COS1_4 = divCos(MY_PI / 4.0);
-    private static final double[][] D16 = Constants.D16;
+    private static final double[] D = Constants.D;
 
     /**
      * Contructor. The scalefactor scales the calculated double pcm samples to short values (raw pcm samples are in
@@ -2925,6 +4215,16 @@ final class SynthesisFilter {
         scaleFactor = factor;
     }
 
+    /**
+     * Clears the samples of the previous stream.
+     */
+    void reset() {
+        Arrays.fill(v1, 0);
+        Arrays.fill(v2, 0);
+        actualV = v1;
+        actualWritePos = 15;
+    }
+
     private static double divCos(double a) {
         return (1.0 / (2.0 * Math.cos(a)));
     }
@@ -2932,44 +4232,43 @@ final class SynthesisFilter {
     /**
      * Compute new values via a fast cosine transform.
      */
-    private void computeNewV() {
+    private void computeNewV(double[] s, int off) {
         double nv0, nv1, nv2, nv3, nv4, nv5, nv6, nv7, nv8, nv9;
         double nv10, nv11, nv12, nv13, nv14, nv15, nv16, nv17, nv18, nv19;
         double nv20, nv21, nv22, nv23, nv24, nv25, nv26, nv27, nv28, nv29;
         double nv30, nv31;
-        double[] s = samples;
-        double s0 = s[0];
-        double s1 = s[1];
-        double s2 = s[2];
-        double s3 = s[3];
-        double s4 = s[4];
-        double s5 = s[5];
-        double s6 = s[6];
-        double s7 = s[7];
-        double s8 = s[8];
-        double s9 = s[9];
-        double s10 = s[10];
-        double s11 = s[11];
-        double s12 = s[12];
-        double s13 = s[13];
-        double s14 = s[14];
-        double s15 = s[15];
-        double s16 = s[16];
-        double s17 = s[17];
-        double s18 = s[18];
-        double s19 = s[19];
-        double s20 = s[20];
-        double s21 = s[21];
-        double s22 = s[22];
-        double s23 = s[23];
-        double s24 = s[24];
-        double s25 = s[25];
-        double s26 = s[26];
-        double s27 = s[27];
-        double s28 = s[28];
-        double s29 = s[29];
-        double s30 = s[30];
-        double s31 = s[31];
+        double s0 = s[off];
+        double s1 = s[off + 18];
+        double s2 = s[off + 36];
+        double s3 = s[off + 54];
+        double s4 = s[off + 72];
+        double s5 = s[off + 90];
+        double s6 = s[off + 108];
+        double s7 = s[off + 126];
+        double s8 = s[off + 144];
+        double s9 = s[off + 162];
+        double s10 = s[off + 180];
+        double s11 = s[off + 198];
+        double s12 = s[off + 216];
+        double s13 = s[off + 234];
+        double s14 = s[off + 252];
+        double s15 = s[off + 270];
+        double s16 = s[off + 288];
+        double s17 = s[off + 306];
+        double s18 = s[off + 324];
+        double s19 = s[off + 342];
+        double s20 = s[off + 360];
+        double s21 = s[off + 378];
+        double s22 = s[off + 396];
+        double s23 = s[off + 414];
+        double s24 = s[off + 432];
+        double s25 = s[off + 450];
+        double s26 = s[off + 468];
+        double s27 = s[off + 486];
+        double s28 = s[off + 504];
+        double s29 = s[off + 522];
+        double s30 = s[off + 540];
+        double s31 = s[off + 558];
         double p0 = s0 + s31;
         double p1 = s1 + s30;
         double p2 = s2 + s29;
@@ -3236,10 +4535,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[0 + dvp] * dp[0]) + (vp[15 + dvp] * dp[1]) + (vp[14 + dvp] * dp[2]) + (vp[13 + dvp] * dp[3]) + (vp[12 + dvp] * dp[4]) + (vp[11 + dvp] * dp[5])
-                    + (vp[10 + dvp] * dp[6]) + (vp[9 + dvp] * dp[7]) + (vp[8 + dvp] * dp[8]) + (vp[7 + dvp] * dp[9]) + (vp[6 + dvp] * dp[10]) + (vp[5 + dvp] * dp[11])
-                    + (vp[4 + dvp] * dp[12]) + (vp[3 + dvp] * dp[13]) + (vp[2 + dvp] * dp[14]) + (vp[1 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[0 + dvp] * D[0 + dvp]) + (vp[15 + dvp] * D[1 + dvp]) + (vp[14 + dvp] * D[2 + dvp]) + (vp[13 + dvp] * D[3 + dvp]) + (vp[12 + dvp] * D[4 + dvp]) + (vp[11 + dvp] * D[5 + dvp])
+                    + (vp[10 + dvp] * D[6 + dvp]) + (vp[9 + dvp] * D[7 + dvp]) + (vp[8 + dvp] * D[8 + dvp]) + (vp[7 + dvp] * D[9 + dvp]) + (vp[6 + dvp] * D[10 + dvp]) + (vp[5 + dvp] * D[11 + dvp])
+                    + (vp[4 + dvp] * D[12 + dvp]) + (vp[3 + dvp] * D[13 + dvp]) + (vp[2 + dvp] * D[14 + dvp]) + (vp[1 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3250,10 +4548,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[1 + dvp] * dp[0]) + (vp[0 + dvp] * dp[1]) + (vp[15 + dvp] * dp[2]) + (vp[14 + dvp] * dp[3]) + (vp[13 + dvp] * dp[4]) + (vp[12 + dvp] * dp[5])
-                    + (vp[11 + dvp] * dp[6]) + (vp[10 + dvp] * dp[7]) + (vp[9 + dvp] * dp[8]) + (vp[8 + dvp] * dp[9]) + (vp[7 + dvp] * dp[10]) + (vp[6 + dvp] * dp[11])
-                    + (vp[5 + dvp] * dp[12]) + (vp[4 + dvp] * dp[13]) + (vp[3 + dvp] * dp[14]) + (vp[2 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[1 + dvp] * D[0 + dvp]) + (vp[0 + dvp] * D[1 + dvp]) + (vp[15 + dvp] * D[2 + dvp]) + (vp[14 + dvp] * D[3 + dvp]) + (vp[13 + dvp] * D[4 + dvp]) + (vp[12 + dvp] * D[5 + dvp])
+                    + (vp[11 + dvp] * D[6 + dvp]) + (vp[10 + dvp] * D[7 + dvp]) + (vp[9 + dvp] * D[8 + dvp]) + (vp[8 + dvp] * D[9 + dvp]) + (vp[7 + dvp] * D[10 + dvp]) + (vp[6 + dvp] * D[11 + dvp])
+                    + (vp[5 + dvp] * D[12 + dvp]) + (vp[4 + dvp] * D[13 + dvp]) + (vp[3 + dvp] * D[14 + dvp]) + (vp[2 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3264,10 +4561,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[2 + dvp] * dp[0]) + (vp[1 + dvp] * dp[1]) + (vp[0 + dvp] * dp[2]) + (vp[15 + dvp] * dp[3]) + (vp[14 + dvp] * dp[4]) + (vp[13 + dvp] * dp[5])
-                    + (vp[12 + dvp] * dp[6]) + (vp[11 + dvp] * dp[7]) + (vp[10 + dvp] * dp[8]) + (vp[9 + dvp] * dp[9]) + (vp[8 + dvp] * dp[10]) + (vp[7 + dvp] * dp[11])
-                    + (vp[6 + dvp] * dp[12]) + (vp[5 + dvp] * dp[13]) + (vp[4 + dvp] * dp[14]) + (vp[3 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[2 + dvp] * D[0 + dvp]) + (vp[1 + dvp] * D[1 + dvp]) + (vp[0 + dvp] * D[2 + dvp]) + (vp[15 + dvp] * D[3 + dvp]) + (vp[14 + dvp] * D[4 + dvp]) + (vp[13 + dvp] * D[5 + dvp])
+                    + (vp[12 + dvp] * D[6 + dvp]) + (vp[11 + dvp] * D[7 + dvp]) + (vp[10 + dvp] * D[8 + dvp]) + (vp[9 + dvp] * D[9 + dvp]) + (vp[8 + dvp] * D[10 + dvp]) + (vp[7 + dvp] * D[11 + dvp])
+                    + (vp[6 + dvp] * D[12 + dvp]) + (vp[5 + dvp] * D[13 + dvp]) + (vp[4 + dvp] * D[14 + dvp]) + (vp[3 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3278,10 +4574,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[3 + dvp] * dp[0]) + (vp[2 + dvp] * dp[1]) + (vp[1 + dvp] * dp[2]) + (vp[0 + dvp] * dp[3]) + (vp[15 + dvp] * dp[4]) + (vp[14 + dvp] * dp[5])
-                    + (vp[13 + dvp] * dp[6]) + (vp[12 + dvp] * dp[7]) + (vp[11 + dvp] * dp[8]) + (vp[10 + dvp] * dp[9]) + (vp[9 + dvp] * dp[10]) + (vp[8 + dvp] * dp[11])
-                    + (vp[7 + dvp] * dp[12]) + (vp[6 + dvp] * dp[13]) + (vp[5 + dvp] * dp[14]) + (vp[4 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[3 + dvp] * D[0 + dvp]) + (vp[2 + dvp] * D[1 + dvp]) + (vp[1 + dvp] * D[2 + dvp]) + (vp[0 + dvp] * D[3 + dvp]) + (vp[15 + dvp] * D[4 + dvp]) + (vp[14 + dvp] * D[5 + dvp])
+                    + (vp[13 + dvp] * D[6 + dvp]) + (vp[12 + dvp] * D[7 + dvp]) + (vp[11 + dvp] * D[8 + dvp]) + (vp[10 + dvp] * D[9 + dvp]) + (vp[9 + dvp] * D[10 + dvp]) + (vp[8 + dvp] * D[11 + dvp])
+                    + (vp[7 + dvp] * D[12 + dvp]) + (vp[6 + dvp] * D[13 + dvp]) + (vp[5 + dvp] * D[14 + dvp]) + (vp[4 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3292,10 +4587,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[4 + dvp] * dp[0]) + (vp[3 + dvp] * dp[1]) + (vp[2 + dvp] * dp[2]) + (vp[1 + dvp] * dp[3]) + (vp[0 + dvp] * dp[4]) + (vp[15 + dvp] * dp[5])
-                    + (vp[14 + dvp] * dp[6]) + (vp[13 + dvp] * dp[7]) + (vp[12 + dvp] * dp[8]) + (vp[11 + dvp] * dp[9]) + (vp[10 + dvp] * dp[10]) + (vp[9 + dvp] * dp[11])
-                    + (vp[8 + dvp] * dp[12]) + (vp[7 + dvp] * dp[13]) + (vp[6 + dvp] * dp[14]) + (vp[5 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[4 + dvp] * D[0 + dvp]) + (vp[3 + dvp] * D[1 + dvp]) + (vp[2 + dvp] * D[2 + dvp]) + (vp[1 + dvp] * D[3 + dvp]) + (vp[0 + dvp] * D[4 + dvp]) + (vp[15 + dvp] * D[5 + dvp])
+                    + (vp[14 + dvp] * D[6 + dvp]) + (vp[13 + dvp] * D[7 + dvp]) + (vp[12 + dvp] * D[8 + dvp]) + (vp[11 + dvp] * D[9 + dvp]) + (vp[10 + dvp] * D[10 + dvp]) + (vp[9 + dvp] * D[11 + dvp])
+                    + (vp[8 + dvp] * D[12 + dvp]) + (vp[7 + dvp] * D[13 + dvp]) + (vp[6 + dvp] * D[14 + dvp]) + (vp[5 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3306,10 +4600,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[5 + dvp] * dp[0]) + (vp[4 + dvp] * dp[1]) + (vp[3 + dvp] * dp[2]) + (vp[2 + dvp] * dp[3]) + (vp[1 + dvp] * dp[4]) + (vp[0 + dvp] * dp[5])
-                    + (vp[15 + dvp] * dp[6]) + (vp[14 + dvp] * dp[7]) + (vp[13 + dvp] * dp[8]) + (vp[12 + dvp] * dp[9]) + (vp[11 + dvp] * dp[10]) + (vp[10 + dvp] * dp[11])
-                    + (vp[9 + dvp] * dp[12]) + (vp[8 + dvp] * dp[13]) + (vp[7 + dvp] * dp[14]) + (vp[6 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[5 + dvp] * D[0 + dvp]) + (vp[4 + dvp] * D[1 + dvp]) + (vp[3 + dvp] * D[2 + dvp]) + (vp[2 + dvp] * D[3 + dvp]) + (vp[1 + dvp] * D[4 + dvp]) + (vp[0 + dvp] * D[5 + dvp])
+                    + (vp[15 + dvp] * D[6 + dvp]) + (vp[14 + dvp] * D[7 + dvp]) + (vp[13 + dvp] * D[8 + dvp]) + (vp[12 + dvp] * D[9 + dvp]) + (vp[11 + dvp] * D[10 + dvp]) + (vp[10 + dvp] * D[11 + dvp])
+                    + (vp[9 + dvp] * D[12 + dvp]) + (vp[8 + dvp] * D[13 + dvp]) + (vp[7 + dvp] * D[14 + dvp]) + (vp[6 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3320,10 +4613,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[6 + dvp] * dp[0]) + (vp[5 + dvp] * dp[1]) + (vp[4 + dvp] * dp[2]) + (vp[3 + dvp] * dp[3]) + (vp[2 + dvp] * dp[4]) + (vp[1 + dvp] * dp[5])
-                    + (vp[0 + dvp] * dp[6]) + (vp[15 + dvp] * dp[7]) + (vp[14 + dvp] * dp[8]) + (vp[13 + dvp] * dp[9]) + (vp[12 + dvp] * dp[10]) + (vp[11 + dvp] * dp[11])
-                    + (vp[10 + dvp] * dp[12]) + (vp[9 + dvp] * dp[13]) + (vp[8 + dvp] * dp[14]) + (vp[7 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[6 + dvp] * D[0 + dvp]) + (vp[5 + dvp] * D[1 + dvp]) + (vp[4 + dvp] * D[2 + dvp]) + (vp[3 + dvp] * D[3 + dvp]) + (vp[2 + dvp] * D[4 + dvp]) + (vp[1 + dvp] * D[5 + dvp])
+                    + (vp[0 + dvp] * D[6 + dvp]) + (vp[15 + dvp] * D[7 + dvp]) + (vp[14 + dvp] * D[8 + dvp]) + (vp[13 + dvp] * D[9 + dvp]) + (vp[12 + dvp] * D[10 + dvp]) + (vp[11 + dvp] * D[11 + dvp])
+                    + (vp[10 + dvp] * D[12 + dvp]) + (vp[9 + dvp] * D[13 + dvp]) + (vp[8 + dvp] * D[14 + dvp]) + (vp[7 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3334,10 +4626,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[7 + dvp] * dp[0]) + (vp[6 + dvp] * dp[1]) + (vp[5 + dvp] * dp[2]) + (vp[4 + dvp] * dp[3]) + (vp[3 + dvp] * dp[4]) + (vp[2 + dvp] * dp[5])
-                    + (vp[1 + dvp] * dp[6]) + (vp[0 + dvp] * dp[7]) + (vp[15 + dvp] * dp[8]) + (vp[14 + dvp] * dp[9]) + (vp[13 + dvp] * dp[10]) + (vp[12 + dvp] * dp[11])
-                    + (vp[11 + dvp] * dp[12]) + (vp[10 + dvp] * dp[13]) + (vp[9 + dvp] * dp[14]) + (vp[8 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[7 + dvp] * D[0 + dvp]) + (vp[6 + dvp] * D[1 + dvp]) + (vp[5 + dvp] * D[2 + dvp]) + (vp[4 + dvp] * D[3 + dvp]) + (vp[3 + dvp] * D[4 + dvp]) + (vp[2 + dvp] * D[5 + dvp])
+                    + (vp[1 + dvp] * D[6 + dvp]) + (vp[0 + dvp] * D[7 + dvp]) + (vp[15 + dvp] * D[8 + dvp]) + (vp[14 + dvp] * D[9 + dvp]) + (vp[13 + dvp] * D[10 + dvp]) + (vp[12 + dvp] * D[11 + dvp])
+                    + (vp[11 + dvp] * D[12 + dvp]) + (vp[10 + dvp] * D[13 + dvp]) + (vp[9 + dvp] * D[14 + dvp]) + (vp[8 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3348,10 +4639,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[8 + dvp] * dp[0]) + (vp[7 + dvp] * dp[1]) + (vp[6 + dvp] * dp[2]) + (vp[5 + dvp] * dp[3]) + (vp[4 + dvp] * dp[4]) + (vp[3 + dvp] * dp[5])
-                    + (vp[2 + dvp] * dp[6]) + (vp[1 + dvp] * dp[7]) + (vp[0 + dvp] * dp[8]) + (vp[15 + dvp] * dp[9]) + (vp[14 + dvp] * dp[10]) + (vp[13 + dvp] * dp[11])
-                    + (vp[12 + dvp] * dp[12]) + (vp[11 + dvp] * dp[13]) + (vp[10 + dvp] * dp[14]) + (vp[9 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[8 + dvp] * D[0 + dvp]) + (vp[7 + dvp] * D[1 + dvp]) + (vp[6 + dvp] * D[2 + dvp]) + (vp[5 + dvp] * D[3 + dvp]) + (vp[4 + dvp] * D[4 + dvp]) + (vp[3 + dvp] * D[5 + dvp])
+                    + (vp[2 + dvp] * D[6 + dvp]) + (vp[1 + dvp] * D[7 + dvp]) + (vp[0 + dvp] * D[8 + dvp]) + (vp[15 + dvp] * D[9 + dvp]) + (vp[14 + dvp] * D[10 + dvp]) + (vp[13 + dvp] * D[11 + dvp])
+                    + (vp[12 + dvp] * D[12 + dvp]) + (vp[11 + dvp] * D[13 + dvp]) + (vp[10 + dvp] * D[14 + dvp]) + (vp[9 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3362,10 +4652,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[9 + dvp] * dp[0]) + (vp[8 + dvp] * dp[1]) + (vp[7 + dvp] * dp[2]) + (vp[6 + dvp] * dp[3]) + (vp[5 + dvp] * dp[4]) + (vp[4 + dvp] * dp[5])
-                    + (vp[3 + dvp] * dp[6]) + (vp[2 + dvp] * dp[7]) + (vp[1 + dvp] * dp[8]) + (vp[0 + dvp] * dp[9]) + (vp[15 + dvp] * dp[10]) + (vp[14 + dvp] * dp[11])
-                    + (vp[13 + dvp] * dp[12]) + (vp[12 + dvp] * dp[13]) + (vp[11 + dvp] * dp[14]) + (vp[10 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[9 + dvp] * D[0 + dvp]) + (vp[8 + dvp] * D[1 + dvp]) + (vp[7 + dvp] * D[2 + dvp]) + (vp[6 + dvp] * D[3 + dvp]) + (vp[5 + dvp] * D[4 + dvp]) + (vp[4 + dvp] * D[5 + dvp])
+                    + (vp[3 + dvp] * D[6 + dvp]) + (vp[2 + dvp] * D[7 + dvp]) + (vp[1 + dvp] * D[8 + dvp]) + (vp[0 + dvp] * D[9 + dvp]) + (vp[15 + dvp] * D[10 + dvp]) + (vp[14 + dvp] * D[11 + dvp])
+                    + (vp[13 + dvp] * D[12 + dvp]) + (vp[12 + dvp] * D[13 + dvp]) + (vp[11 + dvp] * D[14 + dvp]) + (vp[10 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3376,10 +4665,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[10 + dvp] * dp[0]) + (vp[9 + dvp] * dp[1]) + (vp[8 + dvp] * dp[2]) + (vp[7 + dvp] * dp[3]) + (vp[6 + dvp] * dp[4]) + (vp[5 + dvp] * dp[5])
-                    + (vp[4 + dvp] * dp[6]) + (vp[3 + dvp] * dp[7]) + (vp[2 + dvp] * dp[8]) + (vp[1 + dvp] * dp[9]) + (vp[0 + dvp] * dp[10]) + (vp[15 + dvp] * dp[11])
-                    + (vp[14 + dvp] * dp[12]) + (vp[13 + dvp] * dp[13]) + (vp[12 + dvp] * dp[14]) + (vp[11 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[10 + dvp] * D[0 + dvp]) + (vp[9 + dvp] * D[1 + dvp]) + (vp[8 + dvp] * D[2 + dvp]) + (vp[7 + dvp] * D[3 + dvp]) + (vp[6 + dvp] * D[4 + dvp]) + (vp[5 + dvp] * D[5 + dvp])
+                    + (vp[4 + dvp] * D[6 + dvp]) + (vp[3 + dvp] * D[7 + dvp]) + (vp[2 + dvp] * D[8 + dvp]) + (vp[1 + dvp] * D[9 + dvp]) + (vp[0 + dvp] * D[10 + dvp]) + (vp[15 + dvp] * D[11 + dvp])
+                    + (vp[14 + dvp] * D[12 + dvp]) + (vp[13 + dvp] * D[13 + dvp]) + (vp[12 + dvp] * D[14 + dvp]) + (vp[11 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3390,10 +4678,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[11 + dvp] * dp[0]) + (vp[10 + dvp] * dp[1]) + (vp[9 + dvp] * dp[2]) + (vp[8 + dvp] * dp[3]) + (vp[7 + dvp] * dp[4]) + (vp[6 + dvp] * dp[5])
-                    + (vp[5 + dvp] * dp[6]) + (vp[4 + dvp] * dp[7]) + (vp[3 + dvp] * dp[8]) + (vp[2 + dvp] * dp[9]) + (vp[1 + dvp] * dp[10]) + (vp[0 + dvp] * dp[11])
-                    + (vp[15 + dvp] * dp[12]) + (vp[14 + dvp] * dp[13]) + (vp[13 + dvp] * dp[14]) + (vp[12 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[11 + dvp] * D[0 + dvp]) + (vp[10 + dvp] * D[1 + dvp]) + (vp[9 + dvp] * D[2 + dvp]) + (vp[8 + dvp] * D[3 + dvp]) + (vp[7 + dvp] * D[4 + dvp]) + (vp[6 + dvp] * D[5 + dvp])
+                    + (vp[5 + dvp] * D[6 + dvp]) + (vp[4 + dvp] * D[7 + dvp]) + (vp[3 + dvp] * D[8 + dvp]) + (vp[2 + dvp] * D[9 + dvp]) + (vp[1 + dvp] * D[10 + dvp]) + (vp[0 + dvp] * D[11 + dvp])
+                    + (vp[15 + dvp] * D[12 + dvp]) + (vp[14 + dvp] * D[13 + dvp]) + (vp[13 + dvp] * D[14 + dvp]) + (vp[12 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3404,10 +4691,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[12 + dvp] * dp[0]) + (vp[11 + dvp] * dp[1]) + (vp[10 + dvp] * dp[2]) + (vp[9 + dvp] * dp[3]) + (vp[8 + dvp] * dp[4]) + (vp[7 + dvp] * dp[5])
-                    + (vp[6 + dvp] * dp[6]) + (vp[5 + dvp] * dp[7]) + (vp[4 + dvp] * dp[8]) + (vp[3 + dvp] * dp[9]) + (vp[2 + dvp] * dp[10]) + (vp[1 + dvp] * dp[11])
-                    + (vp[0 + dvp] * dp[12]) + (vp[15 + dvp] * dp[13]) + (vp[14 + dvp] * dp[14]) + (vp[13 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[12 + dvp] * D[0 + dvp]) + (vp[11 + dvp] * D[1 + dvp]) + (vp[10 + dvp] * D[2 + dvp]) + (vp[9 + dvp] * D[3 + dvp]) + (vp[8 + dvp] * D[4 + dvp]) + (vp[7 + dvp] * D[5 + dvp])
+                    + (vp[6 + dvp] * D[6 + dvp]) + (vp[5 + dvp] * D[7 + dvp]) + (vp[4 + dvp] * D[8 + dvp]) + (vp[3 + dvp] * D[9 + dvp]) + (vp[2 + dvp] * D[10 + dvp]) + (vp[1 + dvp] * D[11 + dvp])
+                    + (vp[0 + dvp] * D[12 + dvp]) + (vp[15 + dvp] * D[13 + dvp]) + (vp[14 + dvp] * D[14 + dvp]) + (vp[13 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3418,10 +4704,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[13 + dvp] * dp[0]) + (vp[12 + dvp] * dp[1]) + (vp[11 + dvp] * dp[2]) + (vp[10 + dvp] * dp[3]) + (vp[9 + dvp] * dp[4]) + (vp[8 + dvp] * dp[5])
-                    + (vp[7 + dvp] * dp[6]) + (vp[6 + dvp] * dp[7]) + (vp[5 + dvp] * dp[8]) + (vp[4 + dvp] * dp[9]) + (vp[3 + dvp] * dp[10]) + (vp[2 + dvp] * dp[11])
-                    + (vp[1 + dvp] * dp[12]) + (vp[0 + dvp] * dp[13]) + (vp[15 + dvp] * dp[14]) + (vp[14 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[13 + dvp] * D[0 + dvp]) + (vp[12 + dvp] * D[1 + dvp]) + (vp[11 + dvp] * D[2 + dvp]) + (vp[10 + dvp] * D[3 + dvp]) + (vp[9 + dvp] * D[4 + dvp]) + (vp[8 + dvp] * D[5 + dvp])
+                    + (vp[7 + dvp] * D[6 + dvp]) + (vp[6 + dvp] * D[7 + dvp]) + (vp[5 + dvp] * D[8 + dvp]) + (vp[4 + dvp] * D[9 + dvp]) + (vp[3 + dvp] * D[10 + dvp]) + (vp[2 + dvp] * D[11 + dvp])
+                    + (vp[1 + dvp] * D[12 + dvp]) + (vp[0 + dvp] * D[13 + dvp]) + (vp[15 + dvp] * D[14 + dvp]) + (vp[14 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3432,10 +4717,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[14 + dvp] * dp[0]) + (vp[13 + dvp] * dp[1]) + (vp[12 + dvp] * dp[2]) + (vp[11 + dvp] * dp[3]) + (vp[10 + dvp] * dp[4]) + (vp[9 + dvp] * dp[5])
-                    + (vp[8 + dvp] * dp[6]) + (vp[7 + dvp] * dp[7]) + (vp[6 + dvp] * dp[8]) + (vp[5 + dvp] * dp[9]) + (vp[4 + dvp] * dp[10]) + (vp[3 + dvp] * dp[11])
-                    + (vp[2 + dvp] * dp[12]) + (vp[1 + dvp] * dp[13]) + (vp[0 + dvp] * dp[14]) + (vp[15 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[14 + dvp] * D[0 + dvp]) + (vp[13 + dvp] * D[1 + dvp]) + (vp[12 + dvp] * D[2 + dvp]) + (vp[11 + dvp] * D[3 + dvp]) + (vp[10 + dvp] * D[4 + dvp]) + (vp[9 + dvp] * D[5 + dvp])
+                    + (vp[8 + dvp] * D[6 + dvp]) + (vp[7 + dvp] * D[7 + dvp]) + (vp[6 + dvp] * D[8 + dvp]) + (vp[5 + dvp] * D[9 + dvp]) + (vp[4 + dvp] * D[10 + dvp]) + (vp[3 + dvp] * D[11 + dvp])
+                    + (vp[2 + dvp] * D[12 + dvp]) + (vp[1 + dvp] * D[13 + dvp]) + (vp[0 + dvp] * D[14 + dvp]) + (vp[15 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3446,10 +4730,9 @@ final class SynthesisFilter {
         final double[] tmpOut = tmpOutBuffer;
         int dvp = 0;
         for (int i = 0; i < 32; i++) {
-            final double[] dp = D16[i];
-            double pcmSample = (((vp[15 + dvp] * dp[0]) + (vp[14 + dvp] * dp[1]) + (vp[13 + dvp] * dp[2]) + (vp[12 + dvp] * dp[3]) + (vp[11 + dvp] * dp[4])
-                    + (vp[10 + dvp] * dp[5]) + (vp[9 + dvp] * dp[6]) + (vp[8 + dvp] * dp[7]) + (vp[7 + dvp] * dp[8]) + (vp[6 + dvp] * dp[9]) + (vp[5 + dvp] * dp[10])
-                    + (vp[4 + dvp] * dp[11]) + (vp[3 + dvp] * dp[12]) + (vp[2 + dvp] * dp[13]) + (vp[1 + dvp] * dp[14]) + (vp[0 + dvp] * dp[15])) * scaleFactor);
+            double pcmSample = (((vp[15 + dvp] * D[0 + dvp]) + (vp[14 + dvp] * D[1 + dvp]) + (vp[13 + dvp] * D[2 + dvp]) + (vp[12 + dvp] * D[3 + dvp]) + (vp[11 + dvp] * D[4 + dvp])
+                    + (vp[10 + dvp] * D[5 + dvp]) + (vp[9 + dvp] * D[6 + dvp]) + (vp[8 + dvp] * D[7 + dvp]) + (vp[7 + dvp] * D[8 + dvp]) + (vp[6 + dvp] * D[9 + dvp]) + (vp[5 + dvp] * D[10 + dvp])
+                    + (vp[4 + dvp] * D[11 + dvp]) + (vp[3 + dvp] * D[12 + dvp]) + (vp[2 + dvp] * D[13 + dvp]) + (vp[1 + dvp] * D[14 + dvp]) + (vp[0 + dvp] * D[15 + dvp])) * scaleFactor);
             tmpOut[i] = pcmSample;
             dvp += 16;
         }
@@ -3510,13 +4793,27 @@ final class SynthesisFilter {
     }
 
     /**
-     * Calculate 32 PCM samples and write them
+     * Calculate 32 PCM samples and write them. The subband samples are
+     * s[off], s[off + 18], ..., s[off + 558], as left by the IMDCT.
      */
-    void calculatePcmSamples(double[] s, Decoder player) {
-        for (int i = 0; i < 32; i++) {
-            samples[i] = s[i];
+    void calculatePcmSamples(double[] s, int off, Decoder player) {
+        computeNewV(s, off);
+        writePcmSamples(player);
+    }
+
+    /**
+     * Same as calculatePcmSamples with 32 zero subband samples, whose cosine
+     * transform is zero as well.
+     */
+    void calculateSilentPcmSamples(Decoder player) {
+        for (int i = actualWritePos; i < 512; i += 16) {
+            v1[i] = 0;
+            v2[i] = 0;
         }
-        computeNewV();
+        writePcmSamples(player);
+    }
+
+    private void writePcmSamples(Decoder player) {
         computePcmSamples();
         player.appendSamples(channel, tmpOutBuffer);
         actualWritePos = (actualWritePos + 1) & 0xf;
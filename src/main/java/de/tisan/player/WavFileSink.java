@@ -0,0 +1,168 @@
+package de.tisan.player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.FloatControl;
+
+/**
+ * Writes the audio to a WAV file as it is decoded. The sizes in the header
+ * are filled in when the sink is closed. The streams played until release go
+ * into one file, one after the other, so they must have one format.
+ */
+public class WavFileSink implements AudioSink {
+    private static final int HEADER_SIZE = 44;
+    private final File file;
+    private RandomAccessFile out;
+    /**
+     * The format of the file, or null until it is started.
+     */
+    private AudioFormat format;
+    private boolean swap;
+    private byte[] buffer = new byte[0];
+    private long dataSize;
+
+    public WavFileSink(File file) {
+        this.file = file;
+    }
+
+    /**
+     * WAV files are little endian; big endian samples are swapped when
+     * writing.
+     */
+    @Override
+    public boolean isFormatSupported(AudioFormat format) {
+        return !format.isBigEndian() || format.getSampleSizeInBits() == 8;
+    }
+
+    /**
+     * Starts the file, or goes on at its end for the next stream. A stream of
+     * another format than the file is refused.
+     */
+    @Override
+    public void open(AudioFormat format) throws IOException {
+        if (this.format != null) {
+            if (!format.matches(this.format)) {
+                throw new IOException("The WAV file is in " + this.format + ", not in " + format);
+            }
+            out = new RandomAccessFile(file, "rw");
+            out.seek(HEADER_SIZE + dataSize);
+            return;
+        }
+        int channels = format.getChannels();
+        int sampleRate = (int) format.getSampleRate();
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        // WAV samples are little endian
+        swap = format.isBigEndian() && bytesPerSample == 2;
+        out = new RandomAccessFile(file, "rw");
+        out.setLength(0);
+        byte[] h = new byte[HEADER_SIZE];
+        setString(h, 0, "RIFF");
+        setString(h, 8, "WAVE");
+        setString(h, 12, "fmt ");
+        setInt(h, 16, 16);
+        setShort(h, 20, 1);
+        setShort(h, 22, channels);
+        setInt(h, 24, sampleRate);
+        setInt(h, 28, sampleRate * channels * bytesPerSample);
+        setShort(h, 32, channels * bytesPerSample);
+        setShort(h, 34, bytesPerSample * 8);
+        setString(h, 36, "data");
+        out.write(h);
+        dataSize = 0;
+        this.format = format;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (swap) {
+            if (buffer.length < len) {
+                buffer = new byte[len];
+            }
+            for (int i = 0; i < len; i += 2) {
+                buffer[i] = b[off + i + 1];
+                buffer[i + 1] = b[off + i];
+            }
+            out.write(buffer, 0, len);
+        } else {
+            out.write(b, off, len);
+        }
+        dataSize += len;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public int available() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void start() {
+        // nothing to do
+    }
+
+    @Override
+    public void stop() {
+        // nothing to do
+    }
+
+    @Override
+    public void flush() {
+        // nothing to do
+    }
+
+    @Override
+    public FloatControl getVolumeControl() {
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            byte[] size = new byte[4];
+            setInt(size, 0, (int) Math.min(0xffffffffL, dataSize + HEADER_SIZE - 8));
+            out.seek(4);
+            out.write(size);
+            setInt(size, 0, (int) Math.min(0xffffffffL, dataSize));
+            out.seek(40);
+            out.write(size);
+        } finally {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Ends the file: the next open starts it again, in any format.
+     */
+    @Override
+    public void release() throws IOException {
+        close();
+        format = null;
+    }
+
+    private static void setString(byte[] b, int pos, String s) {
+        for (int i = 0; i < 4; i++) {
+            b[pos + i] = (byte) s.charAt(i);
+        }
+    }
+
+    private static void setShort(byte[] b, int pos, int x) {
+        b[pos] = (byte) x;
+        b[pos + 1] = (byte) (x >> 8);
+    }
+
+    private static void setInt(byte[] b, int pos, int x) {
+        setShort(b, pos, x);
+        setShort(b, pos + 2, x >> 16);
+    }
+}